@@ -0,0 +1,104 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.uwh.model.io.ByteBufferDeSer;
+import org.uwh.model.io.DeSerUtil;
+import org.uwh.model.io.SpecializedCodec;
+
+
+/**
+ * Serialization and deserialization of a record through {@link DeSerUtil} and through the
+ * {@link SpecializedCodec}s of the closed schema and of an open schema over the whole vocabulary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+  @Param({"10", "1000", "20000"})
+  private int vocabSize;
+
+  @Param({"8", "64"})
+  private int width;
+
+  @Param({"primitive", "string", "mixed"})
+  private String types;
+
+  private Context ctx;
+  private Schema schema;
+  private Record rec;
+  private byte[] bytes;
+  private ByteBuffer buffer;
+  private ByteBuffer out;
+  private Schema openSchema;
+  private SpecializedCodec specialized;
+  private SpecializedCodec openSpecialized;
+
+  @Setup
+  public void setup() throws IOException {
+    List<Term<?>> terms = Fixtures.terms(vocabSize, types);
+    List<Term<?>> recordTerms = Fixtures.recordTerms(terms, width);
+    schema = Fixtures.schema(recordTerms);
+    ctx = Fixtures.context(terms, schema);
+    rec = Fixtures.record(ctx, schema, recordTerms);
+    bytes = DeSerUtil.serialize(rec);
+    buffer = ByteBuffer.wrap(bytes);
+    out = ByteBuffer.allocate(bytes.length);
+    openSchema = new Schema(Name.of(Fixtures.NS, "open"));
+    specialized = schema.getSpecializedCodec(ctx);
+    openSpecialized = openSchema.getSpecializedCodec(ctx);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return DeSerUtil.serialize(rec);
+  }
+
+  @Benchmark
+  public Record deserialize() throws IOException {
+    return DeSerUtil.deserialize(ctx, schema, bytes);
+  }
+
+  @Benchmark
+  public Record deserializeBuffer() throws IOException {
+    return DeSerUtil.deserialize(ctx, schema, buffer.clear());
+  }
+
+  @Benchmark
+  public ByteBuffer specializedSerialize() throws IOException {
+    specialized.write(ByteBufferDeSer.INSTANCE, out.clear(), rec);
+    return out;
+  }
+
+  @Benchmark
+  public Record specializedDeserialize() throws IOException {
+    return specialized.read(ByteBufferDeSer.INSTANCE, buffer.clear(), ctx, schema);
+  }
+
+  @Benchmark
+  public ByteBuffer openSpecializedSerialize() throws IOException {
+    openSpecialized.write(ByteBufferDeSer.INSTANCE, out.clear(), rec);
+    return out;
+  }
+
+  @Benchmark
+  public Record openSpecializedDeserialize() throws IOException {
+    return openSpecialized.read(ByteBufferDeSer.INSTANCE, buffer.clear(), ctx, openSchema);
+  }
+}
@@ -0,0 +1,133 @@
+package org.uwh.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.uwh.model.types.ListType;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Vocabularies, schemas and records of parameterized size and type mix shared by the benchmarks.
+ * Type mixes are "primitive" (longs and doubles), "string" and "mixed" (longs, doubles, strings,
+ * dates and lists of longs).
+ */
+final class Fixtures {
+  static final String NS = "bench";
+
+  private Fixtures() {
+  }
+
+  static String name(int i) {
+    return NS + "/t" + i;
+  }
+
+  static Type<?> type(String mix, int i) {
+    switch (mix) {
+      case "primitive":
+        return (i % 2 == 0) ? Type.LONG : Type.DOUBLE;
+      case "string":
+        return Type.STRING;
+      case "mixed":
+        switch (i % 5) {
+          case 0: return Type.LONG;
+          case 1: return Type.DOUBLE;
+          case 2: return Type.STRING;
+          case 3: return Type.DATE;
+          default: return new ListType<>(Type.LONG);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown type mix " + mix);
+    }
+  }
+
+  static Object value(Type<?> type, int i) {
+    if (type == Type.LONG) {
+      return (long) i * 31;
+    } else if (type == Type.DOUBLE) {
+      return i * 1.5;
+    } else if (type == Type.STRING) {
+      return "value-" + i;
+    } else if (type == Type.DATE) {
+      return LocalDate.of(2024, 1, 1).plusDays(i % 365);
+    } else {
+      return List.of((long) i, (long) i + 1, (long) i + 2);
+    }
+  }
+
+  static List<Term<?>> terms(int size, String mix) {
+    List<Term<?>> terms = new ArrayList<>(size);
+    for (int i=0; i<size; i++) {
+      terms.add(Term.of(name(i), type(mix, i)));
+    }
+    return terms;
+  }
+
+  /**
+   * @return the terms of a record of the width, spread evenly over the vocabulary
+   */
+  static List<Term<?>> recordTerms(List<Term<?>> terms, int width) {
+    int n = Math.min(width, terms.size());
+    int stride = terms.size() / n;
+    List<Term<?>> res = new ArrayList<>(n);
+    for (int i=0; i<n; i++) {
+      res.add(terms.get(i * stride));
+    }
+    return res;
+  }
+
+  /**
+   * @return schema requiring the first half of the record terms and allowing the others
+   */
+  static Schema schema(List<Term<?>> recordTerms) {
+    Schema schema = new Schema(Name.of(NS, "record"));
+    for (int i=0; i<recordTerms.size(); i++) {
+      if (i < recordTerms.size() / 2) {
+        schema.require(recordTerms.get(i));
+      } else {
+        schema.allow(recordTerms.get(i));
+      }
+    }
+    return schema.allowNoOtherTerms();
+  }
+
+  static Context context(List<Term<?>> terms, Schema schema) {
+    return new Namespace(NS, SemVer.of("1.0.0"), new Vocabulary(terms), Map.of(schema.getName(), schema)).toContext();
+  }
+
+  static Record record(Context ctx, Schema schema, List<Term<?>> recordTerms) {
+    Record rec = new Record(ctx, schema);
+    for (int i=0; i<recordTerms.size(); i++) {
+      Term t = recordTerms.get(i);
+      rec.put(t, value(t.getType(), i));
+    }
+    return rec;
+  }
+
+  /**
+   * @return namespace definition as read by {@link Parser#parseNamespace(java.nio.file.Path)}
+   */
+  static String yaml(int size, String mix) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("namespace: ").append(NS).append('\n');
+    sb.append("version: 1.0.0\n");
+    sb.append("terms:\n");
+    for (int i=0; i<size; i++) {
+      Type<?> type = type(mix, i);
+      sb.append("  - name: ").append(name(i)).append('\n');
+      if (type instanceof ListType) {
+        sb.append("    type:\n      type: list\n      item: long\n");
+      } else {
+        sb.append("    type: ").append(type).append('\n');
+      }
+    }
+    sb.append("schemas:\n");
+    sb.append("  - name: ").append(NS).append("/record\n");
+    sb.append("    required:\n");
+    for (int i=0; i<Math.min(size, 8); i++) {
+      sb.append("      - ").append(name(i)).append('\n');
+    }
+    return sb.toString();
+  }
+}
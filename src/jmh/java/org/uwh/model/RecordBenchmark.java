@@ -0,0 +1,74 @@
+package org.uwh.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Filling a new record with {@link Record#put(Term, Object)} and reading it back with
+ * {@link Record#get(Term)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordBenchmark {
+  @Param({"10", "1000", "20000"})
+  private int vocabSize;
+
+  @Param({"8", "64"})
+  private int width;
+
+  @Param({"primitive", "string", "mixed"})
+  private String types;
+
+  private Context ctx;
+  private Schema schema;
+  private Term[] terms;
+  private Object[] values;
+  private Record rec;
+
+  @Setup
+  public void setup() {
+    List<Term<?>> all = Fixtures.terms(vocabSize, types);
+    List<Term<?>> recordTerms = Fixtures.recordTerms(all, width);
+    schema = Fixtures.schema(recordTerms);
+    ctx = Fixtures.context(all, schema);
+    terms = recordTerms.toArray(new Term[0]);
+    values = new Object[terms.length];
+    for (int i=0; i<terms.length; i++) {
+      values[i] = Fixtures.value(terms[i].getType(), i);
+    }
+    rec = Fixtures.record(ctx, schema, recordTerms);
+  }
+
+  @Benchmark
+  public Record put() {
+    Record res = new Record(ctx, schema);
+    for (int i=0; i<terms.length; i++) {
+      res.put(terms[i], values[i]);
+    }
+    return res;
+  }
+
+  @Benchmark
+  public void get(Blackhole bh) {
+    for (int i=0; i<terms.length; i++) {
+      bh.consume(rec.get(terms[i]));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.uwh.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link Schema#isValid(Record)} of a valid record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+  @Param({"10", "1000", "20000"})
+  private int vocabSize;
+
+  @Param({"8", "64"})
+  private int width;
+
+  @Param({"primitive", "mixed"})
+  private String types;
+
+  private Schema schema;
+  private Record rec;
+
+  @Setup
+  public void setup() {
+    List<Term<?>> terms = Fixtures.terms(vocabSize, types);
+    List<Term<?>> recordTerms = Fixtures.recordTerms(terms, width);
+    schema = Fixtures.schema(recordTerms);
+    rec = Fixtures.record(Fixtures.context(terms, schema), schema, recordTerms);
+    if (!schema.isValid(rec)) {
+      throw new IllegalStateException("Benchmark record is not valid");
+    }
+  }
+
+  @Benchmark
+  public boolean isValid() {
+    return schema.isValid(rec);
+  }
+}
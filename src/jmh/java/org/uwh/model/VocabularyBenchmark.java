@@ -0,0 +1,62 @@
+package org.uwh.model;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Term lookup by qualified name and by {@link Name}, cycling through all terms of the vocabulary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VocabularyBenchmark {
+  @Param({"10", "1000", "20000"})
+  private int vocabSize;
+
+  private Vocabulary vocab;
+  private String[] qNames;
+  private Name[] names;
+  private int next;
+
+  @Setup
+  public void setup() {
+    vocab = new Vocabulary(Fixtures.terms(vocabSize, "mixed"));
+    qNames = new String[vocabSize];
+    names = new Name[vocabSize];
+    for (int i=0; i<vocabSize; i++) {
+      qNames[i] = Fixtures.name(i);
+      names[i] = Name.ofQualified(qNames[i]);
+    }
+  }
+
+  private int nextIndex() {
+    int i = next;
+    next = (i + 1 == vocabSize) ? 0 : i + 1;
+    return i;
+  }
+
+  @Benchmark
+  public Optional<Term<?>> lookupByQualifiedName() {
+    return vocab.lookupTerm(qNames[nextIndex()]);
+  }
+
+  @Benchmark
+  public Optional<Term<?>> lookupByName() {
+    return vocab.lookupTerm(names[nextIndex()]);
+  }
+}
@@ -0,0 +1,171 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+
+/**
+ * Validates large numbers of records in parallel on a {@link ForkJoinPool}. Every record is
+ * checked against the rules of its schema and each of its values against the constraints of its
+ * term, see {@link Term#isValid(Object)}. Unlike {@link Record#isValid()} all failures are
+ * collected into a {@link ValidationReport}.
+ */
+public final class BulkValidator {
+  private static final int CHUNK_SIZE = 2048;
+
+  private final ForkJoinPool pool;
+
+  public BulkValidator() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public BulkValidator(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  public ValidationReport validate(Collection<? extends Record> records) {
+    List<? extends Record> list = (records instanceof List && records instanceof RandomAccess)
+        ? (List<? extends Record>) records
+        : new ArrayList<>(records);
+    Run run = new Run();
+    Failures res = pool.invoke(new RangeTask(run, list, 0, list.size()));
+    return run.report(list.size(), res);
+  }
+
+  /**
+   * Validates the records of the stream in chunks, record indices follow the encounter order of the stream.
+   */
+  public ValidationReport validate(Stream<? extends Record> records) {
+    Run run = new Run();
+    Failures res = new Failures();
+    Deque<ForkJoinTask<Failures>> inFlight = new ArrayDeque<>();
+    int maxInFlight = 2 * pool.getParallelism();
+    long count = 0;
+
+    Iterator<? extends Record> it = records.iterator();
+    while (it.hasNext()) {
+      List<Record> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (chunk.size() < CHUNK_SIZE && it.hasNext()) {
+        chunk.add(it.next());
+      }
+      inFlight.add(pool.submit(new RangeTask(run, chunk, count, chunk.size())));
+      count += chunk.size();
+      if (inFlight.size() >= maxInFlight) {
+        res.append(inFlight.poll().join());
+      }
+    }
+    while (!inFlight.isEmpty()) {
+      res.append(inFlight.poll().join());
+    }
+    return run.report(count, res);
+  }
+
+  /**
+   * State shared by all tasks of a validation run.
+   */
+  private static final class Run {
+    private final Map<String, Integer> reasonIds = new ConcurrentHashMap<>();
+    private final List<String> reasons = new ArrayList<>();
+
+    int reasonId(String reason) {
+      return reasonIds.computeIfAbsent(reason, r -> {
+        synchronized (reasons) {
+          reasons.add(r);
+          return reasons.size() - 1;
+        }
+      });
+    }
+
+    ValidationReport report(long recordCount, Failures failures) {
+      return new ValidationReport(recordCount,
+          Arrays.copyOf(failures.records, failures.size),
+          Arrays.copyOf(failures.reasons, failures.size),
+          reasons.toArray(new String[0]));
+    }
+  }
+
+  private static final class Failures {
+    private long[] records = new long[16];
+    private int[] reasons = new int[16];
+    private int size;
+
+    void add(long record, int reason) {
+      if (size == records.length) {
+        records = Arrays.copyOf(records, size * 2);
+        reasons = Arrays.copyOf(reasons, size * 2);
+      }
+      records[size] = record;
+      reasons[size] = reason;
+      size++;
+    }
+
+    Failures append(Failures other) {
+      for (int i=0; i<other.size; i++) {
+        add(other.records[i], other.reasons[i]);
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Validates records [from, from + count) of the list, where list index 0 is record number base.
+   */
+  private static final class RangeTask extends RecursiveTask<Failures> {
+    private static final long serialVersionUID = 1L;
+
+    private final Run run;
+    private final List<? extends Record> records;
+    private final long base;
+    private final int from;
+    private final int to;
+
+    RangeTask(Run run, List<? extends Record> records, long base, int count) {
+      this(run, records, base, 0, count);
+    }
+
+    private RangeTask(Run run, List<? extends Record> records, long base, int from, int to) {
+      this.run = run;
+      this.records = records;
+      this.base = base;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Failures compute() {
+      if (to - from > CHUNK_SIZE) {
+        int mid = (from + to) >>> 1;
+        RangeTask left = new RangeTask(run, records, base, from, mid);
+        left.fork();
+        Failures right = new RangeTask(run, records, base, mid, to).compute();
+        return left.join().append(right);
+      }
+
+      Failures res = new Failures();
+      try {
+        for (int i=from; i<to; i++) {
+          Record rec = records.get(i);
+          long index = base + i;
+          rec.getSchema().validator(rec.getContext()).validate(rec, reason -> res.add(index, run.reasonId(reason)));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return res;
+    }
+  }
+}
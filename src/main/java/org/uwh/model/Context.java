@@ -8,6 +8,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.uwh.model.io.Codec;
 
 
 /**
@@ -18,6 +19,7 @@ public class Context {
   private final Set<Namespace> namespaces;
   private final Vocabulary vocab;
   private final Map<Name,Schema> schemas;
+  private volatile Codec codec;
 
   public Context(Namespace singleNs) {
     namespaces = Collections.singleton(singleNs);
@@ -40,6 +42,39 @@ public class Context {
     return vocab;
   }
 
+  /**
+   * @return the codec for this context's vocabulary, compiled on first use and rebuilt only if
+   * terms have been added to the vocabulary since
+   */
+  public Codec getCodec() {
+    Codec c = codec;
+    if (c == null || c.size() != vocab.size()) {
+      synchronized (this) {
+        c = codec;
+        if (c == null || c.size() != vocab.size()) {
+          c = new Codec(vocab);
+          codec = c;
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * @return the dense index of the term in this context, which is also its codec tag, or -1 if
+   * the term is not part of the vocabulary
+   */
+  public int indexOf(Term<?> t) {
+    return getCodec().tagOf(t);
+  }
+
+  /**
+   * @return the term with the dense index or null if there is none
+   */
+  public Term<?> termAt(int index) {
+    return getCodec().termOf(index);
+  }
+
   public Map<Name, Schema> getSchemas() {
     return schemas;
   }
@@ -1,32 +1,83 @@
 package org.uwh.model;
 
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
  * Name are case-insensitive representation of business terms
+ *
+ * <p>Every name holds the lower case forms of namespace and name from a shared pool, so equal
+ * names usually share the same instances and compare by reference. Parsed qualified names are
+ * cached.
  */
 public class Name {
+  private static final int MAX_PARSED = 1 << 16;
+  private static final int MAX_CANONICAL = 1 << 16;
+  private static final Map<String, Name> parsed = new ConcurrentHashMap<>();
+  // canonical lower case form by original form
+  private static final Map<String, String> canonical = new ConcurrentHashMap<>();
+
   private final String namespace;
   private final String name;
-  private final int myHash;
+  private final String lowerNamespace;
+  private final String lowerName;
+  private final int hash;
 
   public static Name of(String ns, String name) {
     return new Name(ns, name);
   }
 
   public static Name ofQualified(String qualified) {
-    String[] parts = qualified.split("/");
-    if (parts.length != 2) {
+    Name n = parsed.get(qualified);
+    if (n == null) {
+      n = parse(qualified);
+      if (parsed.size() < MAX_PARSED) {
+        parsed.put(qualified, n);
+      }
+    }
+    return n;
+  }
+
+  private static Name parse(String qualified) {
+    // like String.split trailing separators are ignored
+    int end = qualified.length();
+    while (end > 0 && qualified.charAt(end - 1) == '/') {
+      end--;
+    }
+    int sep = qualified.indexOf('/');
+    if (sep < 0 || sep >= end || qualified.lastIndexOf('/', end - 1) != sep) {
       throw new IllegalArgumentException("Expected qualified name <ns>/<name> but got: "+qualified);
     }
-    return Name.of(parts[0], parts[1]);
+    return Name.of(qualified.substring(0, sep), qualified.substring(sep + 1, end));
+  }
+
+  /**
+   * @return the pooled lower case form of the string, once the pool is full a new one
+   */
+  private static String canonical(String s) {
+    String c = canonical.get(s);
+    if (c != null) {
+      return c;
+    }
+    String lower = s.toLowerCase();
+    if (canonical.size() >= MAX_CANONICAL) {
+      return lower;
+    }
+    c = canonical.putIfAbsent(lower, lower);
+    if (c == null) {
+      c = lower;
+    }
+    canonical.putIfAbsent(s, c);
+    return c;
   }
 
   public Name(String ns, String name) {
     this.namespace = ns;
     this.name = name;
-    myHash = Objects.hash(namespace.toLowerCase(), name.toLowerCase());
+    this.lowerNamespace = canonical(ns);
+    this.lowerName = canonical(name);
+    this.hash = 31 * (31 + lowerNamespace.hashCode()) + lowerName.hashCode();
   }
 
   public String getNamespace() {
@@ -49,14 +100,14 @@ public class Name {
     if (o == null || getClass() != o.getClass()) {
       return false;
     }
-    Name name1 = (Name) o;
-    return Objects.equals(namespace.toLowerCase(), name1.namespace.toLowerCase())
-        && Objects.equals(name.toLowerCase(), name1.name.toLowerCase());
+    Name other = (Name) o;
+    // String.equals compares references first, which decides for pooled forms
+    return hash == other.hash && lowerNamespace.equals(other.lowerNamespace) && lowerName.equals(other.lowerName);
   }
 
   @Override
   public int hashCode() {
-    return myHash;
+    return hash;
   }
 
   @Override
@@ -116,36 +116,12 @@ public class Parser {
     }
   }
 
-  private static class EqualsPredicate implements Predicate<Record> {
-    private final Object lhs;
-    private final Object rhs;
-
-    public EqualsPredicate(Object lhs, Object rhs) {
-      this.lhs = lhs;
-      this.rhs = rhs;
-    }
-
-    @Override
-    public boolean test(Record rec) {
-      Object l = lhs;
-      Object r = rhs;
-      if (l instanceof Term<?>) {
-        l = rec.get((Term) l);
-      }
-      if (r instanceof Term<?>) {
-        r = rec.get((Term) r);
-      }
-
-      return (l == null && r == null) || (l != null && l.equals(r));
-    }
-  }
-
   private static Predicate<Record> parseCondition(Map attrs, Vocabulary vocab, String defaultNamespace) {
     String type = (String) attrs.get("type");
     if ("equals".equals(type)) {
       Object lhs = parseAccessor(attrs.get("left"), vocab, defaultNamespace);
-      Object rhs = parseAccessor(attrs.get("left"), vocab, defaultNamespace);
-      return new EqualsPredicate(lhs, rhs);
+      Object rhs = parseAccessor(attrs.get("right"), vocab, defaultNamespace);
+      return Rules.isEqual(lhs, rhs);
     } else {
       throw new IllegalArgumentException("Unknown predicate type: " + type);
     }
@@ -1,36 +1,252 @@
 package org.uwh.model;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import org.uwh.model.io.Codec;
+import org.uwh.model.io.DeSer;
+import org.uwh.model.io.RecordAccess;
+import org.uwh.model.types.Type;
 
+/**
+ * Values are stored by the dense index the context assigns to each term of its vocabulary (see
+ * {@link Context#indexOf(Term)}) in arrays sized to the values present rather than to the
+ * vocabulary: the sorted indices, and at the same position the raw bits of primitive values (see
+ * {@link Type#isPrimitive()}), so the primitive accessors and codecs never box them, or the value
+ * itself. Lookups are binary searches, values are visited in index order. Values stored in index
+ * order, as by the codecs, are appended without search.
+ *
+ * <p>Terms added to the vocabulary after the record was created have no index and are kept in a map.
+ */
 public class Record {
-  private final Map<Term<?>,Object> values;
+  private static final int[] NO_INDICES = new int[0];
+  private static final long[] NO_BITS = new long[0];
+
+  static {
+    RecordAccess.install(new RecordAccess() {
+      @Override
+      protected int indexAtPosition(Record rec, int pos) {
+        return (pos < rec.count) ? rec.indices[pos] : -1;
+      }
+
+      @Override
+      protected long bitsAtPosition(Record rec, int pos) {
+        return rec.bits[pos];
+      }
+
+      @Override
+      protected Object objectAtPosition(Record rec, int pos) {
+        return rec.objects[pos];
+      }
+
+      @Override
+      protected void storeBitsAt(Record rec, int index, long value) {
+        rec.setBits(index, value);
+      }
+
+      @Override
+      protected void storeAt(Record rec, int index, Object value) {
+        rec.setSlot(index, value);
+      }
+    });
+  }
+
   private final Schema schema;
   private final Context ctx;
+  private final Codec codec;
+  // sorted indices of the values and by position the raw bits or, allocated on first use, the object
+  private int[] indices = NO_INDICES;
+  private long[] bits = NO_BITS;
+  private Object[] objects;
+  private int count;
+  private Map<Term<?>,Object> others;
+  private Map<Term<?>,Object> values;
 
   public Record(Context ctx, Schema schema) {
-    values = new HashMap<>();
     this.ctx = ctx;
     this.schema = schema;
+    this.codec = ctx.getCodec();
   }
 
+  /**
+   * Creates a record with a copy of the values.
+   */
   public Record(Context ctx, Schema schema, Map<Term<?>,Object> values) {
-    this.ctx = ctx;
-    this.schema = schema;
-    this.values = values;
+    this(ctx, schema);
+    values.forEach(this::storeValue);
   }
 
-  public<T> void put(Term<T> t, T value) {
+  /**
+   * @return the position of the index or, if it is not set, -(insertion point) - 1
+   */
+  private int find(int index) {
+    if (count == 0 || indices[count - 1] < index) {
+      return -count - 1;
+    }
+    return Arrays.binarySearch(indices, 0, count, index);
+  }
+
+  /**
+   * @return the position of the index, inserted if it was not set
+   */
+  private int insert(int index) {
+    int pos = find(index);
+    if (pos >= 0) {
+      return pos;
+    }
+    pos = -pos - 1;
+    if (count == indices.length) {
+      int capacity = Math.max(4, count * 2);
+      indices = Arrays.copyOf(indices, capacity);
+      bits = Arrays.copyOf(bits, capacity);
+      if (objects != null) {
+        objects = Arrays.copyOf(objects, capacity);
+      }
+    }
+    int tail = count - pos;
+    if (tail > 0) {
+      System.arraycopy(indices, pos, indices, pos + 1, tail);
+      System.arraycopy(bits, pos, bits, pos + 1, tail);
+      if (objects != null) {
+        System.arraycopy(objects, pos, objects, pos + 1, tail);
+        objects[pos] = null;
+      }
+    }
+    indices[pos] = index;
+    count++;
+    return pos;
+  }
+
+  private boolean isSet(int index) {
+    return find(index) >= 0;
+  }
+
+  private void clear(int index) {
+    int pos = find(index);
+    if (pos >= 0) {
+      int tail = count - pos - 1;
+      System.arraycopy(indices, pos + 1, indices, pos, tail);
+      System.arraycopy(bits, pos + 1, bits, pos, tail);
+      if (objects != null) {
+        System.arraycopy(objects, pos + 1, objects, pos, tail);
+        objects[count - 1] = null;
+      }
+      count--;
+    }
+  }
+
+  private void setBits(int index, long value) {
+    int pos = insert(index);
+    bits[pos] = value;
+  }
+
+  private void setSlot(int index, Object value) {
+    int pos = insert(index);
+    if (objects == null) {
+      objects = new Object[indices.length];
+    }
+    objects[pos] = value;
+  }
+
+  private Map<Term<?>,Object> others() {
+    if (others == null) {
+      others = new HashMap<>();
+    }
+    return others;
+  }
+
+  /**
+   * @return the sorted term indices of the values if the record was created against the codec,
+   * otherwise null. Only the first {@link #indexCount()} entries are valid. Subclasses that keep
+   * values elsewhere return null.
+   */
+  protected int[] presentIndices(Codec codec) {
+    return (codec == this.codec) ? indices : null;
+  }
+
+  /**
+   * @return the number of values stored by term index
+   */
+  int indexCount() {
+    return count;
+  }
+
+  private void checkTerm(Term<?> t) {
     if (!schema.isValidTerm(ctx, t)) {
       throw new IllegalArgumentException("Term " + t + " is not valid for schema " + schema);
     }
-    if (value == null) {
-      values.remove(t);
+  }
+
+  /**
+   * Stores the value without validation against the schema, a null value removes the term.
+   */
+  protected void store(Term<?> t, Object value) {
+    storeValue(t, value);
+  }
+
+  /**
+   * Stores the raw bits of a primitive value without validation against the schema.
+   */
+  protected void storeBits(Term<?> t, long value) {
+    storeValueBits(t, value);
+  }
+
+  private void storeValue(Term<?> t, Object value) {
+    int index = codec.tagOf(t);
+    if (index < 0) {
+      if (value == null) {
+        if (others != null) {
+          others.remove(t);
+        }
+      } else {
+        others().put(t, value);
+      }
+    } else if (value == null) {
+      clear(index);
+    } else if (codec.typeOf(index).isPrimitive()) {
+      setBits(index, ((Type) t.getType()).toBits(value));
+    } else {
+      setSlot(index, value);
+    }
+  }
+
+  private void storeValueBits(Term<?> t, long value) {
+    int index = codec.tagOf(t);
+    if (index < 0) {
+      others().put(t, t.getType().fromBits(value));
     } else {
-      values.put(t, value);
+      setBits(index, value);
     }
   }
 
+  /**
+   * @return the raw bits of the primitive value of the term
+   * @throws IllegalStateException if the record has no value for the term
+   */
+  protected long bitsOf(Term<?> t) {
+    int index = codec.tagOf(t);
+    if (index >= 0) {
+      int pos = find(index);
+      if (pos >= 0) {
+        return bits[pos];
+      }
+    } else if (others != null && others.containsKey(t)) {
+      return ((Type) t.getType()).toBits(others.get(t));
+    }
+    throw new IllegalStateException("No value for " + t.getName());
+  }
+
+  public<T> void put(Term<T> t, T value) {
+    checkTerm(t);
+    store(t, value);
+  }
+
   public void put(Name n, Object value) {
     Term t = ctx.getVocab().lookupTerm(n).orElseThrow();
     put(t, value);
@@ -40,8 +256,41 @@ public class Record {
     put(Name.ofQualified(qualifiedName), value);
   }
 
+  public void putInt(Term<Integer> t, int value) {
+    checkTerm(t);
+    storeBits(t, value);
+  }
+
+  public void putLong(Term<Long> t, long value) {
+    checkTerm(t);
+    storeBits(t, value);
+  }
+
+  public void putDouble(Term<Double> t, double value) {
+    checkTerm(t);
+    storeBits(t, Double.doubleToRawLongBits(value));
+  }
+
+  public void putFloat(Term<Float> t, float value) {
+    checkTerm(t);
+    storeBits(t, Float.floatToRawIntBits(value));
+  }
+
+  public boolean has(Term<?> t) {
+    int index = codec.tagOf(t);
+    return (index >= 0) ? isSet(index) : others != null && others.containsKey(t);
+  }
+
   public <T> T get(Term<T> t) {
-    return (T) values.get(t);
+    int index = codec.tagOf(t);
+    if (index < 0) {
+      return (others == null) ? null : (T) others.get(t);
+    }
+    int pos = find(index);
+    if (pos < 0) {
+      return null;
+    }
+    return codec.typeOf(index).isPrimitive() ? t.getType().fromBits(bits[pos]) : (T) objects[pos];
   }
 
   public <T> T get(Name n) {
@@ -53,10 +302,172 @@ public class Record {
     return get(Name.ofQualified(qualifiedName));
   }
 
+  /**
+   * @throws IllegalStateException if the record has no value for the term, check with {@link #has(Term)}
+   */
+  public int getInt(Term<Integer> t) {
+    return (int) bitsOf(t);
+  }
+
+  /**
+   * @throws IllegalStateException if the record has no value for the term, check with {@link #has(Term)}
+   */
+  public long getLong(Term<Long> t) {
+    return bitsOf(t);
+  }
+
+  /**
+   * @throws IllegalStateException if the record has no value for the term, check with {@link #has(Term)}
+   */
+  public double getDouble(Term<Double> t) {
+    return Double.longBitsToDouble(bitsOf(t));
+  }
+
+  /**
+   * @throws IllegalStateException if the record has no value for the term, check with {@link #has(Term)}
+   */
+  public float getFloat(Term<Float> t) {
+    return Float.intBitsToFloat((int) bitsOf(t));
+  }
+
+  /**
+   * Removes all values. The storage of the record is kept, so that records can be reused without
+   * allocating, see {@link org.uwh.model.io.DeSerUtil#deserializeInto(Record, byte[])}.
+   */
+  public void clear() {
+    if (objects != null) {
+      Arrays.fill(objects, 0, count, null);
+    }
+    count = 0;
+    if (others != null) {
+      others.clear();
+    }
+  }
+
+  /**
+   * @return the number of values in the record
+   */
+  public int size() {
+    return count + (others == null ? 0 : others.size());
+  }
+
+  private Object valueAt(int pos) {
+    Type<?> type = codec.typeOf(indices[pos]);
+    return type.isPrimitive() ? type.fromBits(bits[pos]) : objects[pos];
+  }
+
+  /**
+   * @return an unmodifiable view of all values in index order, primitive values are boxed as they
+   * are read. The view reflects later changes to the record. Unlike the map of earlier versions it
+   * is not the storage of the record, so it can't be modified.
+   */
   public Map<Term<?>,Object> getValues() {
+    if (values == null) {
+      values = new Values();
+    }
     return values;
   }
 
+  private final class Values extends AbstractMap<Term<?>,Object> {
+    private final Set<Map.Entry<Term<?>,Object>> entries = new AbstractSet<>() {
+      @Override
+      public int size() {
+        return Record.this.size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<Term<?>,Object>> iterator() {
+        return new Iterator<>() {
+          private int pos;
+          private Iterator<Map.Entry<Term<?>,Object>> rest;
+
+          @Override
+          public boolean hasNext() {
+            return pos < count || rest().hasNext();
+          }
+
+          @Override
+          public Map.Entry<Term<?>,Object> next() {
+            if (pos >= count) {
+              return rest().next();
+            }
+            int current = pos++;
+            return new AbstractMap.SimpleImmutableEntry<>(codec.termOf(indices[current]), valueAt(current));
+          }
+
+          private Iterator<Map.Entry<Term<?>,Object>> rest() {
+            if (rest == null) {
+              rest = (others == null) ? Collections.emptyIterator() : Collections.unmodifiableMap(others).entrySet().iterator();
+            }
+            return rest;
+          }
+        };
+      }
+    };
+
+    @Override
+    public int size() {
+      return Record.this.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof Term) && has((Term<?>) key);
+    }
+
+    @Override
+    public Object get(Object key) {
+      return (key instanceof Term) ? Record.this.get((Term<?>) key) : null;
+    }
+
+    @Override
+    public Set<Map.Entry<Term<?>,Object>> entrySet() {
+      return entries;
+    }
+  }
+
+  /**
+   * Callback for {@link #forEachValue(ValueVisitor)}.
+   */
+  public interface ValueVisitor {
+    void visitBits(Term<?> t, long bits) throws IOException;
+
+    void visit(Term<?> t, Object value) throws IOException;
+  }
+
+  /**
+   * Visits all values in index order, primitive values are passed as raw bits. Used by codecs to
+   * encode the record without boxing.
+   */
+  public void forEachValue(ValueVisitor visitor) throws IOException {
+    for (int pos=0; pos<count; pos++) {
+      int index = indices[pos];
+      if (codec.typeOf(index).isPrimitive()) {
+        visitor.visitBits(codec.termOf(index), bits[pos]);
+      } else {
+        visitor.visit(codec.termOf(index), objects[pos]);
+      }
+    }
+    if (others != null) {
+      for (Map.Entry<Term<?>,Object> e : others.entrySet()) {
+        visitor.visit(e.getKey(), e.getValue());
+      }
+    }
+  }
+
+  /**
+   * Reads the value of the term from the reader and stores it without validation against the
+   * schema, see {@link #store(Term, Object)}. Primitive values are read as raw bits.
+   */
+  public <R> void decode(Term<?> t, DeSer<R,?> deser, R r) throws IOException {
+    Type<?> type = t.getType();
+    if (type.isPrimitive()) {
+      storeBits(t, type.deserializeBits(deser, r));
+    } else {
+      store(t, type.deserialize(deser, r));
+    }
+  }
+
   public Schema getSchema() {
     return schema;
   }
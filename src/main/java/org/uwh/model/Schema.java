@@ -3,19 +3,24 @@ package org.uwh.model;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import org.uwh.model.io.CodecCache;
+import org.uwh.model.io.SpecializedCodec;
 import org.uwh.model.validation.Rule;
 import org.uwh.model.validation.Rules;
 
 
 public class Schema {
-  private final Set<Term> required;
+  private final Set<Term<?>> required;
   private boolean allowOthers;
-  private final Set<Term> allowed;
+  private final Set<Term<?>> allowed;
   private final Name name;
   private final List<Rule<Record>> rules;
+  // incremented on every change so that compiled validators can be invalidated
+  private volatile int version;
+  private final CodecCache<SchemaValidator> validators = new CodecCache<>();
+  private final CodecCache<SpecializedCodec> specializedCodecs = new CodecCache<>();
 
   public Schema(Name name) {
     this.name = name;
@@ -25,7 +30,7 @@ public class Schema {
     rules = new ArrayList<>();
   }
 
-  private Schema(Name name, Set<Term> required, Set<Term> allowed, boolean allowOthers, List<Rule<Record>> rules) {
+  private Schema(Name name, Set<Term<?>> required, Set<Term<?>> allowed, boolean allowOthers, List<Rule<Record>> rules) {
     this.name = name;
     this.required = required;
     this.allowed = allowed;
@@ -37,45 +42,75 @@ public class Schema {
     return name;
   }
 
-  public Schema require(Term<?> t) {
+  public synchronized Schema require(Term<?> t) {
     required.add(t);
     allowed.add(t);
+    version++;
     return this;
   }
 
-  public Schema allow(Term<?> t) {
+  public synchronized Schema allow(Term<?> t) {
     allowed.add(t);
+    version++;
     return this;
   }
 
-  public Schema allowNoOtherTerms() {
+  public synchronized Schema allowNoOtherTerms() {
     allowOthers = false;
+    version++;
     return this;
   }
 
   public void requireOneOf(Term... terms) {
-    rules.add(Rules.requireOneOf(terms));
+    require(Rules.requireOneOf(terms));
   }
 
   public void requireOneOrMoreOf(Term... terms) {
-    rules.add(Rules.requireOneOrMoreOf(terms));
+    require(Rules.requireOneOrMoreOf(terms));
   }
 
   public void requireConditionally(Predicate<Record> cond, Rule<Record> ifRule, Rule<Record> elseRule) {
-    rules.add(Rules.conditionally(cond, ifRule, elseRule));
+    require(Rules.conditionally(cond, ifRule, elseRule));
   }
 
-  public void require(Rule<Record> rule) {
+  public synchronized void require(Rule<Record> rule) {
     rules.add(rule);
+    version++;
+  }
+
+  /**
+   * @return the validator compiled against the context's codec, cached per codec and recompiled if
+   * either the vocabulary or the schema changed since
+   */
+  SchemaValidator validator(Context ctx) {
+    int v = version;
+    return validators.get(ctx.getCodec(), v, codec -> {
+      synchronized (this) {
+        return new SchemaValidator(name, codec, v, required, allowed, allowOthers, rules);
+      }
+    });
+  }
+
+  /**
+   * @return the codec specialized to the terms of the schema against the context's vocabulary, all
+   * terms of the vocabulary if the schema is open, recompiled if either the vocabulary or the schema
+   * changed since
+   */
+  public SpecializedCodec getSpecializedCodec(Context ctx) {
+    int v = version;
+    return specializedCodecs.get(ctx.getCodec(), v, codec -> {
+      synchronized (this) {
+        List<Term<?>> terms = new ArrayList<>(allowed);
+        return SpecializedCodec.compile(codec, allowOthers ? ctx.getVocab().getTerms() : terms, v);
+      }
+    });
   }
 
   boolean isValid(Record rec) {
-    Map<Term<?>,Object> values = rec.getValues();
-    return required.stream().allMatch(values::containsKey)
-        && rules.stream().allMatch(r -> r.isSatisfied(rec));
+    return validator(rec.getContext()).isValid(rec);
   }
 
   public boolean isValidTerm(Context ctx, Term<?> t) {
-    return ctx.getVocab().isValidTerm(t) && (allowOthers || allowed.contains(t));
+    return validator(ctx).isValidTerm(t);
   }
 }
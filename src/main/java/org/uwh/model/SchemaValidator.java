@@ -0,0 +1,427 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.uwh.model.io.Codec;
+import org.uwh.model.validation.CompositeRule;
+import org.uwh.model.validation.ConditionalRule;
+import org.uwh.model.validation.Rule;
+import org.uwh.model.validation.Rules;
+import org.uwh.model.validation.TermsRule;
+
+
+/**
+ * A {@link Schema} compiled against the term indices of a context's {@link Codec}. Required and
+ * allowed terms become bitmasks, presence rules become mask checks and nested conjunctions are
+ * flattened into a single list of checks. Every validation first builds the presence words of the
+ * record, from its term indices if it was created against the same codec or otherwise term by
+ * term, and the mask checks compare them with their masks. Presence words are kept only for the
+ * words of the codec's tags that some mask covers, so they stay small for sparse schemas over
+ * large vocabularies. Closed schemas also check that no term outside the allowed ones is present.
+ * Validation reports name each missing required term separately.
+ */
+final class SchemaValidator {
+  private final Codec codec;
+  private final int version;
+  private final long[] allowed;
+  private final boolean allowOthers;
+  private final Check[] checks;
+  // failure reason of each check for validation reports
+  private final String[] reasons;
+  // true if the first check is the one of the required terms, which reports each missing term
+  private final boolean requiredCheck;
+  private final Term<?>[] required;
+  private final String[] missingReasons;
+  // terms of all masks, the mask checks are compacted to the presence words once all are compiled
+  private final long[] referenced;
+  private final List<MaskCheck> maskChecks = new ArrayList<>();
+  // the number of presence words, the slot of each word of the codec's tags or -1 if no mask
+  // covers it and the word of each slot
+  private final int words;
+  private final int[] slots;
+  private final int[] wordOf;
+  private final long[] referencedSlots;
+
+  SchemaValidator(Name schemaName, Codec codec, int version, Set<Term<?>> required, Set<Term<?>> allowed, boolean allowOthers, List<Rule<Record>> rules) {
+    List<Term<?>> requiredTerms = new ArrayList<>(required);
+    this.codec = codec;
+    this.version = version;
+    this.allowed = mask(allowed);
+    this.allowOthers = allowOthers;
+    this.referenced = new long[this.allowed.length];
+
+    List<Rule<Record>> flat = new ArrayList<>();
+    flat.add(new TermsRule(TermsRule.Kind.ALL, requiredTerms));
+    rules.forEach(r -> flatten(r, flat));
+    List<Check> res = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    if (!allowOthers) {
+      res.add(new AllowedCheck());
+      names.add(schemaName + ": terms not allowed by the schema");
+    }
+    for (Rule<Record> r : flat) {
+      Check c = compile(r);
+      if (c != ALWAYS) {
+        res.add(c);
+        names.add(schemaName + ": " + r);
+      }
+    }
+    checks = res.toArray(new Check[0]);
+    reasons = names.toArray(new String[0]);
+    slots = new int[this.allowed.length];
+    int n = 0;
+    for (int w=0; w<slots.length; w++) {
+      slots[w] = (referenced[w] != 0) ? n++ : -1;
+    }
+    words = n;
+    wordOf = new int[words];
+    for (int w=0; w<slots.length; w++) {
+      if (slots[w] >= 0) {
+        wordOf[slots[w]] = w;
+      }
+    }
+    referencedSlots = compact(referenced);
+    for (MaskCheck c : maskChecks) {
+      c.compact(compact(c.mask));
+    }
+    requiredCheck = !requiredTerms.isEmpty();
+    this.required = requiredTerms.toArray(new Term<?>[0]);
+    missingReasons = new String[this.required.length];
+    for (int i=0; i<this.required.length; i++) {
+      missingReasons[i] = schemaName + ": missing required term " + this.required[i].getName();
+    }
+  }
+
+  /**
+   * @return the words of the mask by presence slot
+   */
+  private long[] compact(long[] mask) {
+    long[] res = new long[words];
+    for (int i=0; i<words; i++) {
+      res[i] = mask[wordOf[i]];
+    }
+    return res;
+  }
+
+  boolean isCompiledFor(Codec codec, int version) {
+    return this.codec == codec && this.version == version;
+  }
+
+  private long[] mask(Iterable<? extends Term<?>> terms) {
+    long[] res = new long[(codec.size() + 63) >>> 6];
+    for (Term<?> t : terms) {
+      int index = codec.tagOf(t);
+      if (index >= 0) {
+        res[index >>> 6] |= 1L << index;
+      }
+    }
+    return res;
+  }
+
+  private static void flatten(Rule<Record> rule, List<Rule<Record>> out) {
+    if (rule instanceof CompositeRule && ((CompositeRule<Record>) rule).isAll()) {
+      for (Rule<Record> r : ((CompositeRule<Record>) rule).getRules()) {
+        flatten(r, out);
+      }
+    } else {
+      out.add(rule);
+    }
+  }
+
+  private Check compile(Rule<Record> rule) {
+    if (rule == Rules.always()) {
+      return ALWAYS;
+    } else if (rule == Rules.never()) {
+      return NEVER;
+    } else if (rule instanceof TermsRule) {
+      TermsRule tr = (TermsRule) rule;
+      if (tr.getKind() == TermsRule.Kind.ALL && tr.getTerms().stream().anyMatch(t -> codec.tagOf(t) < 0)) {
+        return NEVER;
+      }
+      long[] m = mask(tr.getTerms());
+      switch (tr.getKind()) {
+        case ALL:
+          int size = 0;
+          for (long w : m) {
+            size += Long.bitCount(w);
+          }
+          return (size == 0) ? ALWAYS : maskCheck(m, size, size);
+        case EXACTLY_ONE:
+          return maskCheck(m, 1, 1);
+        default:
+          return maskCheck(m, 1, Integer.MAX_VALUE);
+      }
+    } else if (rule instanceof CompositeRule) {
+      CompositeRule<Record> cr = (CompositeRule<Record>) rule;
+      List<Rule<Record>> children = new ArrayList<>();
+      if (cr.isAll()) {
+        flatten(cr, children);
+      } else {
+        children.addAll(cr.getRules());
+      }
+      return new CompositeCheck(cr.isAll(), children.stream().map(this::compile).toArray(Check[]::new));
+    } else if (rule instanceof ConditionalRule) {
+      ConditionalRule cr = (ConditionalRule) rule;
+      return new ConditionalCheck(cr, compile(cr.getIfRule()), compile(cr.getElseRule()));
+    } else {
+      return new RuleCheck(rule);
+    }
+  }
+
+  private Check maskCheck(long[] mask, int min, int max) {
+    for (int i=0; i<mask.length; i++) {
+      referenced[i] |= mask[i];
+    }
+    MaskCheck c = new MaskCheck(mask, min, max);
+    maskChecks.add(c);
+    return c;
+  }
+
+  /**
+   * @return the presence words of the record by slot, followed by a word that, for closed schemas,
+   * is not zero if terms the schema does not allow are present. That is (present & ~allowed) != 0
+   * over all words of the codec, evaluated while the presence words are built.
+   */
+  private long[] presence(Record rec) {
+    long[] res = new long[words + 1];
+    int[] present = rec.presentIndices(codec);
+    if (present != null) {
+      int n = rec.indexCount();
+      for (int i=0; i<n; i++) {
+        setPresent(res, present[i]);
+      }
+      if (!allowOthers && rec.size() > n) {
+        // values of terms added to the vocabulary after the record was created
+        res[words] = 1;
+      }
+    } else if (!allowOthers) {
+      for (Term<?> t : rec.getValues().keySet()) {
+        setPresent(res, codec.tagOf(t));
+      }
+    } else {
+      for (int i=0; i<words; i++) {
+        for (long m = referencedSlots[i]; m != 0; m &= m - 1) {
+          int index = (wordOf[i] << 6) + Long.numberOfTrailingZeros(m);
+          if (rec.has(codec.termOf(index))) {
+            res[i] |= 1L << index;
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  private void setPresent(long[] presence, int index) {
+    if (index < 0) {
+      presence[words] |= allowOthers ? 0 : 1;
+      return;
+    }
+    int w = index >>> 6;
+    long bit = 1L << index;
+    if (!allowOthers && (allowed[w] & bit) == 0) {
+      presence[words] = 1;
+    }
+    int slot = slots[w];
+    if (slot >= 0) {
+      presence[slot] |= bit;
+    }
+  }
+
+  boolean isValidTerm(Term<?> t) {
+    int index = codec.tagOf(t);
+    return index >= 0 && (allowOthers || (allowed[index >>> 6] & (1L << index)) != 0);
+  }
+
+  boolean isValid(Record rec) {
+    long[] present = presence(rec);
+    for (Check c : checks) {
+      if (!c.test(rec, present)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reports every failed check of the schema and every value violating the constraints of its term.
+   */
+  void validate(Record rec, Consumer<String> failures) throws IOException {
+    long[] present = presence(rec);
+    int first = 0;
+    if (requiredCheck) {
+      first = 1;
+      if (!checks[0].test(rec, present)) {
+        boolean reported = false;
+        for (int i=0; i<required.length; i++) {
+          if (!rec.has(required[i])) {
+            failures.accept(missingReasons[i]);
+            reported = true;
+          }
+        }
+        if (!reported) {
+          // a required term outside the codec's vocabulary
+          failures.accept(reasons[0]);
+        }
+      }
+    }
+    for (int i=first; i<checks.length; i++) {
+      if (!checks[i].test(rec, present)) {
+        failures.accept(reasons[i]);
+      }
+    }
+    rec.forEachValue(new Record.ValueVisitor() {
+      @Override
+      public void visitBits(Term<?> t, long bits) {
+        if (t.hasRules() && !isValidValue(t, t.getType().fromBits(bits))) {
+          failures.accept(t.getName() + ": term constraint");
+        }
+      }
+
+      @Override
+      public void visit(Term<?> t, Object value) {
+        if (!isValidValue(t, value)) {
+          failures.accept(t.getName() + ": term constraint");
+        }
+      }
+    });
+  }
+
+  /**
+   * @param value a value of the term's type, as held by records
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> boolean isValidValue(Term<T> t, Object value) {
+    return t.isValid((T) value);
+  }
+
+  private interface Check {
+    /**
+     * @param present the presence words of the record, see {@link #presence(Record)}
+     */
+    boolean test(Record rec, long[] present);
+  }
+
+  private static final Check ALWAYS = (rec, present) -> true;
+  private static final Check NEVER = (rec, present) -> false;
+
+  /**
+   * Checks that the number of terms of the mask present in the record is between min and max,
+   * comparing (present & mask) with the mask if all of its terms are required.
+   */
+  private static final class MaskCheck implements Check {
+    // the full mask until compacted, then the non-zero words of the mask and their presence slots
+    private long[] mask;
+    private int[] maskSlots;
+    private final int min;
+    private final int max;
+    private final boolean all;
+
+    MaskCheck(long[] mask, int min, int max) {
+      this.mask = mask;
+      this.min = min;
+      this.max = max;
+      int size = 0;
+      for (long w : mask) {
+        size += Long.bitCount(w);
+      }
+      all = min == size;
+    }
+
+    void compact(long[] bySlot) {
+      int n = 0;
+      for (long w : bySlot) {
+        n += (w != 0) ? 1 : 0;
+      }
+      mask = new long[n];
+      maskSlots = new int[n];
+      n = 0;
+      for (int i=0; i<bySlot.length; i++) {
+        if (bySlot[i] != 0) {
+          mask[n] = bySlot[i];
+          maskSlots[n++] = i;
+        }
+      }
+    }
+
+    @Override
+    public boolean test(Record rec, long[] present) {
+      if (all) {
+        for (int i=0; i<mask.length; i++) {
+          if ((present[maskSlots[i]] & mask[i]) != mask[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      int count = 0;
+      for (int i=0; i<mask.length && count <= max; i++) {
+        count += Long.bitCount(present[maskSlots[i]] & mask[i]);
+      }
+      return count >= min && count <= max;
+    }
+  }
+
+  /**
+   * Checks that a record of a closed schema has no terms besides the allowed ones, evaluated with
+   * the presence words.
+   */
+  private final class AllowedCheck implements Check {
+    @Override
+    public boolean test(Record rec, long[] present) {
+      return present[words] == 0;
+    }
+  }
+
+  private static final class CompositeCheck implements Check {
+    private final boolean all;
+    private final Check[] checks;
+
+    CompositeCheck(boolean all, Check[] checks) {
+      this.all = all;
+      this.checks = checks;
+    }
+
+    @Override
+    public boolean test(Record rec, long[] present) {
+      for (Check c : checks) {
+        if (c.test(rec, present) != all) {
+          return !all;
+        }
+      }
+      return all;
+    }
+  }
+
+  private static final class ConditionalCheck implements Check {
+    private final ConditionalRule rule;
+    private final Check ifCheck;
+    private final Check elseCheck;
+
+    ConditionalCheck(ConditionalRule rule, Check ifCheck, Check elseCheck) {
+      this.rule = rule;
+      this.ifCheck = ifCheck;
+      this.elseCheck = elseCheck;
+    }
+
+    @Override
+    public boolean test(Record rec, long[] present) {
+      return rule.getCondition().test(rec) ? ifCheck.test(rec, present) : elseCheck.test(rec, present);
+    }
+  }
+
+  private static final class RuleCheck implements Check {
+    private final Rule<Record> rule;
+
+    RuleCheck(Rule<Record> rule) {
+      this.rule = rule;
+    }
+
+    @Override
+    public boolean test(Record rec, long[] present) {
+      return rule.isSatisfied(rec);
+    }
+  }
+}
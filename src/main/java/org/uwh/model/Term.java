@@ -41,7 +41,19 @@ public class Term<T> {
   }
 
   public boolean isValid(T value) {
-    return type.getClazz().isInstance(value) && rules.stream().allMatch(r -> r.isSatisfied(value));
+    if (!type.getClazz().isInstance(value)) {
+      return false;
+    }
+    for (Rule<T> r : rules) {
+      if (!r.isSatisfied(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean hasRules() {
+    return !rules.isEmpty();
   }
 
   public Name getName() {
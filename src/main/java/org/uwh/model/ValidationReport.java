@@ -0,0 +1,116 @@
+package org.uwh.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Result of validating records with a {@link BulkValidator}: one entry per failed check, made of
+ * the index of the record and the failure reason, ordered by record index. Reasons are kept once
+ * in a table and referenced by id.
+ */
+public final class ValidationReport {
+  private final long recordCount;
+  private final long[] records;
+  private final int[] reasonIds;
+  private final String[] reasons;
+
+  ValidationReport(long recordCount, long[] records, int[] reasonIds, String[] reasons) {
+    this.recordCount = recordCount;
+    this.records = records;
+    this.reasonIds = reasonIds;
+    this.reasons = reasons;
+  }
+
+  public static final class Failure {
+    private final long recordIndex;
+    private final String reason;
+
+    Failure(long recordIndex, String reason) {
+      this.recordIndex = recordIndex;
+      this.reason = reason;
+    }
+
+    public long getRecordIndex() {
+      return recordIndex;
+    }
+
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return "#" + recordIndex + " " + reason;
+    }
+  }
+
+  /**
+   * @return the number of records validated
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  public boolean isValid() {
+    return records.length == 0;
+  }
+
+  public int getFailureCount() {
+    return records.length;
+  }
+
+  /**
+   * @return the number of distinct records with at least one failure
+   */
+  public long getInvalidRecordCount() {
+    long count = 0;
+    for (int i=0; i<records.length; i++) {
+      if (i == 0 || records[i] != records[i - 1]) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public long getRecordIndex(int failure) {
+    return records[failure];
+  }
+
+  public String getReason(int failure) {
+    return reasons[reasonIds[failure]];
+  }
+
+  /**
+   * @return the distinct failure reasons
+   */
+  public List<String> getReasons() {
+    return List.of(reasons);
+  }
+
+  /**
+   * @return the number of failures per reason, in the order of {@link #getReasons()}
+   */
+  public int[] getReasonCounts() {
+    int[] res = new int[reasons.length];
+    for (int id : reasonIds) {
+      res[id]++;
+    }
+    return res;
+  }
+
+  public List<Failure> getFailures() {
+    List<Failure> res = new ArrayList<>(records.length);
+    for (int i=0; i<records.length; i++) {
+      res.add(new Failure(records[i], getReason(i)));
+    }
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    return "ValidationReport{records=" + recordCount + ", failures=" + records.length
+        + ", reasons=" + Arrays.toString(reasons) + '}';
+  }
+}
@@ -2,40 +2,62 @@ package org.uwh.model;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 
+/**
+ * Set of terms with a hash index from names and aliases to terms, names and aliases are unique
+ * across the vocabulary.
+ */
 public class Vocabulary {
   private final Set<Term<?>> vocab;
+  private final Map<Name, Term<?>> index;
 
   public Vocabulary() {
     vocab = new HashSet<>();
+    index = new HashMap<>();
   }
 
   public Vocabulary(Collection<Term<?>> vocab) {
     this.vocab = new HashSet<>();
+    this.index = new HashMap<>();
     vocab.forEach(this::insertTerm);
   }
 
+  /**
+   * Merges the indices of the vocabularies rather than re-inserting term by term.
+   */
   public static Vocabulary createJointVocab(List<Vocabulary> vocabs) {
     Vocabulary result = new Vocabulary();
-    vocabs.forEach(v -> v.getTerms().forEach(result::insertTerm));
+    for (Vocabulary v : vocabs) {
+      for (Map.Entry<Name, Term<?>> e : v.index.entrySet()) {
+        Term<?> existing = result.index.putIfAbsent(e.getKey(), e.getValue());
+        if (existing != null) {
+          throw new IllegalArgumentException("Name " + e.getKey() + " is already defined");
+        }
+      }
+      result.vocab.addAll(v.vocab);
+    }
     return result;
   }
 
   public void insertTerm(Term<?> t) {
-    if (hasTerm(t.getName())) {
+    if (index.containsKey(t.getName())) {
       throw new IllegalArgumentException("Name " + t.getName() + " is already defined");
     }
-    Optional<Name> dupeAlias = t.getAliases().stream().filter(this::hasTerm).findAny();
+    Optional<Name> dupeAlias = t.getAliases().stream().filter(index::containsKey).findAny();
     if (dupeAlias.isPresent()) {
       throw new IllegalArgumentException("Alias " + dupeAlias.get() + " is already defined");
     }
 
     vocab.add(t);
+    index.put(t.getName(), t);
+    t.getAliases().forEach(alias -> index.put(alias, t));
   }
 
   public boolean isValidTerm(Term<?> t) {
@@ -47,8 +69,7 @@ public class Vocabulary {
   }
 
   public Optional<Term<?>> lookupTerm(Name name) {
-    // TODO more efficient implementation
-    return vocab.stream().filter(t -> t.getName().equals(name) || t.getAliases().stream().anyMatch(n -> n.equals(name))).findAny();
+    return Optional.ofNullable(index.get(name));
   }
 
   public Collection<Term<?>> getTerms() {
@@ -56,7 +77,7 @@ public class Vocabulary {
   }
 
   public boolean hasTerm(Name name) {
-    return lookupTerm(name).isPresent();
+    return index.containsKey(name);
   }
 
   public int size() {
@@ -0,0 +1,79 @@
+package org.uwh.model.batch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.uwh.model.io.ByteBufferDeSer;
+
+
+/**
+ * Column of strings (as UTF-8) or byte arrays kept in one shared byte array with per-row
+ * offset and length. Overwritten values leave their old bytes behind until the batch is
+ * serialized and read again.
+ */
+class BytesColumn extends Column {
+  private final boolean strings;
+  private int[] offsets;
+  private int[] lengths;
+  private byte[] data;
+  private int dataSize;
+
+  BytesColumn(boolean strings, int capacity) {
+    super(capacity);
+    this.strings = strings;
+    offsets = new int[capacity];
+    lengths = new int[capacity];
+    data = new byte[Math.max(64, capacity * 8)];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > offsets.length) {
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+    }
+  }
+
+  private void append(int row, byte[] bytes, int off, int len) {
+    if (dataSize + len > data.length) {
+      data = Arrays.copyOf(data, Math.max(dataSize + len, data.length * 2));
+    }
+    System.arraycopy(bytes, off, data, dataSize, len);
+    offsets[row] = dataSize;
+    lengths[row] = len;
+    dataSize += len;
+  }
+
+  @Override
+  Object getValue(int row) {
+    if (strings) {
+      return new String(data, offsets[row], lengths[row], StandardCharsets.UTF_8);
+    }
+    return Arrays.copyOfRange(data, offsets[row], offsets[row] + lengths[row]);
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    byte[] bytes = strings ? ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+    append(row, bytes, 0, bytes.length);
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) {
+    ByteBufferDeSer.INSTANCE.writeUnsigned(out, lengths[row]);
+    out.put(data, offsets[row], lengths[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) {
+    int len = (int) ByteBufferDeSer.INSTANCE.readUnsigned(in);
+    if (dataSize + len > data.length) {
+      data = Arrays.copyOf(data, Math.max(dataSize + len, data.length * 2));
+    }
+    in.get(data, dataSize, len);
+    offsets[row] = dataSize;
+    lengths[row] = len;
+    dataSize += len;
+  }
+}
@@ -0,0 +1,85 @@
+package org.uwh.model.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Storage of the values of one term across the rows of a {@link RecordBatch}.
+ */
+abstract class Column {
+  private long[] present;
+
+  Column(int capacity) {
+    present = new long[words(capacity)];
+  }
+
+  private static int words(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
+  void grow(int capacity) {
+    if (words(capacity) > present.length) {
+      present = Arrays.copyOf(present, words(capacity));
+    }
+  }
+
+  boolean has(int row) {
+    return (present[row >>> 6] & (1L << row)) != 0;
+  }
+
+  void setPresent(int row, boolean isPresent) {
+    if (isPresent) {
+      present[row >>> 6] |= 1L << row;
+    } else {
+      present[row >>> 6] &= ~(1L << row);
+    }
+  }
+
+  void set(int row, Object value) {
+    if (value == null) {
+      setPresent(row, false);
+    } else {
+      setValue(row, value);
+      setPresent(row, true);
+    }
+  }
+
+  Object get(int row) {
+    return has(row) ? getValue(row) : null;
+  }
+
+  abstract Object getValue(int row);
+
+  abstract void setValue(int row, Object value);
+
+  /**
+   * Writes the presence bitmap followed by the values of all present rows.
+   */
+  void write(ByteBuffer out, int rows) throws IOException {
+    for (int i=0; i<words(rows); i++) {
+      out.putLong(present[i]);
+    }
+    for (int row = 0; row < rows; row++) {
+      if (has(row)) {
+        writeValue(out, row);
+      }
+    }
+  }
+
+  void read(ByteBuffer in, int rows) throws IOException {
+    for (int i=0; i<words(rows); i++) {
+      present[i] = in.getLong();
+    }
+    for (int row = 0; row < rows; row++) {
+      if (has(row)) {
+        readValue(in, row);
+      }
+    }
+  }
+
+  abstract void writeValue(ByteBuffer out, int row) throws IOException;
+
+  abstract void readValue(ByteBuffer in, int row) throws IOException;
+}
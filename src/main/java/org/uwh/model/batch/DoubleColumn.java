@@ -0,0 +1,51 @@
+package org.uwh.model.batch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+class DoubleColumn extends Column {
+  private double[] values;
+
+  DoubleColumn(int capacity) {
+    super(capacity);
+    values = new double[capacity];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  double getDouble(int row) {
+    return values[row];
+  }
+
+  void setDouble(int row, double value) {
+    values[row] = value;
+    setPresent(row, true);
+  }
+
+  @Override
+  Object getValue(int row) {
+    return values[row];
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    values[row] = (Double) value;
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) {
+    out.putDouble(values[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) {
+    values[row] = in.getDouble();
+  }
+}
@@ -0,0 +1,46 @@
+package org.uwh.model.batch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+class FloatColumn extends Column {
+  private float[] values;
+
+  FloatColumn(int capacity) {
+    super(capacity);
+    values = new float[capacity];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  float getFloat(int row) {
+    return values[row];
+  }
+
+  @Override
+  Object getValue(int row) {
+    return values[row];
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    values[row] = (Float) value;
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) {
+    out.putFloat(values[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) {
+    values[row] = in.getFloat();
+  }
+}
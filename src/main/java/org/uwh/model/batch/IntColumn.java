@@ -0,0 +1,51 @@
+package org.uwh.model.batch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+class IntColumn extends Column {
+  private int[] values;
+
+  IntColumn(int capacity) {
+    super(capacity);
+    values = new int[capacity];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  int getInt(int row) {
+    return values[row];
+  }
+
+  void setInt(int row, int value) {
+    values[row] = value;
+    setPresent(row, true);
+  }
+
+  @Override
+  Object getValue(int row) {
+    return values[row];
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    values[row] = (Integer) value;
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) {
+    out.putInt(values[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) {
+    values[row] = in.getInt();
+  }
+}
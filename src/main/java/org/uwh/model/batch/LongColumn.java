@@ -0,0 +1,72 @@
+package org.uwh.model.batch;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.uwh.model.types.DateType;
+import org.uwh.model.types.TimestampType;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Column of longs, also used for dates (epoch day) and timestamps (epoch milli).
+ */
+class LongColumn extends Column {
+  private final Type<?> type;
+  private long[] values;
+
+  LongColumn(Type<?> type, int capacity) {
+    super(capacity);
+    this.type = type;
+    values = new long[capacity];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  long getLong(int row) {
+    return values[row];
+  }
+
+  void setLong(int row, long value) {
+    values[row] = value;
+    setPresent(row, true);
+  }
+
+  @Override
+  Object getValue(int row) {
+    if (type instanceof DateType) {
+      return LocalDate.ofEpochDay(values[row]);
+    } else if (type instanceof TimestampType) {
+      return Instant.ofEpochMilli(values[row]);
+    }
+    return values[row];
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    if (value instanceof LocalDate) {
+      values[row] = ((LocalDate) value).toEpochDay();
+    } else if (value instanceof Instant) {
+      values[row] = ((Instant) value).toEpochMilli();
+    } else {
+      values[row] = (Long) value;
+    }
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) {
+    out.putLong(values[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) {
+    values[row] = in.getLong();
+  }
+}
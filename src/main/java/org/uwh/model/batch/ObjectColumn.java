@@ -0,0 +1,58 @@
+package org.uwh.model.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.uwh.model.io.ByteBufferDeSer;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Fallback column for lists, maps and unions holding the values as objects.
+ */
+class ObjectColumn extends Column {
+  private final Type type;
+  private Object[] values;
+
+  ObjectColumn(Type<?> type, int capacity) {
+    super(capacity);
+    this.type = type;
+    values = new Object[capacity];
+  }
+
+  @Override
+  void grow(int capacity) {
+    super.grow(capacity);
+    if (capacity > values.length) {
+      values = Arrays.copyOf(values, capacity);
+    }
+  }
+
+  @Override
+  void set(int row, Object value) {
+    super.set(row, value);
+    if (value == null) {
+      values[row] = null;
+    }
+  }
+
+  @Override
+  Object getValue(int row) {
+    return values[row];
+  }
+
+  @Override
+  void setValue(int row, Object value) {
+    values[row] = value;
+  }
+
+  @Override
+  void writeValue(ByteBuffer out, int row) throws IOException {
+    type.serialize(ByteBufferDeSer.INSTANCE, out, values[row]);
+  }
+
+  @Override
+  void readValue(ByteBuffer in, int row) throws IOException {
+    values[row] = type.deserialize(ByteBufferDeSer.INSTANCE, in);
+  }
+}
@@ -0,0 +1,274 @@
+package org.uwh.model.batch;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.io.ByteBufferDeSer;
+import org.uwh.model.io.Codec;
+import org.uwh.model.io.GrowableBuffer;
+import org.uwh.model.types.BytesType;
+import org.uwh.model.types.DateType;
+import org.uwh.model.types.DoubleType;
+import org.uwh.model.types.FloatType;
+import org.uwh.model.types.IntType;
+import org.uwh.model.types.LongType;
+import org.uwh.model.types.StringType;
+import org.uwh.model.types.TimestampType;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Columnar container for records of the same schema. Each term is stored in its own column:
+ * primitive arrays for numeric, date and timestamp terms, a shared byte array with offsets for
+ * string and bytes terms, and plain objects for everything else. Presence of a value is tracked
+ * per column in a bitmap.
+ *
+ * <p>The binary form is the context fingerprint, the row count and the number of columns,
+ * followed by tag, presence bitmap and densely packed values of every column.
+ */
+public class RecordBatch {
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final Context ctx;
+  private final Schema schema;
+  private final Codec codec;
+  // columns by tag, created on first value
+  private final Column[] columns;
+  private int size;
+  private int capacity;
+
+  public RecordBatch(Context ctx, Schema schema) {
+    this(ctx, schema, DEFAULT_CAPACITY);
+  }
+
+  public RecordBatch(Context ctx, Schema schema, int initialCapacity) {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.codec = ctx.getCodec();
+    this.columns = new Column[codec.size()];
+    this.capacity = Math.max(initialCapacity, 1);
+  }
+
+  public Context getContext() {
+    return ctx;
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static Column createColumn(Type<?> type, int capacity) {
+    if (type instanceof IntType) {
+      return new IntColumn(capacity);
+    } else if (type instanceof LongType || type instanceof DateType || type instanceof TimestampType) {
+      return new LongColumn(type, capacity);
+    } else if (type instanceof DoubleType) {
+      return new DoubleColumn(capacity);
+    } else if (type instanceof FloatType) {
+      return new FloatColumn(capacity);
+    } else if (type instanceof StringType) {
+      return new BytesColumn(true, capacity);
+    } else if (type instanceof BytesType) {
+      return new BytesColumn(false, capacity);
+    } else {
+      return new ObjectColumn(type, capacity);
+    }
+  }
+
+  private int tag(Term<?> t) {
+    int tag = codec.tagOf(t);
+    if (tag < 0) {
+      throw new IllegalArgumentException("Term " + t.getName() + " is not part of the vocabulary");
+    }
+    return tag;
+  }
+
+  private Column column(int tag) {
+    Column col = columns[tag];
+    if (col == null) {
+      col = createColumn(codec.typeOf(tag), capacity);
+      columns[tag] = col;
+    }
+    return col;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " out of bounds for batch of size " + size);
+    }
+  }
+
+  /**
+   * Appends an empty row and returns its index.
+   */
+  public int addRow() {
+    if (size == capacity) {
+      capacity *= 2;
+      for (Column col : columns) {
+        if (col != null) {
+          col.grow(capacity);
+        }
+      }
+    }
+    return size++;
+  }
+
+  /**
+   * Appends a copy of the values of the record and returns the row index.
+   */
+  public int add(Record rec) {
+    int row = addRow();
+    for (Map.Entry<Term<?>, Object> e : rec.getValues().entrySet()) {
+      column(tag(e.getKey())).set(row, e.getValue());
+    }
+    return row;
+  }
+
+  public <T> void set(int row, Term<T> t, T value) {
+    checkRow(row);
+    if (!schema.isValidTerm(ctx, t)) {
+      throw new IllegalArgumentException("Term " + t + " is not valid for schema " + schema);
+    }
+    column(tag(t)).set(row, value);
+  }
+
+  /**
+   * Stores the value without validation against the schema, a null value removes it.
+   */
+  void store(int row, Term<?> t, Object value) {
+    checkRow(row);
+    column(tag(t)).set(row, value);
+  }
+
+  /**
+   * Removes all values of the row.
+   */
+  void clear(int row) {
+    checkRow(row);
+    for (Column col : columns) {
+      if (col != null) {
+        col.setPresent(row, false);
+      }
+    }
+  }
+
+  public boolean has(int row, Term<?> t) {
+    checkRow(row);
+    Column col = columns[tag(t)];
+    return col != null && col.has(row);
+  }
+
+  public <T> T get(int row, Term<T> t) {
+    checkRow(row);
+    Column col = columns[tag(t)];
+    return (col == null) ? null : (T) col.get(row);
+  }
+
+  private <C extends Column> C primitiveColumn(int row, Term<?> t, Class<C> clazz) {
+    checkRow(row);
+    Column col = columns[tag(t)];
+    if (!clazz.isInstance(col) || !col.has(row)) {
+      throw new IllegalStateException("No " + t.getType() + " value for " + t.getName() + " in row " + row);
+    }
+    return clazz.cast(col);
+  }
+
+  public int getInt(int row, Term<Integer> t) {
+    return primitiveColumn(row, t, IntColumn.class).getInt(row);
+  }
+
+  public long getLong(int row, Term<Long> t) {
+    return primitiveColumn(row, t, LongColumn.class).getLong(row);
+  }
+
+  public double getDouble(int row, Term<Double> t) {
+    return primitiveColumn(row, t, DoubleColumn.class).getDouble(row);
+  }
+
+  public float getFloat(int row, Term<Float> t) {
+    return primitiveColumn(row, t, FloatColumn.class).getFloat(row);
+  }
+
+  /**
+   * @return a record view of the row, reads and writes go straight to the columns of the batch
+   */
+  public Record getRecord(int row) {
+    checkRow(row);
+    return new RowRecord(this, row);
+  }
+
+  Map<Term<?>, Object> rowValues(int row, Map<Term<?>, Object> out) {
+    for (int tag=0; tag<columns.length; tag++) {
+      if (columns[tag] != null && columns[tag].has(row)) {
+        out.put(codec.termOf(tag), columns[tag].getValue(row));
+      }
+    }
+    return out;
+  }
+
+  public void writeTo(GrowableBuffer out) throws IOException {
+    int start = out.buffer().position();
+    while (true) {
+      try {
+        writeTo(out.buffer());
+        return;
+      } catch (BufferOverflowException e) {
+        out.buffer().position(start);
+        out.grow(out.capacity() * 2);
+      }
+    }
+  }
+
+  /**
+   * @throws BufferOverflowException if the batch does not fit
+   */
+  public void writeTo(ByteBuffer out) throws IOException {
+    ByteBufferDeSer deser = ByteBufferDeSer.INSTANCE;
+    int columnCount = 0;
+    for (Column col : columns) {
+      if (col != null) {
+        columnCount++;
+      }
+    }
+
+    out.putLong(codec.getFingerprint());
+    deser.writeUnsigned(out, size);
+    deser.writeUnsigned(out, columnCount);
+    for (int tag=0; tag<columns.length; tag++) {
+      if (columns[tag] != null) {
+        deser.writeUnsigned(out, tag);
+        columns[tag].write(out, size);
+      }
+    }
+  }
+
+  public static RecordBatch read(Context ctx, Schema schema, ByteBuffer in) throws IOException {
+    ByteBufferDeSer deser = ByteBufferDeSer.INSTANCE;
+    long fingerprint = in.getLong();
+    if (fingerprint != ctx.getCodec().getFingerprint()) {
+      throw new IOException("Batch was written with a different context, fingerprint " + Long.toHexString(fingerprint));
+    }
+    int rows = (int) deser.readUnsigned(in);
+    int columnCount = (int) deser.readUnsigned(in);
+
+    RecordBatch batch = new RecordBatch(ctx, schema, rows);
+    batch.size = rows;
+    for (int i=0; i<columnCount; i++) {
+      int tag = (int) deser.readUnsigned(in);
+      if (tag < 0 || tag >= batch.columns.length) {
+        throw new IOException("No term defined for tag " + tag);
+      }
+      batch.column(tag).read(in, rows);
+    }
+    return batch;
+  }
+}
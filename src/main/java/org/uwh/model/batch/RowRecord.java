@@ -0,0 +1,89 @@
+package org.uwh.model.batch;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.uwh.model.Record;
+import org.uwh.model.Term;
+import org.uwh.model.io.Codec;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Record view of a single row of a {@link RecordBatch}. All values are read from and written to
+ * the columns of the batch.
+ */
+class RowRecord extends Record {
+  private final RecordBatch batch;
+  private final int row;
+
+  RowRecord(RecordBatch batch, int row) {
+    super(batch.getContext(), batch.getSchema());
+    this.batch = batch;
+    this.row = row;
+  }
+
+  @Override
+  public <T> void put(Term<T> t, T value) {
+    batch.set(row, t, value);
+  }
+
+  @Override
+  protected void store(Term<?> t, Object value) {
+    batch.store(row, t, value);
+  }
+
+  @Override
+  protected void storeBits(Term<?> t, long value) {
+    batch.store(row, t, t.getType().fromBits(value));
+  }
+
+  @Override
+  public void clear() {
+    batch.clear(row);
+  }
+
+  @Override
+  protected long bitsOf(Term<?> t) {
+    Object value = get(t);
+    if (value == null) {
+      throw new IllegalStateException("No value for " + t.getName() + " in row " + row);
+    }
+    return ((Type) t.getType()).toBits(value);
+  }
+
+  @Override
+  protected int[] presentIndices(Codec codec) {
+    return null;
+  }
+
+  @Override
+  public boolean has(Term<?> t) {
+    return getContext().getCodec().tagOf(t) >= 0 && batch.has(row, t);
+  }
+
+  @Override
+  public <T> T get(Term<T> t) {
+    return getContext().getCodec().tagOf(t) >= 0 ? batch.get(row, t) : null;
+  }
+
+  @Override
+  public int size() {
+    return getValues().size();
+  }
+
+  @Override
+  public void forEachValue(ValueVisitor visitor) throws IOException {
+    for (Map.Entry<Term<?>, Object> e : getValues().entrySet()) {
+      visitor.visit(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * @return a snapshot of the values of the row
+   */
+  @Override
+  public Map<Term<?>, Object> getValues() {
+    return batch.rowValues(row, new HashMap<>());
+  }
+}
@@ -3,8 +3,31 @@ package org.uwh.model.io;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class BinaryDeSer implements DeSer<DataInputStream, DataOutputStream> {
+  private static final int BLOCK_VALUES = 512;
+
+  private final boolean legacyStrings;
+
+  public BinaryDeSer() {
+    this(false);
+  }
+
+  public BinaryDeSer(boolean legacyStrings) {
+    this.legacyStrings = legacyStrings;
+  }
+
+  @Override
+  public boolean usesLegacyStrings() {
+    return legacyStrings;
+  }
+
+  @Override
+  public BinaryDeSer withLegacyStrings(boolean legacy) {
+    return (legacy == legacyStrings) ? this : new BinaryDeSer(legacy);
+  }
   @Override
   public void writeInt(DataOutputStream os, int i) throws IOException {
     int zigzag = (i << 1) ^ (i >> 31);
@@ -56,6 +79,21 @@ public class BinaryDeSer implements DeSer<DataInputStream, DataOutputStream> {
     return res;
   }
 
+  @Override
+  public void writeByte(DataOutputStream os, int b) throws IOException {
+    os.write(b);
+  }
+
+  @Override
+  public int readByte(DataInputStream is) throws IOException {
+    return is.readUnsignedByte();
+  }
+
+  @Override
+  public void skip(DataInputStream is, int n) throws IOException {
+    is.skipNBytes(n);
+  }
+
   @Override
   public void writeDouble(DataOutputStream os, double d) throws IOException {
     os.writeDouble(d);
@@ -76,14 +114,70 @@ public class BinaryDeSer implements DeSer<DataInputStream, DataOutputStream> {
     return is.readFloat();
   }
 
+  /**
+   * Converts blocks of values through a byte array so the stream sees a few large writes.
+   */
+  @Override
+  public void writeDoubles(DataOutputStream os, double[] values, int off, int len) throws IOException {
+    byte[] block = new byte[Math.min(len, BLOCK_VALUES) << 3];
+    for (int i=0; i<len; i+=BLOCK_VALUES) {
+      int n = Math.min(len - i, BLOCK_VALUES);
+      ByteBuffer.wrap(block).asDoubleBuffer().put(values, off + i, n);
+      os.write(block, 0, n << 3);
+    }
+  }
+
+  @Override
+  public void readDoubles(DataInputStream is, double[] dst, int off, int len) throws IOException {
+    byte[] block = new byte[Math.min(len, BLOCK_VALUES) << 3];
+    for (int i=0; i<len; i+=BLOCK_VALUES) {
+      int n = Math.min(len - i, BLOCK_VALUES);
+      is.readFully(block, 0, n << 3);
+      ByteBuffer.wrap(block).asDoubleBuffer().get(dst, off + i, n);
+    }
+  }
+
+  @Override
+  public void writeFloats(DataOutputStream os, float[] values, int off, int len) throws IOException {
+    byte[] block = new byte[Math.min(len, BLOCK_VALUES) << 2];
+    for (int i=0; i<len; i+=BLOCK_VALUES) {
+      int n = Math.min(len - i, BLOCK_VALUES);
+      ByteBuffer.wrap(block).asFloatBuffer().put(values, off + i, n);
+      os.write(block, 0, n << 2);
+    }
+  }
+
+  @Override
+  public void readFloats(DataInputStream is, float[] dst, int off, int len) throws IOException {
+    byte[] block = new byte[Math.min(len, BLOCK_VALUES) << 2];
+    for (int i=0; i<len; i+=BLOCK_VALUES) {
+      int n = Math.min(len - i, BLOCK_VALUES);
+      is.readFully(block, 0, n << 2);
+      ByteBuffer.wrap(block).asFloatBuffer().get(dst, off + i, n);
+    }
+  }
+
   @Override
   public void writeString(DataOutputStream os, String s) throws IOException {
-    os.writeUTF(s);
+    if (legacyStrings) {
+      os.writeUTF(s);
+    } else {
+      writeBytes(os, s.getBytes(StandardCharsets.UTF_8));
+    }
   }
 
   @Override
   public String readString(DataInputStream is) throws IOException {
-    return is.readUTF();
+    if (legacyStrings) {
+      return is.readUTF();
+    }
+    byte[] bytes = readBytes(is);
+    for (byte b : bytes) {
+      if (b < 0) {
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return new String(bytes, StandardCharsets.ISO_8859_1);
   }
 
   @Override
@@ -0,0 +1,103 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Compression codecs of the blocks of a {@link BlockRecordWriter} stream. The id of the codec is
+ * stored with every block.
+ */
+public enum BlockCompression {
+  /** Blocks are stored as is, also used for blocks that do not compress. */
+  NONE(0),
+  /** Raw deflate, smallest output. */
+  DEFLATE(1),
+  /** Built-in LZ codec, see {@link LzCodec}, fastest to compress and decompress. */
+  LZ(2);
+
+  private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+  private final int id;
+
+  BlockCompression(int id) {
+    this.id = id;
+  }
+
+  int getId() {
+    return id;
+  }
+
+  static BlockCompression forId(int id) throws IOException {
+    for (BlockCompression c : values()) {
+      if (c.id == id) {
+        return c;
+      }
+    }
+    throw new IOException("Unknown block compression " + id);
+  }
+
+  /**
+   * Compresses len bytes of src into dst.
+   *
+   * @return the compressed length or -1 if the block does not get smaller
+   */
+  int compress(byte[] src, int len, byte[] dst) {
+    switch (this) {
+      case DEFLATE: {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(src, 0, len);
+        deflater.finish();
+        int n = deflater.deflate(dst, 0, Math.min(dst.length, len));
+        return deflater.finished() ? n : -1;
+      }
+      case LZ: {
+        int n = LzCodec.compress(src, 0, len, dst);
+        return (n < len) ? n : -1;
+      }
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * @return the size of the buffer compress needs for a block of len bytes
+   */
+  int maxCompressedLength(int len) {
+    return (this == LZ) ? LzCodec.maxCompressedLength(len) : len;
+  }
+
+  /**
+   * Decompresses len bytes of src into exactly rawLength bytes of dst.
+   */
+  void decompress(byte[] src, int off, int len, byte[] dst, int rawLength) throws IOException {
+    switch (this) {
+      case NONE:
+        if (len != rawLength) {
+          throw new IOException("Stored block of " + len + " bytes, expected " + rawLength);
+        }
+        System.arraycopy(src, off, dst, 0, len);
+        break;
+      case DEFLATE: {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(src, off, len);
+        try {
+          int n = inflater.inflate(dst, 0, rawLength);
+          if (n != rawLength || !inflater.finished()) {
+            throw new IOException("Deflate block decompressed to " + n + " bytes, expected " + rawLength);
+          }
+        } catch (DataFormatException e) {
+          throw new IOException("Corrupt deflate block", e);
+        }
+        break;
+      }
+      default:
+        LzCodec.decompress(src, off, len, dst, rawLength);
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+
+
+/**
+ * Reads a stream of records written by {@link BlockRecordWriter}. The stream header is validated
+ * against the fingerprint of the reader's context and the checksum of every block is verified
+ * before it is decompressed.
+ *
+ * <p>Given an executor, up to {@link BlockRecordWriter#MAX_PENDING_BLOCKS} blocks are read ahead and
+ * decompressed in parallel. Not thread-safe.
+ */
+public class BlockRecordReader implements Closeable {
+  private final Context ctx;
+  private final Schema schema;
+  private final DataInputStream is;
+  private final Executor executor;
+  private final Deque<CompletableFuture<ByteBuffer>> pending = new ArrayDeque<>();
+  private ByteBuffer block = ByteBuffer.allocate(0);
+  private boolean eof;
+  private long recordCount;
+
+  public BlockRecordReader(Context ctx, Schema schema, InputStream is) throws IOException {
+    this(ctx, schema, is, null);
+  }
+
+  /**
+   * @param executor executor to decompress blocks on or null to decompress them on the reading thread
+   */
+  public BlockRecordReader(Context ctx, Schema schema, InputStream is, Executor executor) throws IOException {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.is = new DataInputStream(is);
+    this.executor = executor;
+
+    byte[] header = new byte[BlockRecordWriter.HEADER_SIZE];
+    try {
+      this.is.readFully(header);
+    } catch (EOFException e) {
+      throw new EOFException("Stream ended before header");
+    }
+    ByteBuffer buf = ByteBuffer.wrap(header);
+    if (buf.getInt() != BlockRecordWriter.MAGIC) {
+      throw new IOException("Not a block record stream");
+    }
+    byte version = buf.get();
+    if (version != BlockRecordWriter.VERSION) {
+      throw new IOException("Unsupported block record stream version " + version);
+    }
+    long fingerprint = buf.getLong();
+    if (fingerprint != ctx.getCodec().getFingerprint()) {
+      throw new IOException("Stream was written with a different context, fingerprint " + Long.toHexString(fingerprint));
+    }
+  }
+
+  /**
+   * @return the stored block or null at the end of the stream
+   */
+  private StoredBlock readBlock() throws IOException {
+    if (eof) {
+      return null;
+    }
+    int first = is.read();
+    if (first < 0) {
+      eof = true;
+      return null;
+    }
+    byte[] header = new byte[BlockRecordWriter.BLOCK_HEADER_SIZE];
+    header[0] = (byte) first;
+    is.readFully(header, 1, header.length - 1);
+    ByteBuffer buf = ByteBuffer.wrap(header, 1, header.length - 1);
+    BlockCompression compression = BlockCompression.forId(first);
+    int rawLength = buf.getInt();
+    int storedLength = buf.getInt();
+    buf.getInt(); // record count
+    int checksum = buf.getInt();
+    if (rawLength < 0 || rawLength > BlockRecordWriter.MAX_RAW_LENGTH
+        || storedLength < 0 || storedLength > compression.maxCompressedLength(rawLength)) {
+      throw new IOException("Corrupt block header");
+    }
+    byte[] stored = new byte[storedLength];
+    is.readFully(stored);
+    return new StoredBlock(compression, rawLength, stored, checksum);
+  }
+
+  private static ByteBuffer decode(StoredBlock stored) throws IOException {
+    CRC32C crc = new CRC32C();
+    crc.update(stored.data);
+    if ((int) crc.getValue() != stored.checksum) {
+      throw new IOException("Block checksum mismatch");
+    }
+    byte[] raw = new byte[stored.rawLength];
+    stored.compression.decompress(stored.data, 0, stored.data.length, raw, stored.rawLength);
+    return ByteBuffer.wrap(raw);
+  }
+
+  /**
+   * @return the next decompressed block or null at the end of the stream
+   */
+  private ByteBuffer nextBlock() throws IOException {
+    if (executor == null) {
+      StoredBlock stored = readBlock();
+      return (stored == null) ? null : decode(stored);
+    }
+
+    while (pending.size() < BlockRecordWriter.MAX_PENDING_BLOCKS) {
+      StoredBlock stored = readBlock();
+      if (stored == null) {
+        break;
+      }
+      pending.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return decode(stored);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, executor));
+    }
+    if (pending.isEmpty()) {
+      return null;
+    }
+    try {
+      return pending.poll().join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return the next record or null at the end of the stream
+   */
+  public Record read() throws IOException {
+    while (!block.hasRemaining()) {
+      block = nextBlock();
+      if (block == null) {
+        block = ByteBuffer.allocate(0);
+        return null;
+      }
+    }
+    if (block.remaining() < RecordWriter.LENGTH_SIZE) {
+      throw new EOFException("Truncated frame length");
+    }
+    int length = block.getInt();
+    if (length < 0 || length > block.remaining()) {
+      throw new EOFException("Truncated frame, expected " + length + " bytes");
+    }
+
+    int end = block.position() + length;
+    int limit = block.limit();
+    block.limit(end);
+    Record rec = DeSerUtil.deserialize(ctx, schema, block);
+    block.limit(limit).position(end);
+    recordCount++;
+    return rec;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    is.close();
+  }
+
+  private static final class StoredBlock {
+    private final BlockCompression compression;
+    private final int rawLength;
+    private final byte[] data;
+    private final int checksum;
+
+    StoredBlock(BlockCompression compression, int rawLength, byte[] data, int checksum) {
+      this.compression = compression;
+      this.rawLength = rawLength;
+      this.checksum = checksum;
+      this.data = data;
+    }
+  }
+}
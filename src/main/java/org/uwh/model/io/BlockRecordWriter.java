@@ -0,0 +1,186 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+
+
+/**
+ * Writes a stream of records compressed in blocks.
+ *
+ * <p>The stream starts with a header of magic, format version and the fingerprint of the
+ * context's {@link Codec}. Records are framed as in {@link RecordWriter}, a four byte length and the
+ * serialized record, and the frames are collected into blocks of roughly {@code blockSize} bytes.
+ * Every block is written with a header of compression id, raw length, stored length, record count
+ * and the CRC32C of the stored bytes, followed by the stored bytes. Blocks that do not get smaller
+ * are stored uncompressed. The block size is at most {@link #MAX_BLOCK_SIZE} and frames at most
+ * {@link RecordWriter#MAX_FRAME_SIZE}, which bounds the raw length readers accept.
+ *
+ * <p>Blocks are independent of each other. Given an executor, blocks are compressed in parallel and
+ * written in order; at most {@link #MAX_PENDING_BLOCKS} blocks are in flight. Not thread-safe.
+ */
+public class BlockRecordWriter implements Closeable, Flushable {
+  static final int MAGIC = 0x444d5242; // "DMRB"
+  static final byte VERSION = 2;
+  static final int HEADER_SIZE = 4 + 1 + 8;
+  static final int BLOCK_HEADER_SIZE = 1 + 4 + 4 + 4 + 4;
+  static final int MAX_PENDING_BLOCKS = 2 * Runtime.getRuntime().availableProcessors();
+  static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+  // a block is submitted once it reaches the block size, so it holds at most one more frame
+  static final int MAX_RAW_LENGTH = MAX_BLOCK_SIZE + RecordWriter.LENGTH_SIZE + RecordWriter.MAX_FRAME_SIZE;
+  private static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+  private final Codec codec;
+  private final OutputStream os;
+  private final BlockCompression compression;
+  private final int blockSize;
+  private final Executor executor;
+  private final GrowableBuffer block;
+  private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+  private int blockRecords;
+  private long recordCount;
+  private long bytesWritten;
+
+  public BlockRecordWriter(Context ctx, OutputStream os) throws IOException {
+    this(ctx, os, BlockCompression.LZ, DEFAULT_BLOCK_SIZE, null);
+  }
+
+  public BlockRecordWriter(Context ctx, OutputStream os, BlockCompression compression, int blockSize) throws IOException {
+    this(ctx, os, compression, blockSize, null);
+  }
+
+  /**
+   * @param executor executor to compress blocks on or null to compress them on the writing thread
+   */
+  public BlockRecordWriter(Context ctx, OutputStream os, BlockCompression compression, int blockSize, Executor executor) throws IOException {
+    if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Block size must be positive and at most " + MAX_BLOCK_SIZE);
+    }
+    this.codec = ctx.getCodec();
+    this.os = os;
+    this.compression = compression;
+    this.blockSize = blockSize;
+    this.executor = executor;
+    this.block = new GrowableBuffer(blockSize + blockSize / 4);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC);
+    header.put(VERSION);
+    header.putLong(codec.getFingerprint());
+    os.write(header.array());
+    bytesWritten = HEADER_SIZE;
+  }
+
+  public void write(Record rec) throws IOException {
+    block.ensureRemaining(RecordWriter.LENGTH_SIZE);
+    int start = block.buffer().position();
+    while (true) {
+      ByteBuffer buf = block.buffer();
+      try {
+        buf.position(start + RecordWriter.LENGTH_SIZE);
+        codec.write(ByteBufferDeSer.INSTANCE, buf, rec, false);
+        int length = buf.position() - start - RecordWriter.LENGTH_SIZE;
+        if (length > RecordWriter.MAX_FRAME_SIZE) {
+          buf.position(start);
+          throw new IOException("Record of " + length + " bytes exceeds the max frame size");
+        }
+        buf.putInt(start, length);
+        break;
+      } catch (BufferOverflowException e) {
+        buf.position(start);
+        block.grow(block.capacity() * 2);
+      }
+    }
+    blockRecords++;
+    recordCount++;
+
+    if (block.buffer().position() >= blockSize) {
+      submitBlock();
+    }
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return the number of compressed bytes written to the stream so far
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  private void submitBlock() throws IOException {
+    if (blockRecords == 0) {
+      return;
+    }
+    byte[] raw = block.toByteArray();
+    int records = blockRecords;
+    block.clear();
+    blockRecords = 0;
+
+    if (executor == null) {
+      writeBlock(encode(raw, records));
+      return;
+    }
+    if (pending.size() >= MAX_PENDING_BLOCKS) {
+      writeBlock(pending.poll().join());
+    }
+    pending.add(CompletableFuture.supplyAsync(() -> encode(raw, records), executor));
+  }
+
+  private byte[] encode(byte[] raw, int records) {
+    byte[] compressed = new byte[compression.maxCompressedLength(raw.length)];
+    int len = compression.compress(raw, raw.length, compressed);
+    BlockCompression used = compression;
+    if (len < 0) {
+      used = BlockCompression.NONE;
+      compressed = raw;
+      len = raw.length;
+    }
+
+    CRC32C crc = new CRC32C();
+    crc.update(compressed, 0, len);
+    ByteBuffer buf = ByteBuffer.allocate(BLOCK_HEADER_SIZE + len);
+    buf.put((byte) used.getId());
+    buf.putInt(raw.length);
+    buf.putInt(len);
+    buf.putInt(records);
+    buf.putInt((int) crc.getValue());
+    buf.put(compressed, 0, len);
+    return buf.array();
+  }
+
+  private void writeBlock(byte[] encoded) throws IOException {
+    os.write(encoded);
+    bytesWritten += encoded.length;
+  }
+
+  /**
+   * Ends the current block, even if it is not full, and writes all pending blocks.
+   */
+  @Override
+  public void flush() throws IOException {
+    submitBlock();
+    while (!pending.isEmpty()) {
+      writeBlock(pending.poll().join());
+    }
+    os.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    os.close();
+  }
+}
@@ -0,0 +1,45 @@
+package org.uwh.model.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Thread-safe pool of {@link GrowableBuffer}s. Buffers are cleared on release; at most
+ * {@code maxPooled} buffers are retained, surplus buffers are left to the garbage collector.
+ */
+public class BufferPool {
+  private final Queue<GrowableBuffer> pool = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final int initialCapacity;
+  private final boolean direct;
+  private final int maxPooled;
+
+  public BufferPool(int initialCapacity, boolean direct, int maxPooled) {
+    this.initialCapacity = initialCapacity;
+    this.direct = direct;
+    this.maxPooled = maxPooled;
+  }
+
+  public GrowableBuffer acquire() {
+    GrowableBuffer buf = pool.poll();
+    if (buf == null) {
+      return new GrowableBuffer(initialCapacity, direct);
+    }
+    pooled.decrementAndGet();
+    return buf;
+  }
+
+  public void release(GrowableBuffer buf) {
+    if (buf.isDirect() != direct) {
+      throw new IllegalArgumentException("Buffer does not belong to this pool");
+    }
+    if (pooled.incrementAndGet() > maxPooled) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buf.clear();
+    pool.offer(buf);
+  }
+}
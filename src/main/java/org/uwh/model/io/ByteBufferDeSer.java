@@ -0,0 +1,372 @@
+package org.uwh.model.io;
+
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * {@link DeSer} over heap or direct {@link ByteBuffer}s producing the same encoding as
+ * {@link BinaryDeSer}. Reads and writes are relative to the buffer position, buffers are
+ * expected to use the default big-endian byte order. Writes past the limit of the buffer
+ * throw {@link java.nio.BufferOverflowException}.
+ */
+public class ByteBufferDeSer implements DeSer<ByteBuffer, ByteBuffer> {
+  public static final ByteBufferDeSer INSTANCE = new ByteBufferDeSer(false);
+  /** Reads and writes strings in the encoding of the original record format. */
+  public static final ByteBufferDeSer LEGACY = new ByteBufferDeSer(true);
+
+  private final boolean legacyStrings;
+
+  private ByteBufferDeSer(boolean legacyStrings) {
+    this.legacyStrings = legacyStrings;
+  }
+
+  @Override
+  public boolean usesLegacyStrings() {
+    return legacyStrings;
+  }
+
+  @Override
+  public ByteBufferDeSer withLegacyStrings(boolean legacy) {
+    return legacy ? LEGACY : INSTANCE;
+  }
+
+  @Override
+  public void writeInt(ByteBuffer buf, int i) {
+    int zigzag = (i << 1) ^ (i >> 31);
+    writeUnsigned(buf, zigzag & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public int readInt(ByteBuffer buf) {
+    long zigzag = readUnsigned(buf);
+    return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+  }
+
+  @Override
+  public void writeLong(ByteBuffer buf, long l) {
+    long zigzag = (l << 1) ^ (l >> 63);
+    writeUnsigned(buf, zigzag);
+  }
+
+  @Override
+  public long readLong(ByteBuffer buf) {
+    long zigzag = readUnsigned(buf);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  @Override
+  public void writeUnsigned(ByteBuffer buf, long i) {
+    while ((i & ~127L) != 0) {
+      buf.put((byte) ((i & 127) | 128));
+      i >>>= 7;
+    }
+    buf.put((byte) i);
+  }
+
+  @Override
+  public long readUnsigned(ByteBuffer buf) {
+    long res = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buf.get();
+      res |= ((long) (b & 127)) << shift;
+      shift += 7;
+    } while ((b & 128) != 0);
+    return res;
+  }
+
+  @Override
+  public void writeByte(ByteBuffer buf, int b) {
+    buf.put((byte) b);
+  }
+
+  @Override
+  public int readByte(ByteBuffer buf) {
+    return buf.get() & 0xFF;
+  }
+
+  @Override
+  public void skip(ByteBuffer buf, int n) {
+    buf.position(buf.position() + n);
+  }
+
+  @Override
+  public void writeDouble(ByteBuffer buf, double d) {
+    buf.putDouble(d);
+  }
+
+  @Override
+  public double readDouble(ByteBuffer buf) {
+    return buf.getDouble();
+  }
+
+  @Override
+  public void writeFloat(ByteBuffer buf, float f) {
+    buf.putFloat(f);
+  }
+
+  @Override
+  public float readFloat(ByteBuffer buf) {
+    return buf.getFloat();
+  }
+
+  @Override
+  public void readInts(ByteBuffer buf, int[] dst, int off, int len) {
+    if (!buf.hasArray()) {
+      for (int i=0; i<len; i++) {
+        dst[off + i] = readInt(buf);
+      }
+      return;
+    }
+    byte[] a = buf.array();
+    int base = buf.arrayOffset();
+    int pos = base + buf.position();
+    int limit = base + buf.limit();
+    for (int i=0; i<len; i++) {
+      long zigzag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (pos == limit) {
+          throw new BufferUnderflowException();
+        }
+        b = a[pos++];
+        zigzag |= ((long) (b & 127)) << shift;
+        shift += 7;
+      } while ((b & 128) != 0);
+      dst[off + i] = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+    buf.position(pos - base);
+  }
+
+  /**
+   * Decodes the varint run straight from the backing array of heap buffers.
+   */
+  @Override
+  public void readLongs(ByteBuffer buf, long[] dst, int off, int len) {
+    if (!buf.hasArray()) {
+      for (int i=0; i<len; i++) {
+        dst[off + i] = readLong(buf);
+      }
+      return;
+    }
+    byte[] a = buf.array();
+    int base = buf.arrayOffset();
+    int pos = base + buf.position();
+    int limit = base + buf.limit();
+    for (int i=0; i<len; i++) {
+      long zigzag = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (pos == limit) {
+          throw new BufferUnderflowException();
+        }
+        b = a[pos++];
+        zigzag |= ((long) (b & 127)) << shift;
+        shift += 7;
+      } while ((b & 128) != 0);
+      dst[off + i] = (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+    buf.position(pos - base);
+  }
+
+  @Override
+  public void writeDoubles(ByteBuffer buf, double[] values, int off, int len) {
+    buf.asDoubleBuffer().put(values, off, len);
+    buf.position(buf.position() + (len << 3));
+  }
+
+  @Override
+  public void readDoubles(ByteBuffer buf, double[] dst, int off, int len) {
+    buf.asDoubleBuffer().get(dst, off, len);
+    buf.position(buf.position() + (len << 3));
+  }
+
+  @Override
+  public void writeFloats(ByteBuffer buf, float[] values, int off, int len) {
+    buf.asFloatBuffer().put(values, off, len);
+    buf.position(buf.position() + (len << 2));
+  }
+
+  @Override
+  public void readFloats(ByteBuffer buf, float[] dst, int off, int len) {
+    buf.asFloatBuffer().get(dst, off, len);
+    buf.position(buf.position() + (len << 2));
+  }
+
+  /**
+   * Writes the string as varint length followed by UTF-8. ASCII strings are copied straight into
+   * heap buffers.
+   */
+  @Override
+  @SuppressWarnings("deprecation")
+  public void writeString(ByteBuffer buf, String s) throws UTFDataFormatException {
+    if (legacyStrings) {
+      writeModifiedUtf8(buf, s);
+      return;
+    }
+
+    int len = s.length();
+    int i = 0;
+    while (i < len && s.charAt(i) < 0x80) {
+      i++;
+    }
+    if (i < len) {
+      writeBytes(buf, s.getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+
+    writeUnsigned(buf, len);
+    if (buf.remaining() < len) {
+      throw new BufferOverflowException();
+    }
+    if (buf.hasArray()) {
+      // copies the low byte of every char, which is the char itself for ASCII
+      s.getBytes(0, len, buf.array(), buf.arrayOffset() + buf.position());
+      buf.position(buf.position() + len);
+    } else {
+      for (i=0; i<len; i++) {
+        buf.put((byte) s.charAt(i));
+      }
+    }
+  }
+
+  @Override
+  public String readString(ByteBuffer buf) throws UTFDataFormatException {
+    if (legacyStrings) {
+      return readModifiedUtf8(buf);
+    }
+
+    int len = (int) readUnsigned(buf);
+    if (len > buf.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    int start = buf.position();
+    int i = 0;
+    while (i < len && buf.get(start + i) >= 0) {
+      i++;
+    }
+    return decode(buf, len, (i == len) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+  }
+
+  private static String decode(ByteBuffer buf, int len, Charset charset) {
+    if (buf.hasArray()) {
+      String res = new String(buf.array(), buf.arrayOffset() + buf.position(), len, charset);
+      buf.position(buf.position() + len);
+      return res;
+    }
+    byte[] bytes = new byte[len];
+    buf.get(bytes);
+    return new String(bytes, charset);
+  }
+
+  @Override
+  public void skipString(ByteBuffer buf) {
+    int len = legacyStrings ? buf.getShort() & 0xFFFF : (int) readUnsigned(buf);
+    skip(buf, len);
+  }
+
+  /**
+   * Writes the string as two byte length followed by modified UTF-8, identical to
+   * {@link java.io.DataOutputStream#writeUTF(String)}.
+   */
+  private static void writeModifiedUtf8(ByteBuffer buf, String s) throws UTFDataFormatException {
+    int len = s.length();
+    int utfLen = len;
+    for (int i=0; i<len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80 || c == 0) {
+        utfLen += (c >= 0x800) ? 2 : 1;
+      }
+    }
+    if (utfLen > 65535) {
+      throw new UTFDataFormatException("Encoded string too long: " + utfLen + " bytes");
+    }
+
+    buf.putShort((short) utfLen);
+    if (utfLen == len) {
+      for (int i=0; i<len; i++) {
+        buf.put((byte) s.charAt(i));
+      }
+      return;
+    }
+
+    for (int i=0; i<len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80 && c != 0) {
+        buf.put((byte) c);
+      } else if (c >= 0x800) {
+        buf.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+        buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        buf.put((byte) (0x80 | (c & 0x3F)));
+      } else {
+        buf.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+        buf.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  private static String readModifiedUtf8(ByteBuffer buf) throws UTFDataFormatException {
+    int utfLen = buf.getShort() & 0xFFFF;
+    int start = buf.position();
+    int i = 0;
+    while (i < utfLen && buf.get(start + i) > 0) {
+      i++;
+    }
+    if (i == utfLen) {
+      return decode(buf, utfLen, StandardCharsets.ISO_8859_1);
+    }
+
+    char[] chars = new char[utfLen];
+    int count = 0;
+    int end = start + utfLen;
+    int pos = start;
+    while (pos < end) {
+      int c = buf.get(pos) & 0xFF;
+      if (c < 0x80) {
+        chars[count++] = (char) c;
+        pos++;
+      } else if ((c >> 5) == 0x06 && pos + 1 < end) {
+        int c2 = buf.get(pos + 1);
+        chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+        pos += 2;
+      } else if ((c >> 4) == 0x0E && pos + 2 < end) {
+        int c2 = buf.get(pos + 1);
+        int c3 = buf.get(pos + 2);
+        chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+        pos += 3;
+      } else {
+        throw new UTFDataFormatException("Malformed input around byte " + (pos - start));
+      }
+    }
+    buf.position(end);
+    return new String(chars, 0, count);
+  }
+
+
+  @Override
+  public void writeBytes(ByteBuffer buf, byte[] bytes) {
+    writeUnsigned(buf, bytes.length);
+    buf.put(bytes);
+  }
+
+  @Override
+  public byte[] readBytes(ByteBuffer buf) {
+    int len = (int) readUnsigned(buf);
+    byte[] res = new byte[len];
+    buf.get(res);
+    return res;
+  }
+
+  @Override
+  public void skipBytes(ByteBuffer buf) {
+    skip(buf, (int) readUnsigned(buf));
+  }
+}
@@ -0,0 +1,438 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.uwh.model.Context;
+import org.uwh.model.Name;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.Vocabulary;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Tag assignment of a vocabulary, compiled once per {@link Context} and shared by all
+ * serialization calls against it. Tags are the positions of the terms sorted by qualified name.
+ * Instances are immutable and therefore safe to share between threads.
+ *
+ * <p>A record is encoded as the two byte format marker, {@code 0x80 | FORMAT_VERSION} followed by
+ * zero, a header of the field count shifted by {@link #FLAG_BITS} with flags in the low bits and,
+ * with {@link #FLAG_FINGERPRINT}, the compact fingerprint of the codec, followed by tag and value
+ * of every field. The marker is never the start of a varint as written
+ * by {@link DeSer#writeUnsigned(Object, long)}, which does not end in a zero byte, so records
+ * without it are read as records of the original format: the plain field count followed by the
+ * fields. Markers of unknown format versions are rejected.
+ *
+ * <p>With {@link #FLAG_OFFSET_TABLE} the fields are followed by a table of fixed width (tag,
+ * offset) pairs sorted by tag, where the offset is the position of the value relative to the
+ * start of the header.
+ *
+ * <p>{@link #FLAG_UTF8_STRINGS} marks records with strings encoded as varint length and UTF-8.
+ * Records without it have strings encoded as by {@link java.io.DataOutputStream#writeUTF(String)}.
+ *
+ * <p>Standalone records carry the fingerprint, records in streams whose header holds the full
+ * fingerprint, such as those of {@link RecordWriter}, leave it out. Records with a fingerprint are
+ * only read if it is that of the reader's codec, or of the codec the reader's vocabulary had
+ * before renaming terms to their single alias, as long as the renaming keeps the tags. Readers on
+ * other versions of the context read through a {@link ContextRegistry}, which remaps the tags by
+ * fingerprint. Records without fingerprint are read with the tags of the reader's codec.
+ */
+public final class Codec {
+  static final int FORMAT_VERSION = 2;
+  static final int FLAG_BITS = 3;
+  static final int FLAG_OFFSET_TABLE = 1;
+  static final int FLAG_UTF8_STRINGS = 2;
+  static final int FLAG_FINGERPRINT = 4;
+  static final int OFFSET_ENTRY_SIZE = 8;
+
+  private final Term<?>[] terms;
+  private final Type<?>[] types;
+  private final Map<Term<?>, Integer> tags;
+  private final long fingerprint;
+  private final long compactFingerprint;
+  // compact fingerprint of the vocabulary with renamed terms under their previous name, if the tags are the same
+  private final long previousFingerprint;
+
+  public Codec(Vocabulary vocab) {
+    List<Term<?>> sortedVocab = new ArrayList<>(vocab.getTerms());
+    sortedVocab.sort(Comparator.comparing(t -> t.getName().getQualifiedName()));
+
+    terms = sortedVocab.toArray(new Term<?>[0]);
+    types = new Type<?>[terms.length];
+    tags = new HashMap<>();
+    for (int i=0; i<terms.length; i++) {
+      types[i] = terms[i].getType();
+      tags.put(terms[i], i);
+    }
+    String[] names = new String[terms.length];
+    String[] previous = new String[terms.length];
+    for (int i=0; i<terms.length; i++) {
+      names[i] = terms[i].getName().getQualifiedName();
+      Set<Name> aliases = terms[i].getAliases();
+      previous[i] = (aliases.size() == 1) ? aliases.iterator().next().getQualifiedName() : names[i];
+    }
+    fingerprint = computeFingerprint(terms, names);
+    compactFingerprint = compact(fingerprint);
+    boolean sameTags = true;
+    for (int i=1; i<terms.length; i++) {
+      sameTags &= previous[i - 1].compareTo(previous[i]) < 0;
+    }
+    previousFingerprint = sameTags ? compact(computeFingerprint(terms, previous)) : compactFingerprint;
+  }
+
+  static long compact(long fingerprint) {
+    return (fingerprint ^ (fingerprint >>> 32)) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * 64-bit FNV-1a hash over qualified name and type of all terms in tag order.
+   */
+  private static long computeFingerprint(Term<?>[] terms, String[] names) {
+    long hash = 0xcbf29ce484222325L;
+    for (int n=0; n<terms.length; n++) {
+      String s = names[n].toLowerCase() + ':' + terms[n].getType() + ';';
+      for (int i=0; i<s.length(); i++) {
+        hash ^= s.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+    }
+    return hash;
+  }
+
+  public int size() {
+    return terms.length;
+  }
+
+  /**
+   * @return hash identifying the tag assignment, codecs with equal fingerprints encode identically
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return the fingerprint folded to 32 bits as written after the header of records
+   */
+  long compactFingerprint() {
+    return compactFingerprint;
+  }
+
+  /**
+   * @return true if records with the compact fingerprint are read correctly with this codec's tags
+   */
+  boolean isCompatible(long compactFingerprint) {
+    return compactFingerprint == this.compactFingerprint || compactFingerprint == previousFingerprint;
+  }
+
+  /**
+   * @throws IOException if records with the compact fingerprint can't be read with this codec's tags
+   */
+  void checkFingerprint(long compactFingerprint) throws IOException {
+    if (!isCompatible(compactFingerprint)) {
+      throw new IOException("Record was written with a different context, fingerprint " + Long.toHexString(compactFingerprint)
+          + ", read it through a ContextRegistry with the writer's context registered");
+    }
+  }
+
+  /**
+   * @return the tag of the term or -1 if the term is not part of the vocabulary
+   */
+  public int tagOf(Term<?> t) {
+    Integer tag = tags.get(t);
+    return tag == null ? -1 : tag;
+  }
+
+  /**
+   * @return the term for the tag or null if no term is assigned to it
+   */
+  public Term<?> termOf(int tag) {
+    return (tag >= 0 && tag < terms.length) ? terms[tag] : null;
+  }
+
+  public Type<?> typeOf(int tag) {
+    return types[tag];
+  }
+
+  private int requireTag(Term<?> t) {
+    int tag = tagOf(t);
+    if (tag == -1) {
+      throw new IllegalStateException("No tag defined for term " + t);
+    }
+    return tag;
+  }
+
+  private boolean canPassThrough(Record rec) {
+    return rec instanceof EncodedRecord && ((EncodedRecord) rec).getCodec() == this
+        && !((EncodedRecord) rec).usesLegacyStrings() && !((EncodedRecord) rec).hasUntaggedValues();
+  }
+
+  static int stringFlag(DeSer<?, ?> deser) {
+    return deser.usesLegacyStrings() ? 0 : FLAG_UTF8_STRINGS;
+  }
+
+  public <W> void write(DeSer<?, W> deser, W w, Record rec) throws IOException {
+    write(deser, w, rec, true);
+  }
+
+  /**
+   * @param fingerprint false for records in streams that identify the codec themselves
+   */
+  <W> void write(DeSer<?, W> deser, W w, Record rec, boolean fingerprint) throws IOException {
+    if (w instanceof ByteBuffer && !deser.usesLegacyStrings() && canPassThrough(rec)) {
+      ((EncodedRecord) rec).writeTo((ByteBuffer) w, false, fingerprint);
+      return;
+    }
+
+    writeMarker(deser, w);
+    writeHeader(deser, w, ((long) rec.size() << FLAG_BITS) | stringFlag(deser), fingerprint);
+    writeFields(deser, w, rec);
+  }
+
+  /**
+   * Writes the header followed by the fingerprint if requested.
+   */
+  <W> void writeHeader(DeSer<?, W> deser, W w, long header, boolean fingerprint) throws IOException {
+    if (fingerprint) {
+      deser.writeUnsigned(w, header | FLAG_FINGERPRINT);
+      deser.writeUnsigned(w, compactFingerprint);
+    } else {
+      deser.writeUnsigned(w, header);
+    }
+  }
+
+  private <W> void writeFields(DeSer<?, W> deser, W w, Record rec) throws IOException {
+    rec.forEachValue(new Record.ValueVisitor() {
+      @Override
+      public void visitBits(Term<?> t, long bits) throws IOException {
+        int tag = requireTag(t);
+        deser.writeUnsigned(w, tag);
+        types[tag].serializeBits(deser, w, bits);
+      }
+
+      @Override
+      public void visit(Term<?> t, Object value) throws IOException {
+        int tag = requireTag(t);
+        deser.writeUnsigned(w, tag);
+        ((Type) types[tag]).serialize(deser, w, value);
+      }
+    });
+  }
+
+  static <W> void writeMarker(DeSer<?, W> deser, W w) throws IOException {
+    deser.writeByte(w, 0x80 | FORMAT_VERSION);
+    deser.writeByte(w, 0);
+  }
+
+  /**
+   * Writes the record followed by its offset table, see {@link EncodedRecord}.
+   */
+  public void writeWithOffsetTable(ByteBuffer out, Record rec) throws IOException {
+    if (canPassThrough(rec)) {
+      ((EncodedRecord) rec).writeTo(out, true, true);
+      return;
+    }
+
+    ByteBufferDeSer deser = ByteBufferDeSer.INSTANCE;
+    writeMarker(deser, out);
+    int start = out.position();
+    int size = rec.size();
+    writeHeader(deser, out, ((long) size << FLAG_BITS) | FLAG_OFFSET_TABLE | FLAG_UTF8_STRINGS, true);
+
+    long[] entries = new long[size];
+    rec.forEachValue(new Record.ValueVisitor() {
+      private int n;
+
+      private int writeTag(Term<?> t) {
+        int tag = requireTag(t);
+        deser.writeUnsigned(out, tag);
+        entries[n++] = ((long) tag << 32) | (out.position() - start);
+        return tag;
+      }
+
+      @Override
+      public void visitBits(Term<?> t, long bits) throws IOException {
+        types[writeTag(t)].serializeBits(deser, out, bits);
+      }
+
+      @Override
+      public void visit(Term<?> t, Object value) throws IOException {
+        ((Type) types[writeTag(t)]).serialize(deser, out, value);
+      }
+    });
+
+    Arrays.sort(entries);
+    for (long entry : entries) {
+      out.putLong(entry);
+    }
+  }
+
+  /**
+   * Reads the format marker or, if the record has none, the field count of a record in the
+   * original format.
+   *
+   * @return -1 if the record has a marker, otherwise the field count
+   * @throws IOException if the marker is of an unknown format version
+   */
+  static <R> long readMarker(DeSer<R, ?> deser, R r) throws IOException {
+    int b = deser.readByte(r);
+    if ((b & 128) == 0) {
+      return b;
+    }
+    int next = deser.readByte(r);
+    if (next == 0) {
+      if ((b & 127) != FORMAT_VERSION) {
+        throw new IOException("Unsupported record format version " + (b & 127));
+      }
+      return -1;
+    }
+    long count = (b & 127) | ((long) (next & 127) << 7);
+    for (int shift = 14; (next & 128) != 0; shift += 7) {
+      next = deser.readByte(r);
+      count |= (long) (next & 127) << shift;
+    }
+    return count;
+  }
+
+  /**
+   * Reads the header following the format marker and checks the fingerprint if present.
+   *
+   * @throws IOException if the record was written with an incompatible codec
+   */
+  <R> long readHeaderAfterMarker(DeSer<R, ?> deser, R r) throws IOException {
+    long header = deser.readUnsigned(r);
+    if ((header & FLAG_FINGERPRINT) != 0) {
+      checkFingerprint(deser.readUnsigned(r));
+    }
+    return header;
+  }
+
+  /**
+   * Reads format marker and header, the header of a record in the original format is that of a
+   * record without flags.
+   */
+  <R> long readHeader(DeSer<R, ?> deser, R r) throws IOException {
+    long count = readMarker(deser, r);
+    return (count >= 0) ? count << FLAG_BITS : readHeaderAfterMarker(deser, r);
+  }
+
+  public <R> Record read(DeSer<R, ?> deser, R r, Context ctx, Schema schema) throws IOException {
+    return readFields(deser, r, readHeader(deser, r), ctx, schema);
+  }
+
+  /**
+   * Reads the record into the target, replacing all its values. The target keeps its storage, so
+   * reading into a reused record allocates nothing but the decoded non-primitive values.
+   */
+  public <R> void readInto(DeSer<R, ?> deser, R r, Record target) throws IOException {
+    long header = readHeader(deser, r);
+    target.clear();
+    readFields(deser, r, header, target, terms, types);
+  }
+
+  /**
+   * Reads the record decoding only the values of the projected terms, all other values are skipped.
+   */
+  public <R> Record read(DeSer<R, ?> deser, R r, Context ctx, Schema schema, Projection projection) throws IOException {
+    return readFields(deser, r, readHeader(deser, r), ctx, schema, projection.termsByTag(this), types);
+  }
+
+  /**
+   * Reads the record filling the remainder of the buffer, decoding only the values of the projected
+   * terms. The values of records with offset table are located through the table, in all other
+   * records the values outside the projection are skipped.
+   */
+  public Record readProjected(ByteBuffer in, Context ctx, Schema schema, Projection projection) throws IOException {
+    ByteBufferDeSer deser = ByteBufferDeSer.INSTANCE;
+    Term<?>[] projected = projection.termsByTag(this);
+    long count = readMarker(deser, in);
+    if (count >= 0) {
+      return readFields(deser, in, count << FLAG_BITS, ctx, schema, projected, types);
+    }
+    // offsets are relative to the start of the header
+    int start = in.position();
+    long header = readHeaderAfterMarker(deser, in);
+    if ((header & FLAG_OFFSET_TABLE) == 0) {
+      return readFields(deser, in, header, ctx, schema, projected, types);
+    }
+
+    int noFields = (int) (header >>> FLAG_BITS);
+    int tableStart = in.limit() - noFields * OFFSET_ENTRY_SIZE;
+    ByteBufferDeSer valueDeser = deser.withLegacyStrings((header & FLAG_UTF8_STRINGS) == 0);
+    Record rec = new Record(ctx, schema);
+    for (int i=0; i<noFields; i++) {
+      int pos = tableStart + i * OFFSET_ENTRY_SIZE;
+      int tag = in.getInt(pos);
+      if (tag < 0 || tag >= projected.length) {
+        throw new IllegalStateException("No term defined for tag " + tag);
+      }
+      if (projected[tag] != null) {
+        rec.decode(projected[tag], valueDeser, in.duplicate().position(start + in.getInt(pos + 4)));
+      }
+    }
+    in.position(in.limit());
+    return rec;
+  }
+
+  /**
+   * Skips a record without decoding any of its values.
+   */
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    long header = readHeader(deser, r);
+    long noFields = header >>> FLAG_BITS;
+    deser = deser.withLegacyStrings((header & FLAG_UTF8_STRINGS) == 0);
+
+    for (int i=0; i<noFields; i++) {
+      int tag = (int) deser.readUnsigned(r);
+      if (tag < 0 || tag >= types.length) {
+        throw new IllegalStateException("No term defined for tag " + tag);
+      }
+      types[tag].skip(deser, r);
+    }
+    if ((header & FLAG_OFFSET_TABLE) != 0) {
+      deser.skip(r, (int) noFields * OFFSET_ENTRY_SIZE);
+    }
+  }
+
+  <R> Record readFields(DeSer<R, ?> deser, R r, long header, Context ctx, Schema schema) throws IOException {
+    return readFields(deser, r, header, ctx, schema, terms, types);
+  }
+
+  /**
+   * Reads the fields following the header with the term and type of each tag, values of tags
+   * without term are skipped.
+   */
+  <R> Record readFields(DeSer<R, ?> deser, R r, long header, Context ctx, Schema schema, Term<?>[] termsByTag, Type<?>[] typesByTag) throws IOException {
+    return readFields(deser, r, header, new Record(ctx, schema), termsByTag, typesByTag);
+  }
+
+  private <R> Record readFields(DeSer<R, ?> deser, R r, long header, Record rec, Term<?>[] termsByTag, Type<?>[] typesByTag) throws IOException {
+    long noFields = header >>> FLAG_BITS;
+    deser = deser.withLegacyStrings((header & FLAG_UTF8_STRINGS) == 0);
+
+    for (int i=0; i<noFields; i++) {
+      int tag = (int) deser.readUnsigned(r);
+      if (tag < 0 || tag >= typesByTag.length) {
+        throw new IllegalStateException("No term defined for tag " + tag);
+      }
+      Term<?> t = termsByTag[tag];
+      if (t != null) {
+        rec.decode(t, deser, r);
+      } else {
+        typesByTag[tag].skip(deser, r);
+      }
+    }
+    if ((header & FLAG_OFFSET_TABLE) != 0) {
+      deser.skip(r, (int) noFields * OFFSET_ENTRY_SIZE);
+    }
+
+    return rec;
+  }
+}
@@ -0,0 +1,72 @@
+package org.uwh.model.io;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+
+/**
+ * Values compiled per codec, e.g. validators or specialized codecs of a schema used with several
+ * contexts. Lookups do not lock: the entries are an immutable array that is replaced, under a lock,
+ * only when a value has to be compiled. Each value is compiled for a version of its source and
+ * recompiled once the version changes. Values usually reference their codec, so the cache keeps
+ * only the most recently compiled entries rather than relying on weak references.
+ */
+public final class CodecCache<V> {
+  private static final int MAX_ENTRIES = 8;
+
+  private volatile Entry<V>[] entries = newEntries(0);
+
+  /**
+   * @return the value for the codec and version, compiled and cached on a miss
+   */
+  public V get(Codec codec, int version, Function<Codec, ? extends V> compile) {
+    V v = find(entries, codec, version);
+    if (v != null) {
+      return v;
+    }
+    synchronized (this) {
+      Entry<V>[] current = entries;
+      v = find(current, codec, version);
+      if (v == null) {
+        v = compile.apply(codec);
+        // most recent first, dropping the stale entry of the codec and the oldest beyond the limit
+        Entry<V>[] next = newEntries(Math.min(current.length + 1, MAX_ENTRIES));
+        int n = 0;
+        next[n++] = new Entry<>(codec, version, v);
+        for (int i=0; i<current.length && n<next.length; i++) {
+          if (current[i].codec != codec) {
+            next[n++] = current[i];
+          }
+        }
+        entries = (n == next.length) ? next : Arrays.copyOf(next, n);
+      }
+    }
+    return v;
+  }
+
+  private static <V> V find(Entry<V>[] entries, Codec codec, int version) {
+    for (Entry<V> e : entries) {
+      if (e.codec == codec) {
+        return (e.version == version) ? e.value : null;
+      }
+    }
+    return null;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <V> Entry<V>[] newEntries(int n) {
+    return (Entry<V>[]) new Entry[n];
+  }
+
+  private static final class Entry<V> {
+    private final Codec codec;
+    private final int version;
+    private final V value;
+
+    Entry(Codec codec, int version, V value) {
+      this.codec = codec;
+      this.version = version;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.uwh.model.Context;
+import org.uwh.model.Name;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.Vocabulary;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Reads records written against other versions of the reader's context, for example by producers
+ * on an older version of a namespace. The writer contexts are registered up front and records
+ * identify theirs by the fingerprint written after the header, see {@link Codec}.
+ *
+ * <p>For every writer context the registry builds and caches an array from writer tag to reader
+ * term, matched by name or alias in either direction. Values of terms the reader does not know or knows with a different
+ * type are skipped. Records without fingerprint, of the original format or from streams whose
+ * header identifies the context, are read with the reader's context.
+ */
+public final class ContextRegistry {
+  private final Context ctx;
+  private final Map<Long, Codec> writers = new ConcurrentHashMap<>();
+  private final Map<Long, Remap> remaps = new ConcurrentHashMap<>();
+
+  public ContextRegistry(Context ctx) {
+    this.ctx = ctx;
+  }
+
+  public Context getContext() {
+    return ctx;
+  }
+
+  /**
+   * Registers a context records may have been written with. The vocabulary of the context must
+   * not change after registration.
+   *
+   * @throws IllegalArgumentException if the fingerprint collides with that of a different context
+   */
+  public void register(Context writer) {
+    Codec codec = writer.getCodec();
+    Codec existing = writers.putIfAbsent(codec.compactFingerprint(), codec);
+    if (existing != null && existing.getFingerprint() != codec.getFingerprint()) {
+      throw new IllegalArgumentException("Fingerprint " + Long.toHexString(codec.compactFingerprint()) + " is already registered for a different context");
+    }
+  }
+
+  public Record deserialize(Schema schema, byte[] bytes) throws IOException {
+    return read(ByteBufferDeSer.INSTANCE, ByteBuffer.wrap(bytes), schema);
+  }
+
+  /**
+   * @throws IOException if the record was written with a context that is not registered
+   */
+  public <R> Record read(DeSer<R, ?> deser, R r, Schema schema) throws IOException {
+    return readCompact(deser, r, schema, ctx.getCodec().compactFingerprint());
+  }
+
+  /**
+   * Reads a record of a stream, such as a frame of {@link RecordWriter}, whose header holds the
+   * fingerprint of the writer's context rather than each record.
+   *
+   * @param fingerprint the fingerprint from the stream header
+   * @throws IOException if the record was written with a context that is not registered
+   */
+  public <R> Record read(DeSer<R, ?> deser, R r, Schema schema, long fingerprint) throws IOException {
+    return readCompact(deser, r, schema, Codec.compact(fingerprint));
+  }
+
+  private <R> Record readCompact(DeSer<R, ?> deser, R r, Schema schema, long compactFingerprint) throws IOException {
+    Codec reader = ctx.getCodec();
+    long count = Codec.readMarker(deser, r);
+    if (count >= 0) {
+      return reader.readFields(deser, r, count << Codec.FLAG_BITS, ctx, schema);
+    }
+    long header = deser.readUnsigned(r);
+    long fp = ((header & Codec.FLAG_FINGERPRINT) != 0) ? deser.readUnsigned(r) : compactFingerprint;
+    if (reader.isCompatible(fp)) {
+      return reader.readFields(deser, r, header, ctx, schema);
+    }
+    Remap remap = remap(reader, fp);
+    return reader.readFields(deser, r, header, ctx, schema, remap.terms, remap.types);
+  }
+
+  private Remap remap(Codec reader, long fingerprint) throws IOException {
+    Remap remap = remaps.get(fingerprint);
+    if (remap == null || remap.reader != reader) {
+      Codec writer = writers.get(fingerprint);
+      if (writer == null) {
+        throw new IOException("Record was written with an unknown context, fingerprint " + Long.toHexString(fingerprint));
+      }
+      remap = remap(reader, writer);
+      remaps.put(fingerprint, remap);
+    }
+    return remap;
+  }
+
+  private Remap remap(Codec reader, Codec writer) {
+    Vocabulary vocab = ctx.getVocab();
+    Term<?>[] terms = new Term<?>[writer.size()];
+    Type<?>[] types = new Type<?>[writer.size()];
+    for (int tag=0; tag<writer.size(); tag++) {
+      Term<?> t = writer.termOf(tag);
+      types[tag] = t.getType();
+      Term<?> match = vocab.lookupTerm(t.getName()).orElse(null);
+      for (Name alias : t.getAliases()) {
+        if (match == null) {
+          match = vocab.lookupTerm(alias).orElse(null);
+        }
+      }
+      if (match != null && match.getType().toString().equals(t.getType().toString())) {
+        terms[tag] = match;
+      }
+    }
+    return new Remap(reader, terms, types);
+  }
+
+  /**
+   * Reader term and writer type by writer tag, compiled against a reader codec.
+   */
+  private static final class Remap {
+    private final Codec reader;
+    private final Term<?>[] terms;
+    private final Type<?>[] types;
+
+    Remap(Codec reader, Term<?>[] terms, Type<?>[] types) {
+      this.reader = reader;
+      this.terms = terms;
+      this.types = types;
+    }
+  }
+}
@@ -24,4 +24,84 @@ public interface DeSer<R, W> {
 
   void writeBytes(W w, byte[] bytes) throws IOException;
   byte[] readBytes(R r) throws IOException;
+
+  void writeByte(W w, int b) throws IOException;
+  /**
+   * @return the next byte as unsigned value
+   */
+  int readByte(R r) throws IOException;
+
+  void skip(R r, int n) throws IOException;
+
+  /**
+   * @return true if strings are encoded as in the original record format, a two byte length followed by
+   * modified UTF-8, rather than a varint length followed by standard UTF-8
+   */
+  boolean usesLegacyStrings();
+
+  /**
+   * @return a DeSer with the requested string encoding, this instance if it already uses it
+   */
+  DeSer<R, W> withLegacyStrings(boolean legacy);
+
+  /*
+   * Bulk variants for packed lists of numbers, the encoding is identical to writing the values one
+   * by one so implementations only override them to avoid per-value overhead.
+   */
+
+  default void writeInts(W w, int[] values, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      writeInt(w, values[off + i]);
+    }
+  }
+
+  default void readInts(R r, int[] dst, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      dst[off + i] = readInt(r);
+    }
+  }
+
+  default void writeLongs(W w, long[] values, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      writeLong(w, values[off + i]);
+    }
+  }
+
+  default void readLongs(R r, long[] dst, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      dst[off + i] = readLong(r);
+    }
+  }
+
+  default void writeDoubles(W w, double[] values, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      writeDouble(w, values[off + i]);
+    }
+  }
+
+  default void readDoubles(R r, double[] dst, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      dst[off + i] = readDouble(r);
+    }
+  }
+
+  default void writeFloats(W w, float[] values, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      writeFloat(w, values[off + i]);
+    }
+  }
+
+  default void readFloats(R r, float[] dst, int off, int len) throws IOException {
+    for (int i=0; i<len; i++) {
+      dst[off + i] = readFloat(r);
+    }
+  }
+
+  default void skipString(R r) throws IOException {
+    readString(r);
+  }
+
+  default void skipBytes(R r) throws IOException {
+    readBytes(r);
+  }
 }
@@ -1,80 +1,141 @@
 package org.uwh.model.io;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import org.uwh.model.Context;
 import org.uwh.model.Record;
 import org.uwh.model.Schema;
-import org.uwh.model.Term;
 
 
 public class DeSerUtil {
-  private static Map<Term<?>, Integer> createTagAssignment(Context ctx) {
-    var vocab = ctx.getVocab();
-    var sortedVocab = new ArrayList<>(vocab.getTerms());
-    sortedVocab.sort(Comparator.comparing(t -> t.getName().getQualifiedName()));
-
-    var result = new HashMap<Term<?>, Integer>();
-    int i = 0;
-    for (var t : sortedVocab) {
-      result.put(t, i);
-      i++;
-    }
-    return result;
+  private static final ThreadLocal<GrowableBuffer> SCRATCH = ThreadLocal.withInitial(() -> new GrowableBuffer(1024));
+
+  public static byte[] serialize(Record rec) throws IOException {
+    return serialize(rec, false);
   }
 
-  private static<U,V> Map<U,V> reverseMap(Map<V,U> map) {
-    var result = new HashMap<U,V>();
-    for (Map.Entry<V,U> e : map.entrySet()) {
-      result.put(e.getValue(), e.getKey());
-    }
-    return result;
+  /**
+   * @param offsetTable whether to append the offset table used by {@link EncodedRecord} for direct lookups
+   */
+  public static byte[] serialize(Record rec, boolean offsetTable) throws IOException {
+    GrowableBuffer buf = SCRATCH.get();
+    buf.clear();
+    serialize(rec, buf, offsetTable);
+    return buf.toByteArray();
   }
 
-  public static byte[] serialize(Record rec) throws IOException {
-    Map<Term<?>, Object> values = rec.getValues();
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    DataOutputStream dos = new DataOutputStream(bos);
-    DeSer<DataInputStream, DataOutputStream> deser = new BinaryDeSer();
-    Map<Term<?>, Integer> term2tag = createTagAssignment(rec.getContext());
-
-    deser.writeUnsigned(dos, values.size());
-
-    for (Map.Entry<Term<?>,Object> e : values.entrySet()) {
-      Term t = e.getKey();
-      deser.writeUnsigned(dos, term2tag.get(t));
-      t.getType().serialize(deser, dos, e.getValue());
+  public static void serialize(Record rec, GrowableBuffer out) throws IOException {
+    serialize(rec, out, false);
+  }
+
+  /**
+   * Serializes the record at the position of the buffer, growing it as needed.
+   */
+  public static void serialize(Record rec, GrowableBuffer out, boolean offsetTable) throws IOException {
+    int start = out.buffer().position();
+    while (true) {
+      try {
+        serialize(rec, out.buffer(), offsetTable);
+        return;
+      } catch (BufferOverflowException e) {
+        out.buffer().position(start);
+        out.grow(out.capacity() * 2);
+      }
     }
-    dos.flush();
+  }
 
-    return bos.toByteArray();
+  public static void serialize(Record rec, ByteBuffer out) throws IOException {
+    serialize(rec, out, false);
   }
 
-  public static Record deserialize(Context ctx, Schema schema, byte[] bytes) throws IOException {
-    ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-    DataInputStream dis = new DataInputStream(bis);
-    DeSer<DataInputStream, DataOutputStream> deser = new BinaryDeSer();
-    Map<Integer,Term<?>> tag2term = reverseMap(createTagAssignment(ctx));
-
-    Map<Term<?>,Object> values = new HashMap<>();
-    long noFields = deser.readUnsigned(dis);
-
-    for (int i=0; i<noFields; i++) {
-      int tag = (int) deser.readUnsigned(dis);
-      Term t = tag2term.get(tag);
-      if (t == null) {
-        throw new IllegalStateException("No term defined for tag " + tag);
+  /**
+   * Serializes the record at the position of the buffer.
+   *
+   * @throws BufferOverflowException if the record does not fit, the buffer position is left unchanged
+   */
+  public static void serialize(Record rec, ByteBuffer out, boolean offsetTable) throws IOException {
+    int start = out.position();
+    try {
+      Codec codec = rec.getContext().getCodec();
+      if (offsetTable) {
+        codec.writeWithOffsetTable(out, rec);
+      } else {
+        codec.write(ByteBufferDeSer.INSTANCE, out, rec);
       }
-      values.put(t, t.getType().deserialize(deser, dis));
+    } catch (BufferOverflowException e) {
+      out.position(start);
+      throw e;
     }
+  }
+
+  /**
+   * Deserializes all values of the record, which does not reference the bytes. To keep the bytes
+   * and copy unmodified values as is when serializing again, see {@link #deserializeLazily(Context, Schema, byte[])}.
+   */
+  public static Record deserialize(Context ctx, Schema schema, byte[] bytes) throws IOException {
+    return ctx.getCodec().read(ByteBufferDeSer.INSTANCE, ByteBuffer.wrap(bytes), ctx, schema);
+  }
+
+  /**
+   * Deserializes a record from the position of the buffer, leaving the position after the record.
+   * The record does not reference the buffer, which is free to be reused.
+   */
+  public static Record deserialize(Context ctx, Schema schema, ByteBuffer in) throws IOException {
+    return ctx.getCodec().read(ByteBufferDeSer.INSTANCE, in, ctx, schema);
+  }
+
+  /**
+   * Deserializes the record into the target, replacing all its values. The storage of the target
+   * is reused, so consumers handling one record at a time can decode without garbage beyond the
+   * non-primitive values, see also {@link RecordPool}.
+   *
+   * @return the target
+   */
+  public static <T extends Record> T deserializeInto(T target, byte[] bytes) throws IOException {
+    return deserializeInto(target, ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Deserializes the record at the position of the buffer into the target, leaving the position
+   * after the record.
+   *
+   * @return the target
+   */
+  public static <T extends Record> T deserializeInto(T target, ByteBuffer in) throws IOException {
+    target.getContext().getCodec().readInto(ByteBufferDeSer.INSTANCE, in, target);
+    return target;
+  }
+
+  /**
+   * Deserializes only the values of the projected terms, all other values are skipped or, if the
+   * record has an offset table, not touched at all.
+   */
+  public static Record deserialize(Context ctx, Schema schema, byte[] bytes, Projection projection) throws IOException {
+    return ctx.getCodec().readProjected(ByteBuffer.wrap(bytes), ctx, schema, projection);
+  }
+
+  /**
+   * Deserializes only the values of the projected terms from the position of the buffer, leaving the
+   * position after the record.
+   */
+  public static Record deserialize(Context ctx, Schema schema, ByteBuffer in, Projection projection) throws IOException {
+    return ctx.getCodec().read(ByteBufferDeSer.INSTANCE, in, ctx, schema, projection);
+  }
+
+  /**
+   * Creates a record view over the serialized bytes that only decodes values as they are read.
+   * The view references the bytes, which must not be modified while it is in use. Serialized
+   * again, values that have not been put are copied from the bytes, see {@link EncodedRecord}.
+   */
+  public static EncodedRecord deserializeLazily(Context ctx, Schema schema, byte[] bytes) {
+    return new EncodedRecord(ctx, schema, ByteBuffer.wrap(bytes));
+  }
 
-    return new Record(ctx, schema, values);
+  /**
+   * Creates a record view over the remaining bytes of the buffer, which must hold exactly one record.
+   */
+  public static EncodedRecord deserializeLazily(Context ctx, Schema schema, ByteBuffer in) {
+    return new EncodedRecord(ctx, schema, in);
   }
 }
@@ -0,0 +1,450 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Record view over a serialized record. Values are decoded on first access and cached, all other
+ * values stay in their encoded form. Locating a value uses the offset table of the encoding if
+ * present (binary search) or otherwise a tag to offset index built by a single scan on first access.
+ *
+ * <p>When serialized again against the same context, values that have not been put since are
+ * copied byte for byte from the original encoding and only modified or added values are encoded.
+ *
+ * <p>The underlying bytes are not copied and must not be modified while the record is in use.
+ */
+public class EncodedRecord extends Record {
+  private final ByteBuffer data;
+  private final Codec codec;
+  private final ByteBufferDeSer deser;
+  private final int fieldCount;
+  private final int fieldsStart;
+  private final int offsetTableStart;
+  // bytes of the buffer the record was read from up to its end
+  private final int encodedLength;
+  // sorted (tag << 32 | offset) entries, built on demand if the encoding has no offset table
+  private long[] index;
+  // tags whose value is held by the record itself, either decoded or put
+  private final BitSet resolved = new BitSet();
+  // tags whose value has been put and therefore can't be copied from the encoding
+  private final BitSet modified = new BitSet();
+  // true if values of terms added to the vocabulary after the view was created have been put
+  private boolean untagged;
+
+  /**
+   * Creates a view over the record occupying the remaining bytes of the buffer.
+   */
+  public EncodedRecord(Context ctx, Schema schema, ByteBuffer data) {
+    this(ctx, schema, data, false);
+  }
+
+  /**
+   * @param delimit true if the record may be followed by other data, its end is then found by
+   * indexing all fields right away, see {@link #encodedLength()}
+   */
+  EncodedRecord(Context ctx, Schema schema, ByteBuffer data, boolean delimit) {
+    super(ctx, schema);
+    this.codec = ctx.getCodec();
+
+    ByteBuffer in = data.slice();
+    long count;
+    try {
+      count = Codec.readMarker(ByteBufferDeSer.INSTANCE, in);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+    long header;
+    int headerStart = 0;
+    if (count >= 0) {
+      header = count << Codec.FLAG_BITS;
+      in.rewind();
+    } else {
+      // offsets are relative to the header
+      headerStart = in.position();
+      in = in.slice();
+      header = ByteBufferDeSer.INSTANCE.readUnsigned(in.duplicate());
+    }
+    this.deser = ByteBufferDeSer.INSTANCE.withLegacyStrings((header & Codec.FLAG_UTF8_STRINGS) == 0);
+    this.fieldCount = (int) (header >>> Codec.FLAG_BITS);
+
+    ByteBuffer buf = in.duplicate();
+    ByteBufferDeSer.INSTANCE.readUnsigned(buf);
+    if ((header & Codec.FLAG_FINGERPRINT) != 0) {
+      try {
+        codec.checkFingerprint(ByteBufferDeSer.INSTANCE.readUnsigned(buf));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+    }
+    this.fieldsStart = buf.position();
+
+    boolean hasOffsetTable = (header & Codec.FLAG_OFFSET_TABLE) != 0;
+    if (delimit) {
+      index = indexFields(buf, false);
+      in.limit(buf.position() + (hasOffsetTable ? fieldCount * Codec.OFFSET_ENTRY_SIZE : 0));
+    }
+    this.data = in;
+    this.encodedLength = headerStart + in.limit();
+    this.offsetTableStart = hasOffsetTable ? in.limit() - fieldCount * Codec.OFFSET_ENTRY_SIZE : -1;
+  }
+
+  /**
+   * @return the number of bytes of the record from the position of the buffer it was created from
+   */
+  int encodedLength() {
+    return encodedLength;
+  }
+
+  Codec getCodec() {
+    return codec;
+  }
+
+  /**
+   * @return true if the record was encoded with strings as by {@link java.io.DataOutputStream#writeUTF(String)}
+   */
+  boolean usesLegacyStrings() {
+    return deser.usesLegacyStrings();
+  }
+
+  private int locate(int tag) {
+    if (offsetTableStart >= 0) {
+      int lo = 0;
+      int hi = fieldCount - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int pos = offsetTableStart + mid * Codec.OFFSET_ENTRY_SIZE;
+        int midTag = data.getInt(pos);
+        if (midTag < tag) {
+          lo = mid + 1;
+        } else if (midTag > tag) {
+          hi = mid - 1;
+        } else {
+          return data.getInt(pos + 4);
+        }
+      }
+      return -1;
+    }
+
+    long[] idx = index();
+    int pos = Arrays.binarySearch(idx, (long) tag << 32);
+    if (pos < 0) {
+      pos = -pos - 1;
+    }
+    return (pos < idx.length && (int) (idx[pos] >>> 32) == tag) ? (int) idx[pos] : -1;
+  }
+
+  /**
+   * @return the encoded bytes of the value of the term or null if the encoding has no value for it
+   */
+  ByteBuffer encodedValue(Term<?> t) throws IOException {
+    int tag = codec.tagOf(t);
+    int offset = (tag >= 0) ? locate(tag) : -1;
+    if (offset < 0) {
+      return null;
+    }
+    ByteBuffer buf = data.duplicate().position(offset);
+    codec.typeOf(tag).skip(deser, buf);
+    return data.slice(offset, buf.position() - offset);
+  }
+
+  private long[] index() {
+    if (index == null) {
+      scan(false);
+    }
+    return index;
+  }
+
+  /**
+   * Builds the index in a single pass over the fields, optionally decoding all values not yet resolved.
+   */
+  private void scan(boolean decode) {
+    index = indexFields(data.duplicate().position(fieldsStart), decode);
+  }
+
+  /**
+   * @return the sorted index of the fields starting at the position of the buffer, which is left
+   * after the last field
+   */
+  private long[] indexFields(ByteBuffer buf, boolean decode) {
+    try {
+      long[] entries = new long[fieldCount];
+      for (int i=0; i<fieldCount; i++) {
+        int tag = (int) deser.readUnsigned(buf);
+        entries[i] = ((long) tag << 32) | buf.position();
+        Term<?> t = requireTerm(tag);
+        if (decode && !resolved.get(tag)) {
+          decode(t, deser, buf);
+          resolved.set(tag);
+        } else {
+          t.getType().skip(deser, buf);
+        }
+      }
+      Arrays.sort(entries);
+      return entries;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Term<?> requireTerm(int tag) {
+    Term<?> t = codec.termOf(tag);
+    if (t == null) {
+      throw new IllegalStateException("No term defined for tag " + tag);
+    }
+    return t;
+  }
+
+  private void resolve(int tag, int offset) {
+    if (offset >= 0) {
+      try {
+        Term<?> t = requireTerm(tag);
+        decode(t, deser, data.duplicate().position(offset));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    resolved.set(tag);
+  }
+
+  private void markModified(Term<?> t) {
+    int tag = codec.tagOf(t);
+    if (tag < 0) {
+      // kept by the record outside the tags of the encoding
+      untagged = true;
+      return;
+    }
+    resolved.set(tag);
+    modified.set(tag);
+  }
+
+  /**
+   * @return true if the record has values of terms that have no tag in the codec of the encoding,
+   * so it can't be written by copying from the encoding
+   */
+  boolean hasUntaggedValues() {
+    return untagged;
+  }
+
+  @Override
+  protected void store(Term<?> t, Object value) {
+    super.store(t, value);
+    markModified(t);
+  }
+
+  @Override
+  protected void storeBits(Term<?> t, long value) {
+    super.storeBits(t, value);
+    markModified(t);
+  }
+
+  private void ensureResolved(Term<?> t) {
+    int tag = codec.tagOf(t);
+    if (tag >= 0 && !resolved.get(tag)) {
+      resolve(tag, locate(tag));
+    }
+  }
+
+  @Override
+  protected int[] presentIndices(Codec codec) {
+    return null;
+  }
+
+  @Override
+  public boolean has(Term<?> t) {
+    int tag = codec.tagOf(t);
+    if (tag < 0 || resolved.get(tag)) {
+      return super.has(t);
+    }
+    return locate(tag) >= 0;
+  }
+
+  @Override
+  public <T> T get(Term<T> t) {
+    ensureResolved(t);
+    return super.get(t);
+  }
+
+  @Override
+  protected long bitsOf(Term<?> t) {
+    ensureResolved(t);
+    return super.bitsOf(t);
+  }
+
+  /**
+   * Decodes all values not yet resolved.
+   */
+  void resolveAll() {
+    if (offsetTableStart >= 0) {
+      for (int i=0; i<fieldCount; i++) {
+        int pos = offsetTableStart + i * Codec.OFFSET_ENTRY_SIZE;
+        int tag = data.getInt(pos);
+        if (!resolved.get(tag)) {
+          resolve(tag, data.getInt(pos + 4));
+        }
+      }
+    } else if (index == null) {
+      scan(true);
+    } else {
+      for (long entry : index) {
+        int tag = (int) (entry >>> 32);
+        if (!resolved.get(tag)) {
+          resolve(tag, (int) entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all values, including those of the encoding, which is no longer copied when the record
+   * is serialized again.
+   */
+  @Override
+  public void clear() {
+    resolved.set(0, codec.size());
+    modified.set(0, codec.size());
+    untagged = false;
+    super.clear();
+  }
+
+  @Override
+  public int size() {
+    resolveAll();
+    return super.size();
+  }
+
+  @Override
+  public Map<Term<?>, Object> getValues() {
+    resolveAll();
+    return super.getValues();
+  }
+
+  @Override
+  public void forEachValue(ValueVisitor visitor) throws IOException {
+    resolveAll();
+    super.forEachValue(visitor);
+  }
+
+  private static int unsignedSize(int i) {
+    int size = 1;
+    while ((i & ~127) != 0) {
+      i >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * @return (offset << 32 | tag) of all fields in the encoding, sorted by position
+   */
+  private long[] fieldsByPosition() {
+    long[] res = new long[fieldCount];
+    if (offsetTableStart >= 0) {
+      for (int i=0; i<fieldCount; i++) {
+        int pos = offsetTableStart + i * Codec.OFFSET_ENTRY_SIZE;
+        res[i] = ((long) data.getInt(pos + 4) << 32) | data.getInt(pos);
+      }
+    } else {
+      long[] idx = index();
+      for (int i=0; i<fieldCount; i++) {
+        res[i] = (idx[i] << 32) | (idx[i] >>> 32);
+      }
+    }
+    Arrays.sort(res);
+    return res;
+  }
+
+  /**
+   * Writes the record copying runs of unmodified fields from the original encoding.
+   */
+  void writeTo(ByteBuffer out, boolean offsetTable, boolean fingerprint) throws IOException {
+    long[] fields = fieldsByPosition();
+    int fieldsEnd = (offsetTableStart >= 0) ? offsetTableStart : data.limit();
+
+    int count = 0;
+    for (long field : fields) {
+      if (!modified.get((int) field)) {
+        count++;
+      }
+    }
+    for (int tag = modified.nextSetBit(0); tag >= 0; tag = modified.nextSetBit(tag + 1)) {
+      if (super.has(codec.termOf(tag))) {
+        count++;
+      }
+    }
+
+    Codec.writeMarker(deser, out);
+    int start = out.position();
+    codec.writeHeader(deser, out, ((long) count << Codec.FLAG_BITS) | Codec.FLAG_UTF8_STRINGS | (offsetTable ? Codec.FLAG_OFFSET_TABLE : 0), fingerprint);
+    long[] entries = offsetTable ? new long[count] : null;
+    int n = 0;
+
+    int runStart = -1;
+    int runEnd = -1;
+    for (int i=0; i<fields.length; i++) {
+      int tag = (int) fields[i];
+      int offset = (int) (fields[i] >>> 32);
+      if (modified.get(tag)) {
+        copy(out, runStart, runEnd);
+        runStart = -1;
+        continue;
+      }
+      int fieldStart = offset - unsignedSize(tag);
+      if (runStart < 0) {
+        runStart = fieldStart;
+      }
+      if (entries != null) {
+        entries[n++] = ((long) tag << 32) | (out.position() - start + offset - runStart);
+      }
+      runEnd = (i + 1 < fields.length)
+          ? (int) (fields[i + 1] >>> 32) - unsignedSize((int) fields[i + 1])
+          : fieldsEnd;
+    }
+    copy(out, runStart, runEnd);
+
+    for (int tag = modified.nextSetBit(0); tag >= 0; tag = modified.nextSetBit(tag + 1)) {
+      Term<?> t = codec.termOf(tag);
+      if (super.has(t)) {
+        deser.writeUnsigned(out, tag);
+        if (entries != null) {
+          entries[n++] = ((long) tag << 32) | (out.position() - start);
+        }
+        Type<?> type = codec.typeOf(tag);
+        if (type.isPrimitive()) {
+          type.serializeBits(deser, out, super.bitsOf(t));
+        } else {
+          ((Type) type).serialize(deser, out, super.get(t));
+        }
+      }
+    }
+
+    if (entries != null) {
+      Arrays.sort(entries);
+      for (long entry : entries) {
+        out.putLong(entry);
+      }
+    }
+  }
+
+  private void copy(ByteBuffer out, int from, int to) {
+    if (from < 0) {
+      return;
+    }
+    int len = to - from;
+    if (out.remaining() < len) {
+      throw new BufferOverflowException();
+    }
+    out.put(out.position(), data, from, len);
+    out.position(out.position() + len);
+  }
+}
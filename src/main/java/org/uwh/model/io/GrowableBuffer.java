@@ -0,0 +1,72 @@
+package org.uwh.model.io;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Write buffer that grows on demand. The underlying {@link ByteBuffer} is replaced on growth, so
+ * callers must re-fetch it via {@link #buffer()} after calling {@link #grow(int)}.
+ */
+public final class GrowableBuffer {
+  private final boolean direct;
+  private ByteBuffer buffer;
+
+  public GrowableBuffer(int initialCapacity) {
+    this(initialCapacity, false);
+  }
+
+  public GrowableBuffer(int initialCapacity, boolean direct) {
+    this.direct = direct;
+    this.buffer = allocate(Math.max(initialCapacity, 16));
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  public ByteBuffer buffer() {
+    return buffer;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  public int capacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Grows the buffer to at least the given capacity, keeping the content up to the current
+   * position.
+   */
+  public void grow(int minCapacity) {
+    if (minCapacity <= buffer.capacity()) {
+      return;
+    }
+    int newCapacity = Math.max(minCapacity, buffer.capacity() * 2);
+    ByteBuffer grown = allocate(newCapacity);
+    buffer.flip();
+    grown.put(buffer);
+    buffer = grown;
+  }
+
+  public void ensureRemaining(int n) {
+    if (buffer.remaining() < n) {
+      grow(buffer.position() + n);
+    }
+  }
+
+  public void clear() {
+    buffer.clear();
+  }
+
+  /**
+   * @return a copy of the bytes written so far
+   */
+  public byte[] toByteArray() {
+    byte[] res = new byte[buffer.position()];
+    buffer.get(0, res);
+    return res;
+  }
+}
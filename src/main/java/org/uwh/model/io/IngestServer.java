@@ -0,0 +1,367 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+
+
+/**
+ * TCP server ingesting records from producers.
+ *
+ * <p>Producers send a record stream as written by {@link RecordWriter}: the stream header, checked
+ * against the fingerprint of the server's context, followed by length prefixed frames. Records are
+ * deserialized, validated against the schema and valid records are passed to the sink. After
+ * processing all frames received so far the server replies with an ack of two longs, the number of
+ * records of the connection accepted and rejected as invalid so far. Acks are written by a separate
+ * thread per connection and coalesced, only the latest counts are sent once the previous ack is
+ * written. Producers are free to ignore acks, e.g. a plain {@link RecordWriter}: ingestion never
+ * waits for them to be read. Closing a connection with unread acks may reset it though, losing the
+ * frames still in flight, so such producers shut down their output and drain the connection
+ * before closing it. Streams with a wrong header, oversized or corrupt frames and sink
+ * failures close the connection, are counted and passed to the error handler.
+ *
+ * <p>Every connection is served by its own thread using blocking channel I/O. On JDKs with virtual
+ * threads these are virtual threads, so that idle producers cost little more than their buffer,
+ * otherwise daemon platform threads. The sink is called concurrently from all connections.
+ */
+public class IngestServer implements Closeable {
+  static final int ACK_SIZE = 16;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // how long a closing connection waits for its last ack to be written
+  private static final long ACK_LINGER_MILLIS = 1000;
+
+  /**
+   * Receives the valid records of all connections, must be thread-safe.
+   */
+  public interface Sink {
+    void accept(Record rec) throws IOException;
+  }
+
+  private final Context ctx;
+  private final Schema schema;
+  private final Sink sink;
+  private final Consumer<Exception> onError;
+  private final ServerSocketChannel server;
+  private final ThreadFactory threads;
+  private final Thread acceptor;
+  private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private volatile boolean closed;
+
+  public IngestServer(InetSocketAddress address, Context ctx, Schema schema, Sink sink) throws IOException {
+    this(address, ctx, schema, sink, null);
+  }
+
+  /**
+   * @param onError called with the exception of every connection closed on a failure and of every
+   * failed accept, on the thread of the connection, may be null
+   */
+  public IngestServer(InetSocketAddress address, Context ctx, Schema schema, Sink sink, Consumer<Exception> onError) throws IOException {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.sink = sink;
+    this.onError = onError;
+    this.threads = connectionThreads();
+    this.server = ServerSocketChannel.open().bind(address);
+    this.acceptor = new Thread(this::acceptLoop, "ingest-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * @return a factory of virtual threads if the JDK has them, otherwise of daemon platform threads
+   */
+  static ThreadFactory connectionThreads() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return r -> {
+        Thread t = new Thread(r, "ingest-connection");
+        t.setDaemon(true);
+        return t;
+      };
+    }
+  }
+
+  public InetSocketAddress getAddress() throws IOException {
+    return (InetSocketAddress) server.getLocalAddress();
+  }
+
+  public long getAcceptedCount() {
+    return accepted.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /**
+   * @return the number of connections closed on a failure, e.g. a corrupt stream, a failing sink or
+   * a producer disconnecting within a frame, and of failed accepts
+   */
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  private void fail(Exception e) {
+    failed.increment();
+    if (onError != null) {
+      try {
+        onError.accept(e);
+      } catch (RuntimeException ignored) {
+        // a failing handler must not take down the server
+      }
+    }
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      try {
+        SocketChannel ch = server.accept();
+        connections.add(ch);
+        if (closed) {
+          ch.close();
+          return;
+        }
+        threads.newThread(() -> serve(ch)).start();
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        // failed accept of a single connection, keep serving
+        fail(e);
+      }
+    }
+  }
+
+  private void serve(SocketChannel ch) {
+    Acks acks = null;
+    try (ch) {
+      ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE).flip();
+      in = fill(ch, in, RecordWriter.HEADER_SIZE);
+      if (in == null) {
+        return;
+      }
+      checkHeader(in);
+
+      acks = new Acks(ch);
+      threads.newThread(acks).start();
+      long connAccepted = 0;
+      long connRejected = 0;
+      while (true) {
+        boolean processed = false;
+        while (in.remaining() >= RecordWriter.LENGTH_SIZE) {
+          int length = in.getInt(in.position());
+          if (length < 0 || length > RecordWriter.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length " + length);
+          }
+          if (in.remaining() < RecordWriter.LENGTH_SIZE + length) {
+            break;
+          }
+          in.position(in.position() + RecordWriter.LENGTH_SIZE);
+          int end = in.position() + length;
+          int limit = in.limit();
+          in.limit(end);
+          Record rec = DeSerUtil.deserialize(ctx, schema, in);
+          in.limit(limit).position(end);
+
+          if (rec.isValid()) {
+            sink.accept(rec);
+            connAccepted++;
+            accepted.increment();
+          } else {
+            connRejected++;
+            rejected.increment();
+          }
+          processed = true;
+        }
+
+        if (processed) {
+          acks.update(connAccepted, connRejected);
+        }
+        int needed = RecordWriter.LENGTH_SIZE + ((in.remaining() >= RecordWriter.LENGTH_SIZE) ? in.getInt(in.position()) : 0);
+        in = fill(ch, in, Math.max(needed, in.remaining() + 1));
+        if (in == null) {
+          acks.finish();
+          return;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // the producer disconnected or sent a corrupt stream, the connection is closed
+      if (!closed) {
+        fail(e);
+      }
+    } finally {
+      if (acks != null) {
+        acks.stop();
+      }
+      connections.remove(ch);
+    }
+  }
+
+  private void checkHeader(ByteBuffer in) throws IOException {
+    if (in.getInt() != RecordWriter.MAGIC) {
+      throw new IOException("Not a record stream");
+    }
+    byte version = in.get();
+    if (version != RecordWriter.VERSION) {
+      throw new IOException("Unsupported record stream version " + version);
+    }
+    if (in.getLong() != ctx.getCodec().getFingerprint()) {
+      throw new IOException("Stream was written with a different context");
+    }
+  }
+
+  /**
+   * Reads until at least n bytes are buffered, growing the buffer as needed.
+   *
+   * @return the buffer, or null if the stream ended cleanly between frames
+   */
+  private static ByteBuffer fill(SocketChannel ch, ByteBuffer buf, int n) throws IOException {
+    if (buf.capacity() < n) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(n, buf.capacity() * 2));
+      grown.put(buf);
+      buf = grown;
+    } else {
+      buf.compact();
+    }
+    while (buf.position() < n) {
+      if (ch.read(buf) < 0) {
+        if (buf.position() == 0) {
+          return null;
+        }
+        throw new EOFException("Stream ended within a frame");
+      }
+    }
+    return buf.flip();
+  }
+
+  /**
+   * Writes the latest ack of a connection whenever it changed, on its own thread so that a producer
+   * that does not read acks never blocks ingestion.
+   */
+  private static final class Acks implements Runnable {
+    private final SocketChannel ch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition done = lock.newCondition();
+    private long accepted;
+    private long rejected;
+    private boolean pending;
+    private boolean finishing;
+    private boolean stopped;
+
+    Acks(SocketChannel ch) {
+      this.ch = ch;
+    }
+
+    void update(long accepted, long rejected) {
+      lock.lock();
+      try {
+        this.accepted = accepted;
+        this.rejected = rejected;
+        pending = true;
+        changed.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Lets the writer send the last pending ack, waiting for it at most ACK_LINGER_MILLIS.
+     */
+    void finish() throws IOException {
+      lock.lock();
+      try {
+        finishing = true;
+        changed.signal();
+        long nanos = TimeUnit.MILLISECONDS.toNanos(ACK_LINGER_MILLIS);
+        while (!stopped && nanos > 0) {
+          nanos = done.awaitNanos(nanos);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void stop() {
+      lock.lock();
+      try {
+        stopped = true;
+        changed.signal();
+        done.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void run() {
+      ByteBuffer ack = ByteBuffer.allocate(ACK_SIZE);
+      try {
+        while (true) {
+          lock.lock();
+          try {
+            while (!pending && !finishing && !stopped) {
+              changed.await();
+            }
+            if (!pending || stopped) {
+              return;
+            }
+            ack.clear();
+            ack.putLong(accepted).putLong(rejected).flip();
+            pending = false;
+          } finally {
+            lock.unlock();
+          }
+          while (ack.hasRemaining()) {
+            ch.write(ack);
+          }
+        }
+      } catch (IOException | InterruptedException e) {
+        // the connection was closed, a failure of the stream is reported by the reading side
+      } finally {
+        stop();
+      }
+    }
+  }
+
+  /**
+   * Stops accepting connections and closes all open connections.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    server.close();
+    for (SocketChannel ch : connections) {
+      ch.close();
+    }
+    try {
+      acceptor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+
+
+/**
+ * Byte oriented LZ77 codec in the style of LZ4, favouring speed over ratio.
+ *
+ * <p>The compressed form is a sequence of tokens. A token byte holds the number of literals in its
+ * high and the match length minus {@link #MIN_MATCH} in its low four bits, a nibble of 15 is
+ * continued by bytes of 255 and a final byte below 255. The literals follow the token, then the two
+ * byte little endian offset of the match and the continuation of its length. The last token only
+ * holds literals and ends the input.
+ */
+final class LzCodec {
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xFFFF;
+  private static final int HASH_BITS = 14;
+
+  private LzCodec() {
+  }
+
+  static int maxCompressedLength(int len) {
+    return len + len / 255 + 16;
+  }
+
+  private static int readInt(byte[] b, int i) {
+    return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+  }
+
+  private static int hash(int seq) {
+    return (seq * -1640531535) >>> (32 - HASH_BITS);
+  }
+
+  /**
+   * Compresses len bytes of src into dst, which must hold at least {@link #maxCompressedLength(int)} bytes.
+   *
+   * @return the compressed length
+   */
+  static int compress(byte[] src, int off, int len, byte[] dst) {
+    // positions + 1 so that 0 marks an empty slot
+    int[] table = new int[1 << HASH_BITS];
+    int end = off + len;
+    int anchor = off;
+    int i = off;
+    int o = 0;
+    while (i <= end - MIN_MATCH) {
+      int seq = readInt(src, i);
+      int h = hash(seq);
+      int ref = table[h] - 1;
+      table[h] = i + 1;
+      if (ref >= off && i - ref <= MAX_OFFSET && readInt(src, ref) == seq) {
+        int matchLen = MIN_MATCH;
+        while (i + matchLen < end && src[ref + matchLen] == src[i + matchLen]) {
+          matchLen++;
+        }
+        o = writeLiterals(src, anchor, i - anchor, matchLen - MIN_MATCH, dst, o);
+        dst[o++] = (byte) (i - ref);
+        dst[o++] = (byte) ((i - ref) >>> 8);
+        if (matchLen - MIN_MATCH >= 15) {
+          o = writeLength(matchLen - MIN_MATCH - 15, dst, o);
+        }
+        i += matchLen;
+        anchor = i;
+      } else {
+        i++;
+      }
+    }
+    return writeLiterals(src, anchor, end - anchor, 0, dst, o);
+  }
+
+  private static int writeLiterals(byte[] src, int from, int count, int matchNibble, byte[] dst, int o) {
+    dst[o++] = (byte) (Math.min(count, 15) << 4 | Math.min(matchNibble, 15));
+    if (count >= 15) {
+      o = writeLength(count - 15, dst, o);
+    }
+    System.arraycopy(src, from, dst, o, count);
+    return o + count;
+  }
+
+  private static int writeLength(int len, byte[] dst, int o) {
+    while (len >= 255) {
+      dst[o++] = (byte) 255;
+      len -= 255;
+    }
+    dst[o++] = (byte) len;
+    return o;
+  }
+
+  /**
+   * Decompresses len bytes of src into exactly rawLength bytes of dst.
+   *
+   * @throws IOException if the input is malformed or does not decompress to rawLength bytes
+   */
+  static void decompress(byte[] src, int off, int len, byte[] dst, int rawLength) throws IOException {
+    int end = off + len;
+    int i = off;
+    int o = 0;
+    while (true) {
+      if (i >= end) {
+        throw new IOException("Truncated LZ block");
+      }
+      int token = src[i++] & 0xFF;
+      int litLen = token >>> 4;
+      if (litLen == 15) {
+        do {
+          if (i >= end) {
+            throw new IOException("Truncated LZ block");
+          }
+          litLen += src[i] & 0xFF;
+        } while ((src[i++] & 0xFF) == 255);
+      }
+      if (litLen > end - i || litLen > rawLength - o) {
+        throw new IOException("LZ literals exceed block");
+      }
+      System.arraycopy(src, i, dst, o, litLen);
+      i += litLen;
+      o += litLen;
+      if (i == end) {
+        break;
+      }
+
+      if (end - i < 2) {
+        throw new IOException("Truncated LZ block");
+      }
+      int offset = (src[i] & 0xFF) | (src[i + 1] & 0xFF) << 8;
+      i += 2;
+      int matchLen = token & 0x0F;
+      if (matchLen == 15) {
+        do {
+          if (i >= end) {
+            throw new IOException("Truncated LZ block");
+          }
+          matchLen += src[i] & 0xFF;
+        } while ((src[i++] & 0xFF) == 255);
+      }
+      matchLen += MIN_MATCH;
+      if (offset == 0 || offset > o || matchLen > rawLength - o) {
+        throw new IOException("Invalid LZ match");
+      }
+      int ref = o - offset;
+      if (offset >= matchLen) {
+        System.arraycopy(dst, ref, dst, o, matchLen);
+        o += matchLen;
+      } else {
+        for (int k=0; k<matchLen; k++) {
+          dst[o++] = dst[ref + k];
+        }
+      }
+    }
+    if (o != rawLength) {
+      throw new IOException("LZ block decompressed to " + o + " bytes, expected " + rawLength);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.uwh.model.io;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.uwh.model.Context;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+
+
+/**
+ * Set of terms to decode when reading a record, the values of all other terms are skipped without
+ * decoding. The set is compiled into an array by tag per codec, which is cached. Instances are
+ * immutable and safe to share between threads.
+ */
+public final class Projection {
+  private final Set<Term<?>> terms;
+  private final CodecCache<Term<?>[]> compiled = new CodecCache<>();
+
+  private Projection(Set<Term<?>> terms) {
+    this.terms = terms;
+  }
+
+  public static Projection of(Term<?>... terms) {
+    return of(List.of(terms));
+  }
+
+  public static Projection of(Collection<? extends Term<?>> terms) {
+    return new Projection(Set.copyOf(terms));
+  }
+
+  /**
+   * @return projection to the terms of the context's vocabulary the schema currently allows
+   */
+  public static Projection of(Context ctx, Schema schema) {
+    Set<Term<?>> allowed = new HashSet<>();
+    for (Term<?> t : ctx.getVocab().getTerms()) {
+      if (schema.isValidTerm(ctx, t)) {
+        allowed.add(t);
+      }
+    }
+    return new Projection(allowed);
+  }
+
+  public boolean contains(Term<?> t) {
+    return terms.contains(t);
+  }
+
+  /**
+   * @return the projected terms by tag of the codec, null for tags outside the projection
+   */
+  Term<?>[] termsByTag(Codec codec) {
+    return compiled.get(codec, 0, c -> {
+      Term<?>[] byTag = new Term<?>[c.size()];
+      for (Term<?> t : terms) {
+        int tag = c.tagOf(t);
+        if (tag >= 0) {
+          byTag[tag] = c.termOf(tag);
+        }
+      }
+      return byTag;
+    });
+  }
+
+  @Override
+  public String toString() {
+    return "Projection" + terms;
+  }
+}
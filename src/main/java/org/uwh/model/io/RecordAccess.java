@@ -0,0 +1,60 @@
+package org.uwh.model.io;
+
+import org.uwh.model.Record;
+
+
+/**
+ * Access by index to the values of plain {@link Record}s for the codecs of this package, see
+ * {@link org.uwh.model.Context#indexOf(org.uwh.model.Term)}. The implementation is installed by
+ * {@link Record}, so that its storage is not part of the public API. Only valid for records of
+ * exactly that class, values are read and stored without any checks.
+ */
+public abstract class RecordAccess {
+  private static volatile RecordAccess access;
+
+  protected RecordAccess() {
+  }
+
+  /**
+   * Installs the implementation, called once by {@link Record}.
+   *
+   * @throws IllegalStateException if an implementation is already installed
+   */
+  public static synchronized void install(RecordAccess impl) {
+    if (access != null) {
+      throw new IllegalStateException("Record access is already installed");
+    }
+    access = impl;
+  }
+
+  static RecordAccess get() {
+    if (access == null) {
+      // not under the lock, the class initializer of Record installs the implementation
+      try {
+        Class.forName(Record.class.getName(), true, Record.class.getClassLoader());
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return access;
+  }
+
+  /**
+   * @return the index of the value at the position in index order or -1 past the last value
+   */
+  protected abstract int indexAtPosition(Record rec, int pos);
+
+  protected abstract long bitsAtPosition(Record rec, int pos);
+
+  protected abstract Object objectAtPosition(Record rec, int pos);
+
+  /**
+   * Stores the raw bits of the primitive value at the index.
+   */
+  protected abstract void storeBitsAt(Record rec, int index, long value);
+
+  /**
+   * Stores the non-primitive value at the index.
+   */
+  protected abstract void storeAt(Record rec, int index, Object value);
+}
@@ -0,0 +1,168 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.types.Type;
+import org.uwh.model.validation.EqualsPredicate;
+
+
+/**
+ * Evaluates a predicate against serialized records and materializes only the records that match.
+ * The predicate is tested on an {@link EncodedRecord}, so only the values it reads are located and
+ * decoded. An {@link EqualsPredicate} between a term and a literal of a type with a unique encoding
+ * is evaluated without decoding, by comparing the encoded value with the encoded literal.
+ *
+ * <p>Filters are immutable and can be shared between threads.
+ */
+public final class RecordFilter {
+  // value classes whose encoding is unique, so that equal encodings mean equal values
+  private static final Set<Class<?>> CANONICAL = Set.of(Integer.class, Long.class, String.class, LocalDate.class, Instant.class);
+
+  private final Context ctx;
+  private final Schema schema;
+  private final Predicate<Record> predicate;
+  // term and encoded literal compared on the encoding, term is null if the predicate is tested on the record
+  private final Term<?> term;
+  private final ByteBuffer expected;
+
+  public RecordFilter(Context ctx, Schema schema, Predicate<Record> predicate) {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.predicate = predicate;
+
+    Term<?> t = null;
+    Object literal = null;
+    if (predicate instanceof EqualsPredicate) {
+      EqualsPredicate eq = (EqualsPredicate) predicate;
+      if (eq.getLeft() instanceof Term<?> && !(eq.getRight() instanceof Term<?>)) {
+        t = (Term<?>) eq.getLeft();
+        literal = eq.getRight();
+      } else if (eq.getRight() instanceof Term<?> && !(eq.getLeft() instanceof Term<?>)) {
+        t = (Term<?>) eq.getRight();
+        literal = eq.getLeft();
+      }
+      if (literal != null && (!CANONICAL.contains(literal.getClass()) || t.getType().getClazz() != literal.getClass())) {
+        t = null;
+      } else if (literal instanceof Instant && ((Instant) literal).getNano() % 1_000_000 != 0) {
+        // timestamps are encoded in millis, so the encoding would match a truncated value
+        t = null;
+      }
+    }
+    this.term = t;
+    this.expected = (t != null && literal != null) ? encode(t.getType(), literal).asReadOnlyBuffer() : null;
+  }
+
+  private static ByteBuffer encode(Type type, Object value) {
+    GrowableBuffer buf = new GrowableBuffer(64);
+    while (true) {
+      try {
+        type.serialize(ByteBufferDeSer.INSTANCE, buf.buffer(), value);
+        return ByteBuffer.wrap(buf.toByteArray());
+      } catch (BufferOverflowException e) {
+        buf.clear();
+        buf.grow(buf.capacity() * 2);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  public Predicate<Record> getPredicate() {
+    return predicate;
+  }
+
+  /**
+   * @return true if the predicate is evaluated on the encoded value without decoding
+   */
+  public boolean isEvaluatedOnEncoding() {
+    return term != null;
+  }
+
+  /**
+   * @return the fully deserialized record if it matches, otherwise null; the record does not
+   * reference the bytes
+   */
+  public Record apply(byte[] bytes) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    if (!matches(encoded(in, false))) {
+      return null;
+    }
+    return ctx.getCodec().read(ByteBufferDeSer.INSTANCE, in, ctx, schema);
+  }
+
+  /**
+   * Reads the record at the position of the buffer, leaving the position after the record. The
+   * fields of the record are indexed in the same pass that finds its end, a record that matches is
+   * then deserialized without referencing the buffer.
+   *
+   * @return the record if it matches, otherwise null
+   */
+  public Record apply(ByteBuffer in) throws IOException {
+    EncodedRecord rec = encoded(in, true);
+    ByteBuffer encoded = in.slice(in.position(), rec.encodedLength());
+    in.position(in.position() + rec.encodedLength());
+    if (!matches(rec)) {
+      return null;
+    }
+    return ctx.getCodec().read(ByteBufferDeSer.INSTANCE, encoded, ctx, schema);
+  }
+
+  /**
+   * Reads all remaining records of the buffer, passing those that match to the sink.
+   *
+   * @return the number of records that matched
+   */
+  public int filter(ByteBuffer in, Consumer<? super Record> sink) throws IOException {
+    int matches = 0;
+    while (in.hasRemaining()) {
+      Record rec = apply(in);
+      if (rec != null) {
+        sink.accept(rec);
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private EncodedRecord encoded(ByteBuffer in, boolean delimit) throws IOException {
+    try {
+      return new EncodedRecord(ctx, schema, in, delimit);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (IllegalArgumentException e) {
+      // corrupt marker or fingerprint of a different context
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private boolean matches(EncodedRecord rec) throws IOException {
+    try {
+      if (term != null && !rec.usesLegacyStrings()) {
+        ByteBuffer value = rec.encodedValue(term);
+        return (expected == null) ? value == null : expected.equals(value);
+      }
+      return predicate.test(rec);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RecordFilter(" + predicate + ")";
+  }
+}
@@ -0,0 +1,317 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+
+
+/**
+ * Persistent append-only log of records in a directory of segments.
+ *
+ * <p>Each segment is a record stream as written by {@link RecordWriter} named after the number of
+ * its first record, e.g. {@code 00000000000000001000.log}. Next to it an index file holds the index
+ * interval followed by the file offset of every interval-th record of the segment. Seeking to a
+ * record therefore takes one index lookup and at most interval - 1 frame hops.
+ *
+ * <p>Every writing session starts a new segment, existing segments are never modified. Segments
+ * are read through read-only memory mappings; a {@link Cursor} sees the segments that were flushed
+ * when it entered them.
+ */
+public class RecordLog implements Closeable {
+  private static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+  private static final int DEFAULT_INDEX_INTERVAL = 64;
+  private static final String LOG_SUFFIX = ".log";
+  private static final String INDEX_SUFFIX = ".idx";
+
+  private final Path dir;
+  private final Context ctx;
+  private final long maxSegmentSize;
+  private final int indexInterval;
+  private long nextRecord;
+
+  private RecordWriter writer;
+  private FileChannel indexChannel;
+  private long segmentBase;
+  private final GrowableBuffer pendingIndex = new GrowableBuffer(256);
+
+  public RecordLog(Path dir, Context ctx) throws IOException {
+    this(dir, ctx, DEFAULT_SEGMENT_SIZE, DEFAULT_INDEX_INTERVAL);
+  }
+
+  public RecordLog(Path dir, Context ctx, long maxSegmentSize, int indexInterval) throws IOException {
+    if (maxSegmentSize >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Segments must be mappable, max segment size " + maxSegmentSize + " is too large");
+    }
+    if (indexInterval < 1) {
+      throw new IllegalArgumentException("Index interval must be positive");
+    }
+    this.dir = dir;
+    this.ctx = ctx;
+    this.maxSegmentSize = maxSegmentSize;
+    this.indexInterval = indexInterval;
+
+    Files.createDirectories(dir);
+    Map.Entry<Long, Path> last = segments().lastEntry();
+    if (last != null && Files.size(last.getValue()) < RecordWriter.HEADER_SIZE) {
+      // a session that died before its first flush leaves an empty segment behind
+      Files.deleteIfExists(indexFile(last.getValue()));
+      Files.delete(last.getValue());
+      last = segments().lastEntry();
+    }
+    if (last != null) {
+      Segment segment = new Segment(last.getKey(), last.getValue(), ctx);
+      nextRecord = last.getKey() + segment.countRecords();
+    }
+  }
+
+  private NavigableMap<Long, Path> segments() throws IOException {
+    NavigableMap<Long, Path> res = new TreeMap<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      files.filter(p -> p.getFileName().toString().endsWith(LOG_SUFFIX))
+          .forEach(p -> {
+            String name = p.getFileName().toString();
+            res.put(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())), p);
+          });
+    }
+    return res;
+  }
+
+  private static Path indexFile(Path logFile) {
+    String name = logFile.getFileName().toString();
+    return logFile.resolveSibling(name.substring(0, name.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+  }
+
+  /**
+   * @return the number of records in the log, which is also the number of the next appended record
+   */
+  public long size() {
+    return nextRecord;
+  }
+
+  /**
+   * Appends the record and returns its record number.
+   */
+  public long append(Record rec) throws IOException {
+    if (writer == null || writer.getPosition() >= maxSegmentSize) {
+      rollSegment();
+    }
+    if ((nextRecord - segmentBase) % indexInterval == 0) {
+      pendingIndex.ensureRemaining(8);
+      pendingIndex.buffer().putLong(writer.getPosition());
+    }
+    writer.write(rec);
+    return nextRecord++;
+  }
+
+  private void rollSegment() throws IOException {
+    closeSegment();
+    segmentBase = nextRecord;
+    Path logFile = dir.resolve(String.format("%020d", segmentBase) + LOG_SUFFIX);
+    writer = new RecordWriter(ctx, FileChannel.open(logFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    indexChannel = FileChannel.open(indexFile(logFile), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    pendingIndex.buffer().putInt(indexInterval);
+  }
+
+  private void closeSegment() throws IOException {
+    if (writer != null) {
+      flush();
+      writer.close();
+      indexChannel.close();
+      writer = null;
+    }
+  }
+
+  /**
+   * Writes buffered records to the current segment, followed by their index entries.
+   */
+  public void flush() throws IOException {
+    if (writer == null) {
+      return;
+    }
+    writer.flush();
+    ByteBuffer buf = pendingIndex.buffer().flip();
+    while (buf.hasRemaining()) {
+      indexChannel.write(buf);
+    }
+    buf.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeSegment();
+  }
+
+  public Cursor cursor(Schema schema) throws IOException {
+    return new Cursor(schema);
+  }
+
+  private static class Segment {
+    private final long base;
+    private final MappedByteBuffer data;
+    private final int indexInterval;
+    private final long[] index;
+
+    Segment(long base, Path logFile, Context ctx) throws IOException {
+      this.base = base;
+      try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ)) {
+        data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+      }
+      if (data.limit() < RecordWriter.HEADER_SIZE || data.getInt(0) != RecordWriter.MAGIC) {
+        throw new IOException("Not a record log segment: " + logFile);
+      }
+      if (data.get(4) != RecordWriter.VERSION) {
+        throw new IOException("Unsupported record log segment version " + data.get(4) + ": " + logFile);
+      }
+      if (data.getLong(5) != ctx.getCodec().getFingerprint()) {
+        throw new IOException("Segment " + logFile + " was written with a different context");
+      }
+
+      Path indexFile = indexFile(logFile);
+      ByteBuffer idx = ByteBuffer.wrap(Files.exists(indexFile) ? Files.readAllBytes(indexFile) : new byte[0]);
+      indexInterval = idx.remaining() >= 4 ? idx.getInt() : 1;
+      // entries can point beyond the end of the segment if the process died between flushes
+      long[] entries = new long[idx.remaining() / 8];
+      int n = 0;
+      while (n < entries.length) {
+        long offset = idx.getLong();
+        if (offset >= data.limit()) {
+          break;
+        }
+        entries[n++] = offset;
+      }
+      index = (n == entries.length) ? entries : Arrays.copyOf(entries, n);
+    }
+
+    /**
+     * @return the length of the frame at the position or -1 if there is no complete frame
+     */
+    int frameLength(int pos) {
+      if (pos + RecordWriter.LENGTH_SIZE > data.limit()) {
+        return -1;
+      }
+      int len = data.getInt(pos);
+      return (pos + RecordWriter.LENGTH_SIZE + len <= data.limit()) ? len : -1;
+    }
+
+    /**
+     * @return position of the frame of the record relative to the segment base, or -1 if it does not exist
+     */
+    int locate(long relative) {
+      int k = (int) Math.min(relative / indexInterval, index.length - 1);
+      int pos = (k >= 0) ? (int) index[k] : RecordWriter.HEADER_SIZE;
+      for (long i = (k >= 0) ? (long) k * indexInterval : 0; i < relative; i++) {
+        int len = frameLength(pos);
+        if (len < 0) {
+          return -1;
+        }
+        pos += RecordWriter.LENGTH_SIZE + len;
+      }
+      return pos;
+    }
+
+    long countRecords() {
+      int k = index.length - 1;
+      long count = (k >= 0) ? (long) k * indexInterval : 0;
+      int pos = (k >= 0) ? (int) index[k] : RecordWriter.HEADER_SIZE;
+      int len;
+      while ((len = frameLength(pos)) >= 0) {
+        pos += RecordWriter.LENGTH_SIZE + len;
+        count++;
+      }
+      return count;
+    }
+  }
+
+  /**
+   * Reads records of the log in order, starting at the first record. Not thread-safe.
+   */
+  public class Cursor {
+    private final Schema schema;
+    private final NavigableMap<Long, Path> segments;
+    private Segment current;
+    private int pos;
+    private long position;
+
+    private Cursor(Schema schema) throws IOException {
+      this.schema = schema;
+      this.segments = segments();
+      seek(0);
+    }
+
+    /**
+     * @return the number of the record returned by the next read
+     */
+    public long position() {
+      return position;
+    }
+
+    public void seek(long recordNumber) throws IOException {
+      Map.Entry<Long, Path> entry = segments.floorEntry(recordNumber);
+      if (entry == null) {
+        if (recordNumber != 0) {
+          throw new IllegalArgumentException("No record " + recordNumber + " in log");
+        }
+        current = null;
+        position = 0;
+        return;
+      }
+      Segment segment = (current != null && current.base == entry.getKey()) ? current : new Segment(entry.getKey(), entry.getValue(), ctx);
+      int framePos = segment.locate(recordNumber - segment.base);
+      if (framePos < 0) {
+        throw new IllegalArgumentException("No record " + recordNumber + " in log");
+      }
+      current = segment;
+      pos = framePos;
+      position = recordNumber;
+    }
+
+    private ByteBuffer next() throws IOException {
+      while (current != null) {
+        int len = current.frameLength(pos);
+        if (len >= 0) {
+          ByteBuffer frame = current.data.slice(pos + RecordWriter.LENGTH_SIZE, len);
+          pos += RecordWriter.LENGTH_SIZE + len;
+          position++;
+          return frame;
+        }
+
+        Map.Entry<Long, Path> next = segments.higherEntry(current.base);
+        if (next == null) {
+          return null;
+        }
+        current = new Segment(next.getKey(), next.getValue(), ctx);
+        pos = RecordWriter.HEADER_SIZE;
+      }
+      return null;
+    }
+
+    /**
+     * @return the next record or null at the end of the log
+     */
+    public Record read() throws IOException {
+      ByteBuffer frame = next();
+      return (frame == null) ? null : DeSerUtil.deserialize(ctx, schema, frame);
+    }
+
+    /**
+     * @return a lazily decoded view of the next record directly over the mapped segment, or null at the end of the log
+     */
+    public EncodedRecord readLazily() throws IOException {
+      ByteBuffer frame = next();
+      return (frame == null) ? null : new EncodedRecord(ctx, schema, frame);
+    }
+  }
+}
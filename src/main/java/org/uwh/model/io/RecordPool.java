@@ -0,0 +1,67 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+
+
+/**
+ * Pool of records of one context and schema. Every thread keeps its own stack of at most
+ * {@code maxPooled} records, so acquiring and releasing never contends. Records are cleared on
+ * release and keep their storage, surplus records are left to the garbage collector.
+ *
+ * <p>A released record must no longer be used by the caller. Records released on another thread
+ * than they were acquired on join the pool of the releasing thread.
+ */
+public class RecordPool {
+  private final Context ctx;
+  private final Schema schema;
+  private final int maxPooled;
+  private final ThreadLocal<ArrayDeque<Record>> pool = ThreadLocal.withInitial(ArrayDeque::new);
+
+  public RecordPool(Context ctx, Schema schema, int maxPooled) {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.maxPooled = maxPooled;
+  }
+
+  public Record acquire() {
+    Record rec = pool.get().poll();
+    return (rec == null) ? new Record(ctx, schema) : rec;
+  }
+
+  public void release(Record rec) {
+    if (rec.getClass() != Record.class || rec.getContext() != ctx || rec.getSchema() != schema) {
+      throw new IllegalArgumentException("Record does not belong to this pool");
+    }
+    ArrayDeque<Record> records = pool.get();
+    if (records.size() < maxPooled) {
+      rec.clear();
+      records.push(rec);
+    }
+  }
+
+  /**
+   * Deserializes the bytes into a pooled record, to be released by the caller.
+   */
+  public Record deserialize(byte[] bytes) throws IOException {
+    return deserialize(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Deserializes the record at the position of the buffer into a pooled record, to be released by
+   * the caller. Leaves the position after the record.
+   */
+  public Record deserialize(ByteBuffer in) throws IOException {
+    Record rec = acquire();
+    try {
+      return DeSerUtil.deserializeInto(rec, in);
+    } catch (IOException | RuntimeException e) {
+      release(rec);
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+
+
+/**
+ * Reads a stream of records written by {@link RecordWriter}. The stream header is validated
+ * against the fingerprint of the reader's context. Only streams of the current version are
+ * supported, see {@link RecordWriter}.
+ */
+public class RecordReader implements Closeable {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final Context ctx;
+  private final Schema schema;
+  private final InputStream is;
+  private final ReadableByteChannel channel;
+  private ByteBuffer buffer;
+  private boolean eof;
+  private long recordCount;
+
+  public RecordReader(Context ctx, Schema schema, InputStream is) throws IOException {
+    this(ctx, schema, is, null);
+  }
+
+  public RecordReader(Context ctx, Schema schema, ReadableByteChannel channel) throws IOException {
+    this(ctx, schema, null, channel);
+  }
+
+  private RecordReader(Context ctx, Schema schema, InputStream is, ReadableByteChannel channel) throws IOException {
+    this.ctx = ctx;
+    this.schema = schema;
+    this.is = is;
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE).flip();
+
+    if (!fill(RecordWriter.HEADER_SIZE)) {
+      throw new EOFException("Stream ended before header");
+    }
+    if (buffer.getInt() != RecordWriter.MAGIC) {
+      throw new IOException("Not a record stream");
+    }
+    byte version = buffer.get();
+    if (version != RecordWriter.VERSION) {
+      throw new IOException("Unsupported record stream version " + version);
+    }
+    long fingerprint = buffer.getLong();
+    if (fingerprint != ctx.getCodec().getFingerprint()) {
+      throw new IOException("Stream was written with a different context, fingerprint " + Long.toHexString(fingerprint));
+    }
+  }
+
+  /**
+   * Ensures at least n bytes are buffered, reading more from the source as needed.
+   *
+   * @return false if the source ended before n bytes were available
+   */
+  private boolean fill(int n) throws IOException {
+    if (buffer.remaining() >= n) {
+      return true;
+    }
+    if (buffer.capacity() < n) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(n, buffer.capacity() * 2));
+      grown.put(buffer);
+      buffer = grown;
+    } else {
+      buffer.compact();
+    }
+
+    while (buffer.position() < n && !eof) {
+      int read;
+      if (is != null) {
+        read = is.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (read > 0) {
+          buffer.position(buffer.position() + read);
+        }
+      } else {
+        read = channel.read(buffer);
+      }
+      eof = read < 0;
+    }
+    buffer.flip();
+    return buffer.remaining() >= n;
+  }
+
+  /**
+   * @return the next record or null at the end of the stream
+   */
+  public Record read() throws IOException {
+    if (!fill(RecordWriter.LENGTH_SIZE)) {
+      if (buffer.hasRemaining()) {
+        throw new EOFException("Truncated frame length");
+      }
+      return null;
+    }
+    int length = buffer.getInt(buffer.position());
+    if (length < 0 || length > RecordWriter.MAX_FRAME_SIZE) {
+      throw new IOException("Invalid frame length " + length);
+    }
+    if (!fill(RecordWriter.LENGTH_SIZE + length)) {
+      throw new EOFException("Truncated frame, expected " + length + " bytes");
+    }
+    buffer.position(buffer.position() + RecordWriter.LENGTH_SIZE);
+
+    int end = buffer.position() + length;
+    int limit = buffer.limit();
+    buffer.limit(end);
+    Record rec = DeSerUtil.deserialize(ctx, schema, buffer);
+    buffer.limit(limit).position(end);
+    recordCount++;
+    return rec;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (is != null) {
+      is.close();
+    } else {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package org.uwh.model.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+
+
+/**
+ * Writes a stream of records to an {@link OutputStream} or {@link WritableByteChannel}.
+ *
+ * <p>The stream starts with a header of magic, format version and the fingerprint of the
+ * context's {@link Codec}, followed by one frame per record: a four byte length and the
+ * serialized record. Frames are collected in a buffer and written in batches of roughly
+ * {@code batchSize} bytes.
+ *
+ * <p>Version 3 streams hold records with format marker, see {@link Codec}. Streams of earlier
+ * versions held records of formats that are no longer read.
+ */
+public class RecordWriter implements Closeable, Flushable {
+  static final int MAGIC = 0x444d5253; // "DMRS"
+  static final byte VERSION = 3;
+  static final int HEADER_SIZE = 4 + 1 + 8;
+  static final int LENGTH_SIZE = 4;
+  /** Largest serialized record in a frame, longer frames are rejected by readers as corrupt. */
+  static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+  private static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+  private final Codec codec;
+  private final OutputStream os;
+  private final WritableByteChannel channel;
+  private final GrowableBuffer batch;
+  private final int batchSize;
+  private long recordCount;
+  private long bytesWritten;
+
+  public RecordWriter(Context ctx, OutputStream os) throws IOException {
+    this(ctx, os, null, DEFAULT_BATCH_SIZE);
+  }
+
+  public RecordWriter(Context ctx, OutputStream os, int batchSize) throws IOException {
+    this(ctx, os, null, batchSize);
+  }
+
+  public RecordWriter(Context ctx, WritableByteChannel channel) throws IOException {
+    this(ctx, null, channel, DEFAULT_BATCH_SIZE);
+  }
+
+  public RecordWriter(Context ctx, WritableByteChannel channel, int batchSize) throws IOException {
+    this(ctx, null, channel, batchSize);
+  }
+
+  private RecordWriter(Context ctx, OutputStream os, WritableByteChannel channel, int batchSize) throws IOException {
+    this.codec = ctx.getCodec();
+    this.os = os;
+    this.channel = channel;
+    this.batchSize = batchSize;
+    this.batch = new GrowableBuffer(batchSize + batchSize / 4);
+
+    ByteBuffer buf = batch.buffer();
+    buf.putInt(MAGIC);
+    buf.put(VERSION);
+    buf.putLong(codec.getFingerprint());
+  }
+
+  public void write(Record rec) throws IOException {
+    batch.ensureRemaining(LENGTH_SIZE);
+    int start = batch.buffer().position();
+    while (true) {
+      ByteBuffer buf = batch.buffer();
+      try {
+        buf.position(start + LENGTH_SIZE);
+        codec.write(ByteBufferDeSer.INSTANCE, buf, rec, false);
+        int length = buf.position() - start - LENGTH_SIZE;
+        if (length > MAX_FRAME_SIZE) {
+          buf.position(start);
+          throw new IOException("Record of " + length + " bytes exceeds the max frame size");
+        }
+        buf.putInt(start, length);
+        break;
+      } catch (BufferOverflowException e) {
+        buf.position(start);
+        batch.grow(batch.capacity() * 2);
+      }
+    }
+    recordCount++;
+
+    if (batch.buffer().position() >= batchSize) {
+      writeBatch();
+    }
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @return the number of bytes in the stream so far, including bytes not yet flushed
+   */
+  public long getPosition() {
+    return bytesWritten + batch.buffer().position();
+  }
+
+  private void writeBatch() throws IOException {
+    ByteBuffer buf = batch.buffer();
+    buf.flip();
+    bytesWritten += buf.limit();
+    if (os != null) {
+      os.write(buf.array(), buf.arrayOffset(), buf.limit());
+    } else {
+      while (buf.hasRemaining()) {
+        channel.write(buf);
+      }
+    }
+    buf.clear();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writeBatch();
+    if (os != null) {
+      os.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    flush();
+    if (os != null) {
+      os.close();
+    } else {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,456 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.uwh.model.Context;
+import org.uwh.model.Record;
+import org.uwh.model.Schema;
+import org.uwh.model.Term;
+import org.uwh.model.types.DoubleType;
+import org.uwh.model.types.FloatType;
+import org.uwh.model.types.IntType;
+import org.uwh.model.types.LongType;
+import org.uwh.model.types.StringType;
+import org.uwh.model.types.Type;
+
+
+/**
+ * Encoder and decoder specialized to the terms a schema allows, producing the same bytes as
+ * {@link Codec}. Every term gets a field handler for its type that writes and reads primitives
+ * directly, walking the values of the record in index order. The handlers are composed into one method handle each for encoding and
+ * decoding, which become the constants of a hidden class generated from {@link SpecializedTemplate}.
+ *
+ * <p>Records that are not plain {@link Record}s of the codec's context or hold terms outside the
+ * schema are written by the {@link Codec}, fields that do not follow in tag order are read by it.
+ * Every field costs a check per record whether it is set, so beyond {@link #MAX_GENERATED_FIELDS}
+ * terms, e.g. for an open schema over a large vocabulary, nothing is generated. Then, or if the
+ * hidden class cannot be defined, everything is delegated to the codec.
+ */
+public final class SpecializedCodec {
+  /** Most terms a codec is generated for, sparse records over more terms are faster through the codec. */
+  public static final int MAX_GENERATED_FIELDS = 32;
+
+  private static final MethodType ENCODE_TYPE = MethodType.methodType(void.class, Record.class, DeSer.class, Object.class, Position.class);
+  private static final MethodType DECODE_TYPE = MethodType.methodType(void.class, Record.class, DeSer.class, Object.class, Cursor.class);
+  private static final MethodHandle WRITE;
+  private static final MethodHandle READ;
+  private static final byte[] TEMPLATE;
+  private static final RecordAccess ACCESS = RecordAccess.get();
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      WRITE = lookup.findVirtual(Field.class, "write", ENCODE_TYPE);
+      READ = lookup.findVirtual(Field.class, "read", DECODE_TYPE);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+    byte[] template = null;
+    try (InputStream is = SpecializedCodec.class.getResourceAsStream("SpecializedTemplate.class")) {
+      if (is != null) {
+        template = is.readAllBytes();
+      }
+    } catch (IOException e) {
+      // fall back to the codec
+    }
+    TEMPLATE = template;
+  }
+
+  private final Codec codec;
+  private final int version;
+  private final int[] tags;
+  private final Body body;
+
+  private SpecializedCodec(Codec codec, int version, int[] tags, Body body) {
+    this.codec = codec;
+    this.version = version;
+    this.tags = tags;
+    this.body = body;
+  }
+
+  /**
+   * @param version version of the schema the terms were taken from, see {@link #isCompiledFor(Codec, int)}
+   */
+  public static SpecializedCodec compile(Codec codec, Collection<? extends Term<?>> terms, int version) {
+    int[] tags = terms.stream().mapToInt(codec::tagOf).filter(tag -> tag >= 0).sorted().distinct().toArray();
+    if (tags.length > MAX_GENERATED_FIELDS) {
+      return new SpecializedCodec(codec, version, tags, null);
+    }
+    List<MethodHandle> encoders = new ArrayList<>();
+    List<MethodHandle> decoders = new ArrayList<>();
+    for (int tag : tags) {
+      Field f = field(tag, codec.typeOf(tag));
+      encoders.add(WRITE.bindTo(f));
+      decoders.add(READ.bindTo(f));
+    }
+    return new SpecializedCodec(codec, version, tags, define(sequence(encoders, 0, encoders.size(), ENCODE_TYPE),
+        sequence(decoders, 0, decoders.size(), DECODE_TYPE)));
+  }
+
+  /**
+   * Composes the handles into a balanced tree calling them in order, which keeps the inlining depth
+   * logarithmic in the number of fields.
+   */
+  private static MethodHandle sequence(List<MethodHandle> handles, int from, int to, MethodType type) {
+    if (from == to) {
+      return MethodHandles.empty(type);
+    } else if (to - from == 1) {
+      return handles.get(from);
+    }
+    int mid = (from + to) >>> 1;
+    return MethodHandles.foldArguments(sequence(handles, mid, to, type), sequence(handles, from, mid, type));
+  }
+
+  private static Body define(MethodHandle encoder, MethodHandle decoder) {
+    if (TEMPLATE == null) {
+      return null;
+    }
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(TEMPLATE, List.of(encoder, decoder), true);
+      return (Body) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+    } catch (Throwable t) {
+      return null;
+    }
+  }
+
+  public boolean isCompiledFor(Codec codec, int version) {
+    return this.codec == codec && this.version == version;
+  }
+
+  /**
+   * @return true if encoding and decoding run through generated code rather than the codec
+   */
+  public boolean isGenerated() {
+    return body != null;
+  }
+
+  /**
+   * @return true if the record holds only values of the codec's context at indices of the schema
+   */
+  private boolean canEncode(Record rec) {
+    if (body == null || rec.getClass() != Record.class || rec.getContext().getCodec() != codec) {
+      return false;
+    }
+    int n = 0;
+    int i = 0;
+    for (int index = ACCESS.indexAtPosition(rec, 0); index >= 0; index = ACCESS.indexAtPosition(rec, ++n)) {
+      while (i < tags.length && tags[i] < index) {
+        i++;
+      }
+      if (i == tags.length || tags[i] != index) {
+        return false;
+      }
+    }
+    return n == rec.size();
+  }
+
+  public <W> void write(DeSer<?, W> deser, W w, Record rec) throws IOException {
+    write(deser, w, rec, true);
+  }
+
+  /**
+   * @param fingerprint false for records in streams that identify the codec themselves
+   */
+  <W> void write(DeSer<?, W> deser, W w, Record rec, boolean fingerprint) throws IOException {
+    if (!canEncode(rec)) {
+      codec.write(deser, w, rec, fingerprint);
+      return;
+    }
+    Codec.writeMarker(deser, w);
+    codec.writeHeader(deser, w, ((long) rec.size() << Codec.FLAG_BITS) | Codec.stringFlag(deser), fingerprint);
+    body.encode(rec, erase(deser), w, new Position(rec));
+  }
+
+  public <R> Record read(DeSer<R, ?> deser, R r, Context ctx, Schema schema) throws IOException {
+    if (body == null || ctx.getCodec() != codec) {
+      return codec.read(deser, r, ctx, schema);
+    }
+
+    Record rec = new Record(ctx, schema);
+    long header = codec.readHeader(deser, r);
+    deser = deser.withLegacyStrings((header & Codec.FLAG_UTF8_STRINGS) == 0);
+    Cursor cursor = new Cursor(header >>> Codec.FLAG_BITS);
+    DeSer<Object, Object> erased = erase(deser);
+    cursor.next(erased, r);
+    body.decode(rec, erased, r, cursor);
+
+    while (cursor.tag >= 0) {
+      Term<?> t = codec.termOf(cursor.tag);
+      if (t == null) {
+        throw new IllegalStateException("No term defined for tag " + cursor.tag);
+      }
+      rec.decode(t, deser, r);
+      cursor.next(erased, r);
+    }
+    if ((header & Codec.FLAG_OFFSET_TABLE) != 0) {
+      deser.skip(r, (int) (header >>> Codec.FLAG_BITS) * Codec.OFFSET_ENTRY_SIZE);
+    }
+    return rec;
+  }
+
+  /**
+   * @return the deser typed for the generated code, which passes readers and writers through as
+   * objects
+   */
+  @SuppressWarnings("unchecked")
+  private static DeSer<Object, Object> erase(DeSer<?, ?> deser) {
+    return (DeSer<Object, Object>) deser;
+  }
+
+  @Override
+  public String toString() {
+    return "SpecializedCodec" + Arrays.toString(tags);
+  }
+
+  /**
+   * Implemented by the generated classes.
+   */
+  interface Body {
+    void encode(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException;
+
+    void decode(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException;
+  }
+
+  /**
+   * Tag of the next field to decode, -1 once all fields are read.
+   */
+  static final class Cursor {
+    private long remaining;
+    int tag;
+
+    Cursor(long fields) {
+      remaining = fields;
+    }
+
+    void next(DeSer<Object, Object> deser, Object r) throws IOException {
+      tag = (remaining-- > 0) ? (int) deser.readUnsigned(r) : -1;
+    }
+  }
+
+  /**
+   * Position of the next value to encode in the record and its index, -1 once all values are written.
+   */
+  static final class Position {
+    private final Record rec;
+    int pos;
+    int tag;
+
+    Position(Record rec) {
+      this.rec = rec;
+      tag = ACCESS.indexAtPosition(rec, 0);
+    }
+
+    void next() {
+      tag = ACCESS.indexAtPosition(rec, ++pos);
+    }
+  }
+
+  private static Field field(int tag, Type<?> type) {
+    if (type instanceof IntType) {
+      return new IntField(tag);
+    } else if (type instanceof LongType) {
+      return new LongField(tag);
+    } else if (type instanceof DoubleType) {
+      return new DoubleField(tag);
+    } else if (type instanceof FloatType) {
+      return new FloatField(tag);
+    } else if (type instanceof StringType) {
+      return new StringField(tag);
+    } else if (type.isPrimitive()) {
+      return new BitsField(tag, type);
+    } else {
+      return new ObjectField(tag, type);
+    }
+  }
+
+  /**
+   * Writes the tag and value of its term if set, reads the value if it is next. There is one final
+   * class per kind of type, so once bound into the composed handles every call is monomorphic.
+   */
+  abstract static class Field {
+    final int tag;
+
+    Field(int tag) {
+      this.tag = tag;
+    }
+
+    abstract void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException;
+
+    abstract void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException;
+  }
+
+  private static final class IntField extends Field {
+    IntField(int tag) {
+      super(tag);
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        deser.writeInt(w, (int) ACCESS.bitsAtPosition(rec, pos.pos));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeBitsAt(rec, tag, deser.readInt(r));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class LongField extends Field {
+    LongField(int tag) {
+      super(tag);
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        deser.writeLong(w, ACCESS.bitsAtPosition(rec, pos.pos));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeBitsAt(rec, tag, deser.readLong(r));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class DoubleField extends Field {
+    DoubleField(int tag) {
+      super(tag);
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        deser.writeDouble(w, Double.longBitsToDouble(ACCESS.bitsAtPosition(rec, pos.pos)));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeBitsAt(rec, tag, Double.doubleToRawLongBits(deser.readDouble(r)));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class FloatField extends Field {
+    FloatField(int tag) {
+      super(tag);
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        deser.writeFloat(w, Float.intBitsToFloat((int) ACCESS.bitsAtPosition(rec, pos.pos)));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeBitsAt(rec, tag, Float.floatToRawIntBits(deser.readFloat(r)));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class StringField extends Field {
+    StringField(int tag) {
+      super(tag);
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        deser.writeString(w, (String) ACCESS.objectAtPosition(rec, pos.pos));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeAt(rec, tag, deser.readString(r));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class BitsField extends Field {
+    private final Type<?> type;
+
+    BitsField(int tag, Type<?> type) {
+      super(tag);
+      this.type = type;
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        type.serializeBits(deser, w, ACCESS.bitsAtPosition(rec, pos.pos));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeBitsAt(rec, tag, type.deserializeBits(deser, r));
+        cursor.next(deser, r);
+      }
+    }
+  }
+
+  private static final class ObjectField extends Field {
+    private final Type<Object> type;
+
+    @SuppressWarnings("unchecked")
+    ObjectField(int tag, Type<?> type) {
+      super(tag);
+      this.type = (Type<Object>) type;
+    }
+
+    @Override
+    void write(Record rec, DeSer<Object, Object> deser, Object w, Position pos) throws IOException {
+      if (pos.tag == tag) {
+        deser.writeUnsigned(w, tag);
+        type.serialize(deser, w, ACCESS.objectAtPosition(rec, pos.pos));
+        pos.next();
+      }
+    }
+
+    @Override
+    void read(Record rec, DeSer<Object, Object> deser, Object r, Cursor cursor) throws IOException {
+      if (cursor.tag == tag) {
+        ACCESS.storeAt(rec, tag, type.deserialize(deser, r));
+        cursor.next(deser, r);
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.uwh.model.io;
+
+import java.io.IOException;
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.UndeclaredThrowableException;
+import org.uwh.model.Record;
+
+
+/**
+ * Template of the classes generated by {@link SpecializedCodec}. Its bytes are defined as one hidden
+ * class per compiled codec with the composed encoder and decoder handles as class data. The handles
+ * are static final constants of the hidden class, so the JIT inlines them into straight-line code
+ * specialized to the schema. This class itself is never initialized.
+ */
+final class SpecializedTemplate implements SpecializedCodec.Body {
+  private static final MethodHandle ENCODER = handle(0);
+  private static final MethodHandle DECODER = handle(1);
+
+  private static MethodHandle handle(int index) {
+    try {
+      return MethodHandles.classDataAt(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, MethodHandle.class, index);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void encode(Record rec, DeSer<Object, Object> deser, Object w, SpecializedCodec.Position pos) throws IOException {
+    try {
+      ENCODER.invokeExact(rec, deser, w, pos);
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    }
+  }
+
+  @Override
+  public void decode(Record rec, DeSer<Object, Object> deser, Object r, SpecializedCodec.Cursor cursor) throws IOException {
+    try {
+      DECODER.invokeExact(rec, deser, r, cursor);
+    } catch (IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new UndeclaredThrowableException(t);
+    }
+  }
+}
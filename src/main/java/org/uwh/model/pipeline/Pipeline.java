@@ -0,0 +1,306 @@
+package org.uwh.model.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+
+/**
+ * Chain of processing stages connected by ring buffers, e.g. deserialize, validate, enrich and
+ * serialize. Every stage runs on its own thread, so the stages of consecutive items overlap.
+ *
+ * <p>Each stage consumes all items available in its input ring as one batch and publishes its
+ * results to the next ring once per batch, see {@link RingBuffer}. Rings are bounded, a stage that
+ * falls behind makes the stages before it and finally {@link #submit(Object)} wait, using the
+ * configured {@link WaitStrategy}. Nothing on this path takes a lock.
+ *
+ * <p>A stage returning null drops the item. A stage that throws drops the item and reports the
+ * exception to the error handler, without a handler the first exception is rethrown by
+ * {@link #drain()}. Errors and exceptions of the handler itself are always rethrown by drain. Should
+ * a stage thread die nevertheless, drain fails rather than waiting for items that never complete.
+ * Items are submitted by a single thread, which also drains and closes the pipeline.
+ */
+public final class Pipeline<I> implements AutoCloseable {
+  /**
+   * Processing step of a pipeline.
+   */
+  @FunctionalInterface
+  public interface Stage<I, O> {
+    /**
+     * @return the item passed to the next stage or null to drop the item
+     */
+    O apply(I item) throws Exception;
+  }
+
+  private final String[] names;
+  private final Stage<Object, Object>[] stages;
+  private final RingBuffer[] rings;
+  private final Thread[] threads;
+  private final WaitStrategy wait;
+  private final BiConsumer<Object, Exception> onError;
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+  private volatile boolean running = true;
+  private boolean closed;
+  private boolean dead;
+  private long submitted;
+
+  private Pipeline(Builder<?, ?> builder, Stage<Object, Object>[] stages) {
+    int n = stages.length;
+    this.names = builder.names.toArray(new String[0]);
+    this.stages = stages;
+    this.wait = builder.wait;
+    this.onError = builder.onError;
+    this.rings = new RingBuffer[n];
+    this.threads = new Thread[n];
+    for (int k=0; k<n; k++) {
+      int size = builder.ringSizes.get(k);
+      rings[k] = new RingBuffer(size > 0 ? size : builder.ringSize);
+    }
+    for (int k=0; k<n; k++) {
+      int stage = k;
+      threads[k] = new Thread(() -> run(stage), "pipeline-" + names[k]);
+      threads[k].setDaemon(true);
+      threads[k].start();
+    }
+  }
+
+  public static <T> Builder<T, T> builder() {
+    return new Builder<>();
+  }
+
+  private void run(int k) {
+    RingBuffer in = rings[k];
+    RingBuffer out = (k + 1 < rings.length) ? rings[k + 1] : null;
+    Stage<Object, Object> stage = stages[k];
+    long next = 0;
+    int attempt = 0;
+    while (true) {
+      long available = in.available();
+      if (available < next) {
+        if (!running) {
+          return;
+        }
+        wait.idle(attempt++);
+        continue;
+      }
+      attempt = 0;
+
+      long finished = 0;
+      for (long seq = next; seq <= available; seq++) {
+        Object item = in.take(seq);
+        Object res;
+        try {
+          res = stage.apply(item);
+        } catch (Throwable e) {
+          fail(k, item, e);
+          finished++;
+          continue;
+        }
+        if (res == null || out == null) {
+          finished++;
+        } else {
+          out.put(res, wait);
+        }
+      }
+      if (out != null) {
+        out.publish();
+      }
+      in.release(available);
+      if (finished > 0) {
+        completed.addAndGet(finished);
+      }
+      next = available + 1;
+    }
+  }
+
+  private void fail(int k, Object item, Throwable e) {
+    failed.incrementAndGet();
+    if (onError != null && e instanceof Exception) {
+      try {
+        onError.accept(item, (Exception) e);
+        return;
+      } catch (Throwable handlerError) {
+        handlerError.addSuppressed(e);
+        e = handlerError;
+      }
+    }
+    firstError.compareAndSet(null, new IllegalStateException("Pipeline stage " + names[k] + " failed", e));
+  }
+
+  /**
+   * Submits the item to the first stage, waiting while its ring is full.
+   */
+  public void submit(I item) {
+    Objects.requireNonNull(item);
+    if (closed) {
+      throw new IllegalStateException("Pipeline is closed");
+    }
+    rings[0].put(item, wait);
+    rings[0].publish();
+    submitted++;
+  }
+
+  /**
+   * Submits the item to the first stage unless its ring is full.
+   *
+   * @return false if the item was not submitted
+   */
+  public boolean offer(I item) {
+    if (!closed && !rings[0].hasCapacity()) {
+      return false;
+    }
+    submit(item);
+    return true;
+  }
+
+  public long getSubmittedCount() {
+    return submitted;
+  }
+
+  /**
+   * @return the number of items that passed all stages or were dropped or failed on the way
+   */
+  public long getCompletedCount() {
+    return completed.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  /**
+   * Waits until all submitted items have completed.
+   *
+   * @throws IllegalStateException with the first exception of a stage since the last drain that
+   * was not handled, or if a stage thread died
+   */
+  public void drain() {
+    int attempt = 0;
+    while (completed.get() < submitted) {
+      checkAlive();
+      wait.idle(attempt++);
+    }
+    RuntimeException e = firstError.getAndSet(null);
+    if (e != null) {
+      throw e;
+    }
+  }
+
+  private void checkAlive() {
+    for (int k=0; k<threads.length; k++) {
+      if (!threads[k].isAlive()) {
+        dead = true;
+        throw new IllegalStateException("Pipeline stage " + names[k] + " died");
+      }
+    }
+  }
+
+  /**
+   * Drains the pipeline and stops the stage threads. With a dead stage the other threads are left,
+   * as daemons, since stages before it may wait for its ring forever.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      drain();
+    } finally {
+      running = false;
+      if (dead) {
+        return;
+      }
+      for (Thread t : threads) {
+        try {
+          t.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds a pipeline from input items of type I, with O the output type of the last stage.
+   */
+  public static final class Builder<I, O> {
+    private static final int DEFAULT_RING_SIZE = 1024;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+    private final List<Integer> ringSizes = new ArrayList<>();
+    private int ringSize = DEFAULT_RING_SIZE;
+    private WaitStrategy wait = WaitStrategy.YIELDING;
+    private BiConsumer<Object, Exception> onError;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the default capacity of the ring in front of each stage, a power of two.
+     */
+    public Builder<I, O> ringSize(int ringSize) {
+      this.ringSize = ringSize;
+      return this;
+    }
+
+    public Builder<I, O> waitStrategy(WaitStrategy wait) {
+      this.wait = wait;
+      return this;
+    }
+
+    /**
+     * Sets the handler of items whose stage threw, called on the thread of the stage.
+     */
+    public Builder<I, O> onError(BiConsumer<Object, Exception> onError) {
+      this.onError = onError;
+      return this;
+    }
+
+    public <N> Builder<I, N> stage(String name, Stage<? super O, ? extends N> stage) {
+      return stage(name, 0, stage);
+    }
+
+    /**
+     * @param ringSize capacity of the ring in front of the stage, a power of two, or 0 for the default
+     */
+    @SuppressWarnings("unchecked")
+    public <N> Builder<I, N> stage(String name, int ringSize, Stage<? super O, ? extends N> stage) {
+      names.add(name);
+      stages.add(stage);
+      ringSizes.add(ringSize);
+      // only the output type changes, stages are kept untyped
+      return (Builder<I, N>) (Builder<I, ?>) this;
+    }
+
+    /**
+     * Starts the pipeline, passing the output of the last stage to the sink on the stage's thread.
+     */
+    @SuppressWarnings("unchecked")
+    public Pipeline<I> build(Consumer<? super O> sink) {
+      if (stages.isEmpty()) {
+        throw new IllegalStateException("Pipeline needs at least one stage");
+      }
+      Stage<Object, Object>[] res = (Stage<Object, Object>[]) stages.toArray(new Stage<?, ?>[0]);
+      Stage<Object, Object> last = res[res.length - 1];
+      Consumer<Object> out = (Consumer<Object>) sink;
+      res[res.length - 1] = item -> {
+        Object o = last.apply(item);
+        if (o != null) {
+          out.accept(o);
+        }
+        return null;
+      };
+      return new Pipeline<>(this, res);
+    }
+  }
+}
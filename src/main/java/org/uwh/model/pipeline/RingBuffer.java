@@ -0,0 +1,113 @@
+package org.uwh.model.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+
+/**
+ * Bounded single producer, single consumer ring of item references between two pipeline stages.
+ * The slots are allocated once. Producer and consumer coordinate only through two sequences, the
+ * last published and the last consumed slot, written with release and read with acquire
+ * semantics. Both sides work in batches: the producer publishes once per batch and the consumer
+ * releases the slots of a whole batch at once.
+ */
+final class RingBuffer {
+  private final Object[] entries;
+  private final int mask;
+  private final Sequence published = new Sequence();
+  private final Sequence consumed = new Sequence();
+  // producer side only
+  private long next;
+  private long cachedConsumed = -1;
+
+  RingBuffer(int capacity) {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two, was " + capacity);
+    }
+    this.entries = new Object[capacity];
+    this.mask = capacity - 1;
+  }
+
+  int capacity() {
+    return entries.length;
+  }
+
+  /**
+   * @return true if the producer can put an item without waiting
+   */
+  boolean hasCapacity() {
+    if (next - entries.length <= cachedConsumed) {
+      return true;
+    }
+    cachedConsumed = consumed.get();
+    return next - entries.length <= cachedConsumed;
+  }
+
+  /**
+   * Puts the item into the next slot, waiting for capacity. Items put become visible to the
+   * consumer on {@link #publish()}, which happens implicitly before waiting.
+   */
+  void put(Object item, WaitStrategy wait) {
+    if (!hasCapacity()) {
+      publish();
+      int attempt = 0;
+      while (!hasCapacity()) {
+        wait.idle(attempt++);
+      }
+    }
+    entries[(int) next & mask] = item;
+    next++;
+  }
+
+  void publish() {
+    published.set(next - 1);
+  }
+
+  /**
+   * @return the last published sequence, -1 if nothing was published yet
+   */
+  long available() {
+    return published.get();
+  }
+
+  Object take(long sequence) {
+    int slot = (int) sequence & mask;
+    Object item = entries[slot];
+    entries[slot] = null;
+    return item;
+  }
+
+  /**
+   * Hands all slots up to the sequence back to the producer.
+   */
+  void release(long sequence) {
+    consumed.set(sequence);
+  }
+
+  /**
+   * Sequence padded to its own cache lines, so that producer and consumer do not false share.
+   */
+  static final class Sequence {
+    private static final VarHandle VALUE;
+
+    static {
+      try {
+        VALUE = MethodHandles.lookup().findVarHandle(Sequence.class, "value", long.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    long p1, p2, p3, p4, p5, p6, p7;
+    private volatile long value = -1;
+    long q1, q2, q3, q4, q5, q6, q7;
+
+    long get() {
+      return (long) VALUE.getAcquire(this);
+    }
+
+    void set(long v) {
+      VALUE.setRelease(this, v);
+    }
+  }
+}
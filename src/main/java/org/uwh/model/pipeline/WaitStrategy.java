@@ -0,0 +1,40 @@
+package org.uwh.model.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * How a pipeline thread waits for a ring buffer, either for items to consume or for capacity to
+ * publish. Strategies trade latency against CPU use while idle.
+ */
+public interface WaitStrategy {
+  /** Lowest latency, burns a core per waiting thread. */
+  WaitStrategy BUSY_SPIN = attempt -> Thread.onSpinWait();
+
+  /** Spins briefly, then yields the core to other threads. */
+  WaitStrategy YIELDING = attempt -> {
+    if (attempt < 100) {
+      Thread.onSpinWait();
+    } else {
+      Thread.yield();
+    }
+  };
+
+  /** Spins, yields and finally parks for short periods, nearly idle when there is no work. */
+  WaitStrategy SLEEPING = attempt -> {
+    if (attempt < 100) {
+      Thread.onSpinWait();
+    } else if (attempt < 200) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(50_000);
+    }
+  };
+
+  /**
+   * Waits once before the condition is checked again.
+   *
+   * @param attempt number of consecutive unsuccessful checks so far
+   */
+  void idle(int attempt);
+}
@@ -18,4 +18,9 @@ public class BytesType extends Type {
   public Object deserialize(DeSer deser, Object r) throws IOException {
     return deser.readBytes(r);
   }
+
+  @Override
+  public void skip(DeSer deser, Object r) throws IOException {
+    deser.skipBytes(r);
+  }
 }
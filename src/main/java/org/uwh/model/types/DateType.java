@@ -19,4 +19,9 @@ public class DateType extends Type<LocalDate> {
   public <R> LocalDate deserialize(DeSer<R, ?> deser, R r) throws IOException {
     return LocalDate.ofEpochDay(deser.readLong(r));
   }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readLong(r);
+  }
 }
@@ -0,0 +1,110 @@
+package org.uwh.model.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * Growable list backed by a double array, the decoded form of {@code list<double>} values. Like
+ * an {@link java.util.ArrayList} it supports adding and removing elements, in addition elements
+ * can be read and written without boxing. A wrapped array is shared rather than copied until the
+ * list grows beyond it.
+ */
+public final class DoubleList extends AbstractList<Double> implements RandomAccess {
+  private double[] values;
+  private int size;
+
+  public DoubleList() {
+    this(new double[0]);
+  }
+
+  public DoubleList(double[] values) {
+    this.values = values;
+    this.size = values.length;
+  }
+
+  public static DoubleList of(double... values) {
+    return new DoubleList(values);
+  }
+
+  public double getDouble(int index) {
+    return values[checkIndex(index)];
+  }
+
+  public void setDouble(int index, double value) {
+    values[checkIndex(index)] = value;
+  }
+
+  public void addDouble(double value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  public double[] toDoubleArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * @return the backing array, valid up to {@link #size()}
+   */
+  double[] array() {
+    return values;
+  }
+
+  private int checkIndex(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    return index;
+  }
+
+  @Override
+  public Double get(int index) {
+    return getDouble(index);
+  }
+
+  @Override
+  public Double set(int index, Double value) {
+    double old = values[checkIndex(index)];
+    values[index] = value;
+    return old;
+  }
+
+  @Override
+  public void add(int index, Double value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public Double remove(int index) {
+    double old = values[checkIndex(index)];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -17,4 +17,34 @@ public class DoubleType extends Type<Double> {
   public <R> Double deserialize(DeSer<R, ?> deser, R r) throws IOException {
     return deser.readDouble(r);
   }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public long toBits(Double value) {
+    return Double.doubleToRawLongBits(value);
+  }
+
+  @Override
+  public Double fromBits(long bits) {
+    return Double.longBitsToDouble(bits);
+  }
+
+  @Override
+  public <W> void serializeBits(DeSer<?, W> deser, W w, long bits) throws IOException {
+    deser.writeDouble(w, Double.longBitsToDouble(bits));
+  }
+
+  @Override
+  public <R> long deserializeBits(DeSer<R, ?> deser, R r) throws IOException {
+    return Double.doubleToRawLongBits(deser.readDouble(r));
+  }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readDouble(r);
+  }
 }
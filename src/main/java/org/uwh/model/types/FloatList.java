@@ -0,0 +1,110 @@
+package org.uwh.model.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * Growable list backed by a float array, the decoded form of {@code list<float>} values. Like
+ * an {@link java.util.ArrayList} it supports adding and removing elements, in addition elements
+ * can be read and written without boxing. A wrapped array is shared rather than copied until the
+ * list grows beyond it.
+ */
+public final class FloatList extends AbstractList<Float> implements RandomAccess {
+  private float[] values;
+  private int size;
+
+  public FloatList() {
+    this(new float[0]);
+  }
+
+  public FloatList(float[] values) {
+    this.values = values;
+    this.size = values.length;
+  }
+
+  public static FloatList of(float... values) {
+    return new FloatList(values);
+  }
+
+  public float getFloat(int index) {
+    return values[checkIndex(index)];
+  }
+
+  public void setFloat(int index, float value) {
+    values[checkIndex(index)] = value;
+  }
+
+  public void addFloat(float value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  public float[] toFloatArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * @return the backing array, valid up to {@link #size()}
+   */
+  float[] array() {
+    return values;
+  }
+
+  private int checkIndex(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    return index;
+  }
+
+  @Override
+  public Float get(int index) {
+    return getFloat(index);
+  }
+
+  @Override
+  public Float set(int index, Float value) {
+    float old = values[checkIndex(index)];
+    values[index] = value;
+    return old;
+  }
+
+  @Override
+  public void add(int index, Float value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public Float remove(int index) {
+    float old = values[checkIndex(index)];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -18,4 +18,42 @@ public class FloatType extends Type<Float> {
   public <R> Float deserialize(DeSer<R, ?> deser, R r) throws IOException {
     return deser.readFloat(r);
   }
+
+  public <W> void serializeFloat(DeSer<?, W> deser, W w, float value) throws IOException {
+    deser.writeFloat(w, value);
+  }
+
+  public <R> float deserializeFloat(DeSer<R, ?> deser, R r) throws IOException {
+    return deser.readFloat(r);
+  }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public long toBits(Float value) {
+    return Float.floatToRawIntBits(value);
+  }
+
+  @Override
+  public Float fromBits(long bits) {
+    return Float.intBitsToFloat((int) bits);
+  }
+
+  @Override
+  public <W> void serializeBits(DeSer<?, W> deser, W w, long bits) throws IOException {
+    deser.writeFloat(w, Float.intBitsToFloat((int) bits));
+  }
+
+  @Override
+  public <R> long deserializeBits(DeSer<R, ?> deser, R r) throws IOException {
+    return Float.floatToRawIntBits(deser.readFloat(r));
+  }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readFloat(r);
+  }
 }
@@ -0,0 +1,110 @@
+package org.uwh.model.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * Growable list backed by an int array, the decoded form of {@code list<int>} values. Like
+ * an {@link java.util.ArrayList} it supports adding and removing elements, in addition elements
+ * can be read and written without boxing. A wrapped array is shared rather than copied until the
+ * list grows beyond it.
+ */
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+  private int[] values;
+  private int size;
+
+  public IntList() {
+    this(new int[0]);
+  }
+
+  public IntList(int[] values) {
+    this.values = values;
+    this.size = values.length;
+  }
+
+  public static IntList of(int... values) {
+    return new IntList(values);
+  }
+
+  public int getInt(int index) {
+    return values[checkIndex(index)];
+  }
+
+  public void setInt(int index, int value) {
+    values[checkIndex(index)] = value;
+  }
+
+  public void addInt(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  public int[] toIntArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * @return the backing array, valid up to {@link #size()}
+   */
+  int[] array() {
+    return values;
+  }
+
+  private int checkIndex(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    return index;
+  }
+
+  @Override
+  public Integer get(int index) {
+    return getInt(index);
+  }
+
+  @Override
+  public Integer set(int index, Integer value) {
+    int old = values[checkIndex(index)];
+    values[index] = value;
+    return old;
+  }
+
+  @Override
+  public void add(int index, Integer value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public Integer remove(int index) {
+    int old = values[checkIndex(index)];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -17,4 +17,34 @@ public class IntType extends Type<Integer> {
   public <R> Integer deserialize(DeSer<R,?> deser, R r) throws IOException {
     return deser.readInt(r);
   }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public long toBits(Integer value) {
+    return value;
+  }
+
+  @Override
+  public Integer fromBits(long bits) {
+    return (int) bits;
+  }
+
+  @Override
+  public <W> void serializeBits(DeSer<?, W> deser, W w, long bits) throws IOException {
+    deser.writeInt(w, (int) bits);
+  }
+
+  @Override
+  public <R> long deserializeBits(DeSer<R, ?> deser, R r) throws IOException {
+    return deser.readInt(r);
+  }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readInt(r);
+  }
 }
@@ -5,29 +5,111 @@ import java.util.ArrayList;
 import java.util.List;
 import org.uwh.model.io.DeSer;
 
+/**
+ * Lists of int, long, double and float are packed: the elements follow the size as one run of
+ * varints or one block of fixed-width values, written and read in bulk through the {@link DeSer}.
+ * They decode to growable array backed lists such as {@link DoubleList}, mutable like the
+ * {@link ArrayList}s other lists decode to. The bytes are the same as encoding the elements one by
+ * one.
+ */
 public class ListType<T> extends Type<List<T>> {
+  private static final int OBJECTS = 0;
+  private static final int INTS = 1;
+  private static final int LONGS = 2;
+  private static final int DOUBLES = 3;
+  private static final int FLOATS = 4;
+
   private final Type<T> component;
+  private final int packing;
 
   public ListType(Type<T> component) {
     super((Class) List.class);
     this.component = component;
+    if (component instanceof IntType) {
+      packing = INTS;
+    } else if (component instanceof LongType) {
+      packing = LONGS;
+    } else if (component instanceof DoubleType) {
+      packing = DOUBLES;
+    } else if (component instanceof FloatType) {
+      packing = FLOATS;
+    } else {
+      packing = OBJECTS;
+    }
+  }
+
+  public Type<T> getComponent() {
+    return component;
   }
 
   @Override
   public <W> void serialize(DeSer<?, W> deser, W w, List<T> list) throws IOException {
-    deser.writeUnsigned(w, list.size());
-    for (T t : list) {
-      component.serialize(deser, w, t);
+    int size = list.size();
+    deser.writeUnsigned(w, size);
+    if (packing == DOUBLES && list instanceof DoubleList) {
+      deser.writeDoubles(w, ((DoubleList) list).array(), 0, size);
+    } else if (packing == LONGS && list instanceof LongList) {
+      deser.writeLongs(w, ((LongList) list).array(), 0, size);
+    } else if (packing == INTS && list instanceof IntList) {
+      deser.writeInts(w, ((IntList) list).array(), 0, size);
+    } else if (packing == FLOATS && list instanceof FloatList) {
+      deser.writeFloats(w, ((FloatList) list).array(), 0, size);
+    } else {
+      for (T t : list) {
+        component.serialize(deser, w, t);
+      }
     }
   }
 
   @Override
   public <R> List<T> deserialize(DeSer<R, ?> deser, R r) throws IOException {
+    int size = (int) deser.readUnsigned(r);
+    switch (packing) {
+      case INTS:
+        int[] ints = new int[size];
+        deser.readInts(r, ints, 0, size);
+        return (List<T>) new IntList(ints);
+      case LONGS:
+        long[] longs = new long[size];
+        deser.readLongs(r, longs, 0, size);
+        return (List<T>) new LongList(longs);
+      case DOUBLES:
+        double[] doubles = new double[size];
+        deser.readDoubles(r, doubles, 0, size);
+        return (List<T>) new DoubleList(doubles);
+      case FLOATS:
+        float[] floats = new float[size];
+        deser.readFloats(r, floats, 0, size);
+        return (List<T>) new FloatList(floats);
+      default:
+        List<T> res = new ArrayList<>(size);
+        for (int i=0; i<size; i++) {
+          res.add(component.deserialize(deser, r));
+        }
+        return res;
+    }
+  }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
     long size = deser.readUnsigned(r);
-    List<T> res = new ArrayList<>((int) size);
-    for (int i=0; i<size; i++) {
-      res.add(component.deserialize(deser, r));
+    if (packing == DOUBLES) {
+      deser.skip(r, (int) size << 3);
+    } else if (packing == FLOATS) {
+      deser.skip(r, (int) size << 2);
+    } else if (packing == OBJECTS) {
+      for (int i=0; i<size; i++) {
+        component.skip(deser, r);
+      }
+    } else {
+      for (int i=0; i<size; i++) {
+        deser.readUnsigned(r);
+      }
     }
-    return res;
+  }
+
+  @Override
+  public String toString() {
+    return "list<" + component + ">";
   }
 }
@@ -0,0 +1,256 @@
+package org.uwh.model.types;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Map from int or long keys to values of a primitive type, the decoded form of map types such as
+ * {@code map<long,double>}. Keys and the bits of the values live in flat arrays probed linearly, so
+ * the typed accessors such as {@link #getDouble(long, double)} do not box. Null keys and values are
+ * not supported, entry iterators do not support removal.
+ */
+public final class LongKeyMap<K,V> extends AbstractMap<K,V> {
+  private final Type<K> keyType;
+  private final Type<V> valueType;
+  private final boolean floating;
+  private long[] keys;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+
+  public LongKeyMap(Type<K> keyType, Type<V> valueType) {
+    this(keyType, valueType, 0);
+  }
+
+  public LongKeyMap(Type<K> keyType, Type<V> valueType, int expectedSize) {
+    if (!(keyType instanceof IntType || keyType instanceof LongType) || !valueType.isPrimitive()) {
+      throw new IllegalArgumentException("Unsupported map<" + keyType + "," + valueType + ">");
+    }
+    this.keyType = keyType;
+    this.valueType = valueType;
+    this.floating = valueType instanceof DoubleType || valueType instanceof FloatType;
+    allocate(MapType.tableSize(expectedSize));
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+  }
+
+  private static int hash(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+  }
+
+  private int slot(long key) {
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (used[i] && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  public boolean containsKey(long key) {
+    return used[slot(key)];
+  }
+
+  /**
+   * @return the value of a map with double or float values or missing if the key is absent
+   */
+  public double getDouble(long key, double missing) {
+    checkValues(true);
+    int i = slot(key);
+    return used[i] ? toDouble(values[i]) : missing;
+  }
+
+  /**
+   * @return the value of a map with int or long values or missing if the key is absent
+   */
+  public long getLong(long key, long missing) {
+    checkValues(false);
+    int i = slot(key);
+    return used[i] ? values[i] : missing;
+  }
+
+  public void putDouble(long key, double value) {
+    checkValues(true);
+    putBits(key, (valueType instanceof FloatType) ? Float.floatToRawIntBits((float) value) : Double.doubleToRawLongBits(value));
+  }
+
+  public void putLong(long key, long value) {
+    checkValues(false);
+    putBits(key, (valueType instanceof IntType) ? (int) value : value);
+  }
+
+  private void checkValues(boolean floating) {
+    if (this.floating != floating) {
+      throw new IllegalStateException("Map values are of type " + valueType);
+    }
+  }
+
+  private double toDouble(long bits) {
+    return (valueType instanceof FloatType) ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+  }
+
+  /**
+   * Inserts or replaces the raw bits of the value for the key, see {@link Type#toBits(Object)}.
+   */
+  public void putBits(long key, long bits) {
+    int i = slot(key);
+    if (!used[i]) {
+      if ((size + 1) * 4L > keys.length * 3L) {
+        rehash(keys.length << 1);
+        i = slot(key);
+      }
+      used[i] = true;
+      keys[i] = key;
+      size++;
+    }
+    values[i] = bits;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(capacity);
+    for (int i=0; i<oldKeys.length; i++) {
+      if (oldUsed[i]) {
+        int slot = slot(oldKeys[i]);
+        used[slot] = true;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Deletes by shifting later entries of the probe sequence back, so no tombstones are needed.
+   */
+  private void removeAt(int slot) {
+    int mask = keys.length - 1;
+    int gap = slot;
+    for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+      int home = hash(keys[i]) & mask;
+      if (((i - home) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        values[gap] = values[i];
+        gap = i;
+      }
+    }
+    used[gap] = false;
+    size--;
+  }
+
+  private boolean isKey(Object key) {
+    return keyType.getClazz().isInstance(key);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return isKey(key) && containsKey(((Number) key).longValue());
+  }
+
+  @Override
+  public V get(Object key) {
+    if (!isKey(key)) {
+      return null;
+    }
+    int i = slot(((Number) key).longValue());
+    return used[i] ? valueType.fromBits(values[i]) : null;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    Objects.requireNonNull(value);
+    V old = get(key);
+    putBits(keyType.toBits(key), valueType.toBits(value));
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (!isKey(key)) {
+      return null;
+    }
+    int i = slot(((Number) key).longValue());
+    if (!used[i]) {
+      return null;
+    }
+    V old = valueType.fromBits(values[i]);
+    removeAt(i);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    allocate(MapType.tableSize(0));
+    size = 0;
+  }
+
+  @Override
+  public Set<Entry<K,V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<K,V>> iterator() {
+        return new Iterator<>() {
+          private int next = advance(0);
+
+          private int advance(int from) {
+            while (from < keys.length && !used[from]) {
+              from++;
+            }
+            return from;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next < keys.length;
+          }
+
+          @Override
+          public Entry<K,V> next() {
+            if (next >= keys.length) {
+              throw new NoSuchElementException();
+            }
+            Entry<K,V> e = new SimpleImmutableEntry<>(keyType.fromBits(keys[next]), valueType.fromBits(values[next]));
+            next = advance(next + 1);
+            return e;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Visits keys and raw value bits without boxing.
+   */
+  public interface BitsVisitor {
+    void visit(long key, long bits) throws IOException;
+  }
+
+  public void forEachBits(BitsVisitor visitor) throws IOException {
+    for (int i=0; i<keys.length; i++) {
+      if (used[i]) {
+        visitor.visit(keys[i], values[i]);
+      }
+    }
+  }
+}
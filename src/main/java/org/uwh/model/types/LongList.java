@@ -0,0 +1,110 @@
+package org.uwh.model.types;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+
+/**
+ * Growable list backed by a long array, the decoded form of {@code list<long>} values. Like
+ * an {@link java.util.ArrayList} it supports adding and removing elements, in addition elements
+ * can be read and written without boxing. A wrapped array is shared rather than copied until the
+ * list grows beyond it.
+ */
+public final class LongList extends AbstractList<Long> implements RandomAccess {
+  private long[] values;
+  private int size;
+
+  public LongList() {
+    this(new long[0]);
+  }
+
+  public LongList(long[] values) {
+    this.values = values;
+    this.size = values.length;
+  }
+
+  public static LongList of(long... values) {
+    return new LongList(values);
+  }
+
+  public long getLong(int index) {
+    return values[checkIndex(index)];
+  }
+
+  public void setLong(int index, long value) {
+    values[checkIndex(index)] = value;
+  }
+
+  public void addLong(long value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    values[size++] = value;
+    modCount++;
+  }
+
+  public long[] toLongArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+  /**
+   * @return the backing array, valid up to {@link #size()}
+   */
+  long[] array() {
+    return values;
+  }
+
+  private int checkIndex(int index) {
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    return index;
+  }
+
+  @Override
+  public Long get(int index) {
+    return getLong(index);
+  }
+
+  @Override
+  public Long set(int index, Long value) {
+    long old = values[checkIndex(index)];
+    values[index] = value;
+    return old;
+  }
+
+  @Override
+  public void add(int index, Long value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size * 2));
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public Long remove(int index) {
+    long old = values[checkIndex(index)];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    modCount++;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -18,4 +18,34 @@ public class LongType extends Type<Long> {
   public <R> Long deserialize(DeSer<R, ?> deser, R r) throws IOException {
     return deser.readLong(r);
   }
+
+  @Override
+  public boolean isPrimitive() {
+    return true;
+  }
+
+  @Override
+  public long toBits(Long value) {
+    return value;
+  }
+
+  @Override
+  public Long fromBits(long bits) {
+    return bits;
+  }
+
+  @Override
+  public <W> void serializeBits(DeSer<?, W> deser, W w, long bits) throws IOException {
+    deser.writeLong(w, bits);
+  }
+
+  @Override
+  public <R> long deserializeBits(DeSer<R, ?> deser, R r) throws IOException {
+    return deser.readLong(r);
+  }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readLong(r);
+  }
 }
@@ -3,23 +3,74 @@ package org.uwh.model.types;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 import org.uwh.model.io.DeSer;
 
 
+/**
+ * Maps with int, long or string keys and values of a primitive type decode to {@link LongKeyMap}
+ * and {@link StringKeyMap}, which are also encoded straight from their flat arrays. All other maps
+ * decode to a {@link HashMap}. Entries with null values are not written.
+ */
 public class MapType<K,V> extends Type<Map<K,V>> {
+  private static final int OBJECTS = 0;
+  private static final int LONG_KEYS = 1;
+  private static final int STRING_KEYS = 2;
+
   private final Type<K> keyType;
   private final Type<V> valueType;
+  private final int layout;
 
   public MapType(Type<K> keyType, Type<V> valueType) {
     super((Class) Map.class);
     this.keyType = keyType;
     this.valueType = valueType;
+    if (!valueType.isPrimitive()) {
+      layout = OBJECTS;
+    } else if (keyType instanceof IntType || keyType instanceof LongType) {
+      layout = LONG_KEYS;
+    } else if (keyType instanceof StringType) {
+      layout = STRING_KEYS;
+    } else {
+      layout = OBJECTS;
+    }
+  }
+
+  /**
+   * @return power of two table size keeping the load factor of the expected entries below 3/4
+   */
+  static int tableSize(int expectedSize) {
+    int size = 8;
+    while (size * 3L < expectedSize * 4L) {
+      size <<= 1;
+    }
+    return size;
   }
 
   @Override
   public <W> void serialize(DeSer<?, W> deser, W w, Map<K, V> value) throws IOException {
-    deser.writeUnsigned(w, value.values().stream().filter(Objects::nonNull).count());
+    if (layout == LONG_KEYS && value instanceof LongKeyMap) {
+      deser.writeUnsigned(w, value.size());
+      ((LongKeyMap<K,V>) value).forEachBits((k, bits) -> {
+        keyType.serializeBits(deser, w, k);
+        valueType.serializeBits(deser, w, bits);
+      });
+      return;
+    } else if (layout == STRING_KEYS && value instanceof StringKeyMap) {
+      deser.writeUnsigned(w, value.size());
+      ((StringKeyMap<V>) value).forEachBits((k, bits) -> {
+        deser.writeString(w, k);
+        valueType.serializeBits(deser, w, bits);
+      });
+      return;
+    }
+
+    int count = 0;
+    for (V v : value.values()) {
+      if (v != null) {
+        count++;
+      }
+    }
+    deser.writeUnsigned(w, count);
     for (Map.Entry<K,V> e : value.entrySet()) {
       if (e.getValue() != null) {
         keyType.serialize(deser, w, e.getKey());
@@ -30,14 +81,43 @@ public class MapType<K,V> extends Type<Map<K,V>> {
 
   @Override
   public <R> Map<K, V> deserialize(DeSer<R, ?> deser, R r) throws IOException {
-    long len = deser.readUnsigned(r);
+    int len = (int) deser.readUnsigned(r);
+    if (layout == LONG_KEYS) {
+      LongKeyMap<K,V> res = new LongKeyMap<>(keyType, valueType, len);
+      for (int i=0; i<len; i++) {
+        long key = keyType.deserializeBits(deser, r);
+        res.putBits(key, valueType.deserializeBits(deser, r));
+      }
+      return res;
+    } else if (layout == STRING_KEYS) {
+      StringKeyMap<V> res = new StringKeyMap<>(valueType, len);
+      for (int i=0; i<len; i++) {
+        String key = deser.readString(r);
+        res.putBits(key, valueType.deserializeBits(deser, r));
+      }
+      return (Map<K, V>) res;
+    }
+
     Map<K,V> res = new HashMap<>();
     for (int i=0; i<len; i++) {
       K key = keyType.deserialize(deser, r);
       V value = valueType.deserialize(deser, r);
       res.put(key, value);
     }
-
     return res;
   }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    long len = deser.readUnsigned(r);
+    for (int i=0; i<len; i++) {
+      keyType.skip(deser, r);
+      valueType.skip(deser, r);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "map<" + keyType + "," + valueType + ">";
+  }
 }
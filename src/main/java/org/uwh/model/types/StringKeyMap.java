@@ -0,0 +1,247 @@
+package org.uwh.model.types;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Map from string keys to values of a primitive type, the decoded form of map types such as
+ * {@code map<string,double>}. Keys and the bits of the values live in flat arrays probed linearly, so
+ * the typed accessors such as {@link #getDouble(String, double)} do not box the values. Null keys and
+ * values are not supported, entry iterators do not support removal.
+ */
+public final class StringKeyMap<V> extends AbstractMap<String,V> {
+  private final Type<V> valueType;
+  private final boolean floating;
+  private String[] keys;
+  private long[] values;
+  private int size;
+
+  public StringKeyMap(Type<V> valueType) {
+    this(valueType, 0);
+  }
+
+  public StringKeyMap(Type<V> valueType, int expectedSize) {
+    if (!valueType.isPrimitive()) {
+      throw new IllegalArgumentException("Unsupported map<string," + valueType + ">");
+    }
+    this.valueType = valueType;
+    this.floating = valueType instanceof DoubleType || valueType instanceof FloatType;
+    allocate(MapType.tableSize(expectedSize));
+  }
+
+  private void allocate(int capacity) {
+    keys = new String[capacity];
+    values = new long[capacity];
+  }
+
+  private static int hash(String key) {
+    int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int slot(String key) {
+    int mask = keys.length - 1;
+    int i = hash(key) & mask;
+    while (keys[i] != null && !keys[i].equals(key)) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  public boolean containsKey(String key) {
+    return keys[slot(key)] != null;
+  }
+
+  /**
+   * @return the value of a map with double or float values or missing if the key is absent
+   */
+  public double getDouble(String key, double missing) {
+    checkValues(true);
+    int i = slot(key);
+    return keys[i] != null ? toDouble(values[i]) : missing;
+  }
+
+  /**
+   * @return the value of a map with int or long values or missing if the key is absent
+   */
+  public long getLong(String key, long missing) {
+    checkValues(false);
+    int i = slot(key);
+    return keys[i] != null ? values[i] : missing;
+  }
+
+  public void putDouble(String key, double value) {
+    checkValues(true);
+    putBits(key, (valueType instanceof FloatType) ? Float.floatToRawIntBits((float) value) : Double.doubleToRawLongBits(value));
+  }
+
+  public void putLong(String key, long value) {
+    checkValues(false);
+    putBits(key, (valueType instanceof IntType) ? (int) value : value);
+  }
+
+  private void checkValues(boolean floating) {
+    if (this.floating != floating) {
+      throw new IllegalStateException("Map values are of type " + valueType);
+    }
+  }
+
+  private double toDouble(long bits) {
+    return (valueType instanceof FloatType) ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+  }
+
+  /**
+   * Inserts or replaces the raw bits of the value for the key, see {@link Type#toBits(Object)}.
+   */
+  public void putBits(String key, long bits) {
+    int i = slot(key);
+    if (keys[i] == null) {
+      if ((size + 1) * 4L > keys.length * 3L) {
+        rehash(keys.length << 1);
+        i = slot(key);
+      }
+      keys[i] = key;
+      size++;
+    }
+    values[i] = bits;
+  }
+
+  private void rehash(int capacity) {
+    String[] oldKeys = keys;
+    long[] oldValues = values;
+    allocate(capacity);
+    for (int i=0; i<oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Deletes by shifting later entries of the probe sequence back, so no tombstones are needed.
+   */
+  private void removeAt(int slot) {
+    int mask = keys.length - 1;
+    int gap = slot;
+    for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+      int home = hash(keys[i]) & mask;
+      if (((i - home) & mask) >= ((i - gap) & mask)) {
+        keys[gap] = keys[i];
+        values[gap] = values[i];
+        gap = i;
+      }
+    }
+    keys[gap] = null;
+    size--;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return (key instanceof String) && containsKey((String) key);
+  }
+
+  @Override
+  public V get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int i = slot((String) key);
+    return keys[i] != null ? valueType.fromBits(values[i]) : null;
+  }
+
+  @Override
+  public V put(String key, V value) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(value);
+    V old = get(key);
+    putBits(key, valueType.toBits(value));
+    return old;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int i = slot((String) key);
+    if (keys[i] == null) {
+      return null;
+    }
+    V old = valueType.fromBits(values[i]);
+    removeAt(i);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    allocate(MapType.tableSize(0));
+    size = 0;
+  }
+
+  @Override
+  public Set<Entry<String,V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String,V>> iterator() {
+        return new Iterator<>() {
+          private int next = advance(0);
+
+          private int advance(int from) {
+            while (from < keys.length && keys[from] == null) {
+              from++;
+            }
+            return from;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next < keys.length;
+          }
+
+          @Override
+          public Entry<String,V> next() {
+            if (next >= keys.length) {
+              throw new NoSuchElementException();
+            }
+            Entry<String,V> e = new SimpleImmutableEntry<>(keys[next], valueType.fromBits(values[next]));
+            next = advance(next + 1);
+            return e;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Visits keys and raw value bits without boxing.
+   */
+  public interface BitsVisitor {
+    void visit(String key, long bits) throws IOException;
+  }
+
+  public void forEachBits(BitsVisitor visitor) throws IOException {
+    for (int i=0; i<keys.length; i++) {
+      if (keys[i] != null) {
+        visitor.visit(keys[i], values[i]);
+      }
+    }
+  }
+}
@@ -17,4 +17,9 @@ public class StringType extends Type<String> {
   public <R> String deserialize(DeSer<R,?> deser, R r) throws IOException {
     return deser.readString(r);
   }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.skipString(r);
+  }
 }
@@ -5,6 +5,10 @@ import java.time.Instant;
 import org.uwh.model.io.DeSer;
 
 
+/**
+ * Timestamps, encoded as epoch milli. Records keep the {@link Instant} itself, so values keep
+ * their full precision and range until serialized, which truncates them to the milli.
+ */
 public class TimestampType extends Type<Instant> {
   public TimestampType() {
     super(Instant.class);
@@ -19,4 +23,9 @@ public class TimestampType extends Type<Instant> {
   public <R> Instant deserialize(DeSer<R, ?> deser, R r) throws IOException {
     return Instant.ofEpochMilli(deser.readLong(r));
   }
+
+  @Override
+  public <R> void skip(DeSer<R, ?> deser, R r) throws IOException {
+    deser.readLong(r);
+  }
 }
@@ -9,13 +9,13 @@ import org.uwh.model.io.DeSer;
 public abstract class Type<T> {
   private final Class<T> clazz;
 
-  public static final Type<Integer> INT = new IntType();
-  public static final Type<Long> LONG = new LongType();
-  public static final Type<Double> DOUBLE = new DoubleType();
-  public static final Type<Float> FLOAT = new FloatType();
+  public static final IntType INT = new IntType();
+  public static final LongType LONG = new LongType();
+  public static final DoubleType DOUBLE = new DoubleType();
+  public static final FloatType FLOAT = new FloatType();
   public static final Type<String> STRING = new StringType();
   public static final Type<LocalDate> DATE = new DateType();
-  public static final Type<Instant> TIMESTAMP = new TimestampType();
+  public static final TimestampType TIMESTAMP = new TimestampType();
   public static final Type BYTES = new BytesType();
 
   private static final Map<String,Type> typeMap = Map.of(
@@ -44,6 +44,46 @@ public abstract class Type<T> {
     return clazz;
   }
 
+  @Override
+  public String toString() {
+    return typeMap.entrySet().stream()
+        .filter(e -> e.getValue() == this)
+        .map(Map.Entry::getKey)
+        .findAny()
+        .orElse(getClass().getSimpleName());
+  }
+
   public abstract<W> void serialize(DeSer<?,W> deser, W w, T value) throws IOException;
   public abstract<R> T deserialize(DeSer<R,?> deser, R r) throws IOException;
+
+  /**
+   * Primitive types can carry their values as raw long bits, see {@link #toBits(Object)}, which
+   * lets records and codecs handle them without boxing.
+   */
+  public boolean isPrimitive() {
+    return false;
+  }
+
+  public long toBits(T value) {
+    throw new UnsupportedOperationException(this + " is not a primitive type");
+  }
+
+  public T fromBits(long bits) {
+    throw new UnsupportedOperationException(this + " is not a primitive type");
+  }
+
+  public<W> void serializeBits(DeSer<?,W> deser, W w, long bits) throws IOException {
+    throw new UnsupportedOperationException(this + " is not a primitive type");
+  }
+
+  public<R> long deserializeBits(DeSer<R,?> deser, R r) throws IOException {
+    throw new UnsupportedOperationException(this + " is not a primitive type");
+  }
+
+  /**
+   * Advances past an encoded value without materializing it.
+   */
+  public<R> void skip(DeSer<R,?> deser, R r) throws IOException {
+    deserialize(deser, r);
+  }
 }
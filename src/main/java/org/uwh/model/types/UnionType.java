@@ -4,8 +4,23 @@ import java.io.IOException;
 import java.util.List;
 import org.uwh.model.io.DeSer;
 
+/**
+ * Values are encoded as the index of the first variant whose class the value is an instance of,
+ * followed by the value. The index is cached per value class.
+ */
 public class UnionType extends Type {
   private final Type[] types;
+  private final ClassValue<Integer> variants = new ClassValue<>() {
+    @Override
+    protected Integer computeValue(Class<?> clazz) {
+      for (int i=0; i<types.length; i++) {
+        if (types[i].getClazz().isAssignableFrom(clazz)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  };
 
   public UnionType(Type[] types) {
     super(Object.class);
@@ -14,13 +29,7 @@ public class UnionType extends Type {
 
   @Override
   public void serialize(DeSer deser, Object w, Object value) throws IOException {
-    int idx = -1;
-    for (int i=0; i<types.length; i++) {
-      if (types[i].getClazz().isInstance(value)) {
-        idx = i;
-        break;
-      }
-    }
+    int idx = (value == null) ? -1 : variants.get(value.getClass());
     if (idx == -1) {
       throw new IllegalStateException("Value " + value + " does not match any of the types in union " + List.of(types));
     }
@@ -34,4 +43,15 @@ public class UnionType extends Type {
     int idx = (int) deser.readUnsigned(r);
     return types[idx].deserialize(deser, r);
   }
+
+  @Override
+  public void skip(DeSer deser, Object r) throws IOException {
+    int idx = (int) deser.readUnsigned(r);
+    types[idx].skip(deser, r);
+  }
+
+  @Override
+  public String toString() {
+    return "union" + List.of(types);
+  }
 }
@@ -0,0 +1,43 @@
+package org.uwh.model.validation;
+
+import java.util.List;
+
+
+/**
+ * Conjunction or disjunction of rules.
+ */
+public final class CompositeRule<T> implements Rule<T> {
+  private final boolean all;
+  private final List<Rule<T>> rules;
+
+  public CompositeRule(boolean all, List<Rule<T>> rules) {
+    this.all = all;
+    this.rules = List.copyOf(rules);
+  }
+
+  /**
+   * @return true if all rules must be satisfied, false if any rule suffices
+   */
+  public boolean isAll() {
+    return all;
+  }
+
+  public List<Rule<T>> getRules() {
+    return rules;
+  }
+
+  @Override
+  public boolean isSatisfied(T rec) {
+    for (Rule<T> r : rules) {
+      if (r.isSatisfied(rec) != all) {
+        return !all;
+      }
+    }
+    return all;
+  }
+
+  @Override
+  public String toString() {
+    return (all ? "ALL" : "ANY") + rules;
+  }
+}
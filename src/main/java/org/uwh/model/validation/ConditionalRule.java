@@ -0,0 +1,42 @@
+package org.uwh.model.validation;
+
+import java.util.function.Predicate;
+import org.uwh.model.Record;
+
+
+/**
+ * Applies one of two rules depending on a condition on the record.
+ */
+public final class ConditionalRule implements Rule<Record> {
+  private final Predicate<Record> condition;
+  private final Rule<Record> ifRule;
+  private final Rule<Record> elseRule;
+
+  public ConditionalRule(Predicate<Record> condition, Rule<Record> ifRule, Rule<Record> elseRule) {
+    this.condition = condition;
+    this.ifRule = ifRule;
+    this.elseRule = elseRule;
+  }
+
+  public Predicate<Record> getCondition() {
+    return condition;
+  }
+
+  public Rule<Record> getIfRule() {
+    return ifRule;
+  }
+
+  public Rule<Record> getElseRule() {
+    return elseRule;
+  }
+
+  @Override
+  public boolean isSatisfied(Record rec) {
+    return condition.test(rec) ? ifRule.isSatisfied(rec) : elseRule.isSatisfied(rec);
+  }
+
+  @Override
+  public String toString() {
+    return "IF(" + ifRule + ", " + elseRule + ")";
+  }
+}
@@ -0,0 +1,47 @@
+package org.uwh.model.validation;
+
+import java.util.function.Predicate;
+import org.uwh.model.Record;
+import org.uwh.model.Term;
+
+
+/**
+ * Condition that two operands are equal, each either a term, standing for its value in the record,
+ * or a literal value. Absent values equal null.
+ */
+public final class EqualsPredicate implements Predicate<Record> {
+  private final Object lhs;
+  private final Object rhs;
+
+  public EqualsPredicate(Object lhs, Object rhs) {
+    this.lhs = lhs;
+    this.rhs = rhs;
+  }
+
+  public Object getLeft() {
+    return lhs;
+  }
+
+  public Object getRight() {
+    return rhs;
+  }
+
+  @Override
+  public boolean test(Record rec) {
+    Object l = lhs;
+    Object r = rhs;
+    if (l instanceof Term<?>) {
+      l = rec.get((Term) l);
+    }
+    if (r instanceof Term<?>) {
+      r = rec.get((Term) r);
+    }
+
+    return (l == null && r == null) || (l != null && l.equals(r));
+  }
+
+  @Override
+  public String toString() {
+    return "EQ(" + lhs + ", " + rhs + ")";
+  }
+}
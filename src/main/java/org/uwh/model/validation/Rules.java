@@ -2,6 +2,7 @@ package org.uwh.model.validation;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.function.Predicate;
 import org.uwh.model.Record;
 import org.uwh.model.Term;
@@ -21,7 +22,7 @@ public class Rules {
   }
 
   public static Rule<Record> require(Term<?> t) {
-    return rec -> rec.get(t) != null;
+    return new TermsRule(TermsRule.Kind.ALL, List.of(t));
   }
 
   public static<T> Rule<T> all(Rule<T>... rules) {
@@ -29,7 +30,7 @@ public class Rules {
   }
 
   public static <T> Rule<T> all(Collection<Rule<T>> rules) {
-    return rec -> rules.stream().allMatch(r -> r.isSatisfied(rec));
+    return new CompositeRule<>(true, List.copyOf(rules));
   }
 
   public static<T> Rule<T> any(Rule<T>... rules) {
@@ -37,31 +38,33 @@ public class Rules {
   }
 
   public static <T> Rule<T> any(Collection<Rule<T>> rules) {
-    return rec -> rules.stream().anyMatch(r -> r.isSatisfied(rec));
+    return new CompositeRule<>(false, List.copyOf(rules));
   }
 
   public static Rule<Record> requireOneOf(Term... terms) {
-    return rec -> Arrays.stream(terms).filter(t -> rec.get(t) != null).count() == 1;
+    return new TermsRule(TermsRule.Kind.EXACTLY_ONE, List.of((Term<?>[]) terms));
   }
 
   public static Rule<Record> requireOneOrMoreOf(Term... terms) {
-    return rec -> Arrays.stream(terms).anyMatch(t -> rec.get(t) != null);
+    return new TermsRule(TermsRule.Kind.ANY, List.of((Term<?>[]) terms));
   }
 
   public static Rule<Record> conditionally(Predicate<Record> cond, Rule<Record> ifRule, Rule<Record> elseRule) {
-    return rec -> {
-      if (cond.test(rec)) {
-        return ifRule.isSatisfied(rec);
-      } else {
-        return elseRule.isSatisfied(rec);
-      }
-    };
+    return new ConditionalRule(cond, ifRule, elseRule);
   }
 
   public static Rule<Record> conditionally(Predicate<Record> cond, Rule<Record> rule) {
     return conditionally(cond, rule, always());
   }
 
+  /**
+   * @param lhs term or literal value
+   * @param rhs term or literal value
+   */
+  public static Predicate<Record> isEqual(Object lhs, Object rhs) {
+    return new EqualsPredicate(lhs, rhs);
+  }
+
   public static Rule<Double> bounded(double min, double max, boolean minInclusive, boolean maxInclusive) {
     return rec -> (min < rec || (min == rec && minInclusive)) && (max > rec || (max == rec && maxInclusive));
   }
@@ -0,0 +1,59 @@
+package org.uwh.model.validation;
+
+import java.util.List;
+import org.uwh.model.Record;
+import org.uwh.model.Term;
+
+
+/**
+ * Rule on the presence of a set of terms in a record.
+ */
+public final class TermsRule implements Rule<Record> {
+  public enum Kind {
+    /** all terms are present */
+    ALL,
+    /** exactly one of the terms is present */
+    EXACTLY_ONE,
+    /** at least one of the terms is present */
+    ANY
+  }
+
+  private final Kind kind;
+  private final List<Term<?>> terms;
+
+  public TermsRule(Kind kind, List<Term<?>> terms) {
+    this.kind = kind;
+    this.terms = List.copyOf(terms);
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public List<Term<?>> getTerms() {
+    return terms;
+  }
+
+  @Override
+  public boolean isSatisfied(Record rec) {
+    int count = 0;
+    for (Term<?> t : terms) {
+      if (rec.has(t)) {
+        count++;
+      }
+    }
+    switch (kind) {
+      case ALL:
+        return count == terms.size();
+      case EXACTLY_ONE:
+        return count == 1;
+      default:
+        return count > 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return kind + terms.stream().map(t -> t.getName().toString()).toList().toString();
+  }
+}
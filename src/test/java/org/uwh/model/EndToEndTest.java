@@ -1,13 +1,17 @@
 package org.uwh.model;
 
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.uwh.model.io.DeSerUtil;
+import org.uwh.model.types.ListType;
 import org.uwh.model.types.Type;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -65,4 +69,45 @@ public class EndToEndTest {
     assertEquals("IBM", finalRec.get(fTicker));
     assertEquals("MYBOOK", finalRec.get(fBook));
   }
+
+  @Test
+  public void testEnrichmentCopiesUnmodifiedValues() throws Exception {
+    Term<String> fTradeId = Term.of("trading/id", Type.STRING);
+    Term<Double> fNotional = Term.of("trading/notional", Type.DOUBLE);
+    Term<List<String>> fTags = Term.of("trading/tags", new ListType<>(Type.STRING));
+    Term<String> fTicker = Term.of("security/ticker", Type.STRING);
+    Term<String> fBook = Term.of("trading/book", Type.STRING);
+    Vocabulary voc = new Vocabulary(List.of(fTradeId, fNotional, fTags, fTicker, fBook));
+    Schema schema = new Schema(Name.of("trading", "trade"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), voc, Map.of(schema.getName(), schema)).toContext();
+
+    Record original = new Record(ctx, schema);
+    original.put(fTradeId, "123");
+    original.put(fNotional, 1000000.0);
+    original.put(fTags, List.of("a", "b"));
+    original.put(fBook, "MYBOOK");
+
+    for (boolean offsetTable : new boolean[] {false, true}) {
+      byte[] bytes = DeSerUtil.serialize(original, offsetTable);
+      assertArrayEquals(bytes, DeSerUtil.serialize(DeSerUtil.deserializeLazily(ctx, schema, bytes), offsetTable));
+
+      Record enriched = DeSerUtil.deserializeLazily(ctx, schema, bytes);
+      enriched.put(fTicker, "IBM");
+      enriched.put(fNotional, 2000000.0);
+      enriched.put(fBook, null);
+      Record finalRec = DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(enriched, offsetTable));
+
+      assertEquals(4, finalRec.getValues().size());
+      assertEquals("123", finalRec.get(fTradeId));
+      assertEquals(2000000.0, finalRec.get(fNotional));
+      assertEquals(List.of("a", "b"), finalRec.get(fTags));
+      assertEquals("IBM", finalRec.get(fTicker));
+      assertNull(finalRec.get(fBook));
+
+      // eagerly deserialized records do not reference the bytes, which the caller may reuse
+      Record copy = DeSerUtil.deserialize(ctx, schema, bytes);
+      Arrays.fill(bytes, (byte) 0);
+      assertEquals(original.getValues(), DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(copy, offsetTable)).getValues());
+    }
+  }
 }
@@ -0,0 +1,127 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.uwh.model.io.DeSerUtil;
+import org.uwh.model.pipeline.Pipeline;
+import org.uwh.model.pipeline.WaitStrategy;
+import org.uwh.model.types.Type;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class PipelineTest {
+  private final Term<String> fTradeId = Term.of("trading/id", Type.STRING);
+  private final Term<Double> fNotional = Term.of("trading/notional", Type.DOUBLE);
+  private final Term<String> fTicker = Term.of("security/ticker", Type.STRING);
+  private final Schema schema = new Schema(Name.of("trading", "trade")).require(fTradeId).require(fNotional);
+  private final Context ctx = new Namespace("trading", SemVer.of("1.0.0"),
+      new Vocabulary(List.of(fTradeId, fNotional, fTicker)), Map.of(schema.getName(), schema)).toContext();
+
+  @Test
+  public void testEnrichmentPipeline() throws Exception {
+    List<Record> out = new ArrayList<>();
+    Pipeline<byte[]> pipeline = Pipeline.<byte[]>builder()
+        .ringSize(8)
+        .waitStrategy(WaitStrategy.SLEEPING)
+        .stage("deserialize", bytes -> DeSerUtil.deserialize(ctx, schema, bytes))
+        .stage("validate", rec -> rec.isValid() ? rec : null)
+        .stage("enrich", 64, rec -> {
+          rec.put(fTicker, "IBM");
+          return rec;
+        })
+        .stage("serialize", DeSerUtil::serialize)
+        .build(bytes -> {
+          try {
+            out.add(DeSerUtil.deserialize(ctx, schema, bytes));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+
+    for (int i=0; i<10000; i++) {
+      Record rec = new Record(ctx, schema);
+      rec.put(fTradeId, "T" + i);
+      if (i % 10 != 0) {
+        rec.put(fNotional, i * 1.0);
+      }
+      pipeline.submit(DeSerUtil.serialize(rec));
+    }
+    pipeline.close();
+
+    assertEquals(10000, pipeline.getCompletedCount());
+    assertEquals(9000, out.size());
+    for (int i=0, n=0; i<10000; i++) {
+      if (i % 10 != 0) {
+        Record rec = out.get(n++);
+        assertEquals("T" + i, rec.get(fTradeId));
+        assertEquals("IBM", rec.get(fTicker));
+      }
+    }
+  }
+
+  @Test
+  public void testStageFailures() {
+    Pipeline<Integer> pipeline = Pipeline.<Integer>builder()
+        .stage("check", i -> {
+          if (i % 100 == 0) {
+            throw new IllegalArgumentException("bad " + i);
+          }
+          return i;
+        })
+        .build(i -> {});
+    for (int i=0; i<1000; i++) {
+      pipeline.submit(i);
+    }
+    assertThrows(IllegalStateException.class, pipeline::drain);
+    assertEquals(10, pipeline.getFailedCount());
+    pipeline.drain();
+
+    AtomicInteger handled = new AtomicInteger();
+    Pipeline<Integer> handling = Pipeline.<Integer>builder()
+        .ringSize(4)
+        .onError((item, e) -> handled.incrementAndGet())
+        .stage("fail", i -> {
+          throw new IllegalStateException();
+        })
+        .build(i -> {});
+    for (int i=0; i<100; i++) {
+      handling.submit(i);
+    }
+    handling.close();
+    assertEquals(100, handled.get());
+    assertThrows(IllegalStateException.class, () -> handling.submit(1));
+    assertEquals(1000, pipeline.getCompletedCount());
+    pipeline.close();
+
+    // errors and failing handlers do not kill the stage thread
+    Pipeline<Integer> erring = Pipeline.<Integer>builder()
+        .onError((item, e) -> {
+          throw new IllegalArgumentException("handler");
+        })
+        .stage("error", i -> {
+          if (i == 0) {
+            throw new AssertionError("bad " + i);
+          } else if (i == 1) {
+            throw new IllegalStateException("bad " + i);
+          }
+          return i;
+        })
+        .build(i -> {});
+    for (int i=0; i<100; i++) {
+      erring.submit(i);
+    }
+    IllegalStateException e = assertThrows(IllegalStateException.class, erring::drain);
+    assertTrue(e.getCause() instanceof AssertionError);
+    assertEquals(100, erring.getCompletedCount());
+    assertEquals(2, erring.getFailedCount());
+    erring.close();
+  }
+}
@@ -0,0 +1,114 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.uwh.model.batch.RecordBatch;
+import org.uwh.model.io.DeSerUtil;
+import org.uwh.model.io.GrowableBuffer;
+import org.uwh.model.types.ListType;
+import org.uwh.model.types.Type;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class RecordBatchTest {
+  private final Term<String> fTradeId = Term.of("trading/id", Type.STRING);
+  private final Term<Integer> fQuantity = Term.of("trading/quantity", Type.INT);
+  private final Term<Long> fVersion = Term.of("trading/version", Type.LONG);
+  private final Term<Double> fNotional = Term.of("trading/notional", Type.DOUBLE);
+  private final Term<Float> fRate = Term.of("trading/rate", Type.FLOAT);
+  private final Term<LocalDate> fTradeDate = Term.of("trading/trade_date", Type.DATE);
+  private final Term<Instant> fUpdated = Term.of("trading/updated", Type.TIMESTAMP);
+  private final Term<List<String>> fTags = Term.of("trading/tags", new ListType<>(Type.STRING));
+  private final Schema schema = new Schema(Name.of("trading", "trade")).require(fTradeId);
+  private final Context ctx = new Namespace("trading", SemVer.of("1.0.0"),
+      new Vocabulary(List.of(fTradeId, fQuantity, fVersion, fNotional, fRate, fTradeDate, fUpdated, fTags)),
+      Map.of(schema.getName(), schema)).toContext();
+
+  private Record trade(int i) {
+    Record rec = new Record(ctx, schema);
+    rec.put(fTradeId, "T\u00e9" + i);
+    rec.put(fQuantity, i);
+    rec.put(fVersion, (long) i * 3);
+    if (i % 3 != 0) {
+      rec.put(fNotional, i * 1000.0);
+    }
+    rec.put(fRate, i / 2.0f);
+    rec.put(fTradeDate, LocalDate.of(2022, 1, 1).plusDays(i));
+    rec.put(fUpdated, Instant.ofEpochMilli(1_000_000L * i));
+    if (i % 5 == 0) {
+      rec.put(fTags, List.of("x" + i, "y"));
+    }
+    return rec;
+  }
+
+  @Test
+  public void testColumnarStorage() throws IOException {
+    RecordBatch batch = new RecordBatch(ctx, schema, 4);
+    for (int i=0; i<100; i++) {
+      assertEquals(i, batch.add(trade(i)));
+    }
+    assertEquals(100, batch.size());
+
+    for (int i=0; i<100; i++) {
+      assertEquals(trade(i).getValues(), batch.getRecord(i).getValues());
+      assertEquals(i, batch.getInt(i, fQuantity));
+      assertEquals(i * 3L, batch.getLong(i, fVersion));
+      assertEquals(i % 3 != 0, batch.has(i, fNotional));
+    }
+    assertEquals(2000.0, batch.getDouble(2, fNotional));
+    assertThrows(IllegalStateException.class, () -> batch.getDouble(3, fNotional));
+
+    Record row = batch.getRecord(7);
+    assertTrue(row.isValid());
+    row.put(fTradeId, "changed");
+    row.put(fQuantity, null);
+    assertEquals("changed", batch.get(7, fTradeId));
+    assertFalse(batch.has(7, fQuantity));
+
+    GrowableBuffer buf = new GrowableBuffer(16);
+    batch.writeTo(buf);
+    RecordBatch copy = RecordBatch.read(ctx, schema, buf.buffer().flip());
+    assertEquals(100, copy.size());
+    for (int i=0; i<100; i++) {
+      assertEquals(batch.getRecord(i).getValues(), copy.getRecord(i).getValues());
+    }
+  }
+
+  @Test
+  public void testRowRecordWritesThrough() throws IOException {
+    RecordBatch batch = new RecordBatch(ctx, schema);
+    batch.add(trade(1));
+    batch.add(trade(2));
+
+    Record row = batch.getRecord(0);
+    row.clear();
+    assertEquals(0, row.size());
+    assertFalse(batch.has(0, fTradeId));
+    assertEquals(trade(2).getValues(), batch.getRecord(1).getValues());
+
+    DeSerUtil.deserializeInto(row, DeSerUtil.serialize(trade(5)));
+    assertEquals(trade(5).getValues(), batch.getRecord(0).getValues());
+    assertEquals(5, batch.getInt(0, fQuantity));
+    DeSerUtil.deserializeInto(row, DeSerUtil.serialize(trade(6)));
+    assertEquals(trade(6).getValues(), batch.getRecord(0).getValues());
+    assertFalse(batch.has(0, fTags));
+  }
+
+  @Test
+  public void testRejectsBatchFromDifferentContext() throws IOException {
+    RecordBatch batch = new RecordBatch(ctx, schema);
+    batch.add(trade(1));
+    GrowableBuffer buf = new GrowableBuffer(64);
+    batch.writeTo(buf);
+
+    Context other = new Namespace("trading", SemVer.of("1.0.0"), new Vocabulary(List.of(fTradeId)), Map.of()).toContext();
+    ByteBuffer in = buf.buffer().flip();
+    assertThrows(IOException.class, () -> RecordBatch.read(other, schema, in));
+  }
+}
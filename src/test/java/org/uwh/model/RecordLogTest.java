@@ -0,0 +1,71 @@
+package org.uwh.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.uwh.model.io.RecordLog;
+import org.uwh.model.types.Type;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public class RecordLogTest {
+  private final Term<String> fTradeId = Term.of("trading/id", Type.STRING);
+  private final Term<Long> fVersion = Term.of("trading/version", Type.LONG);
+  private final Schema schema = new Schema(Name.of("trading", "trade"));
+  private final Context ctx = new Namespace("trading", SemVer.of("1.0.0"),
+      new Vocabulary(List.of(fTradeId, fVersion)), Map.of(schema.getName(), schema)).toContext();
+
+  private Record trade(long i) {
+    Record rec = new Record(ctx, schema);
+    rec.put(fTradeId, "T" + i);
+    rec.put(fVersion, i);
+    return rec;
+  }
+
+  @Test
+  public void testAppendSeekAndResume(@TempDir Path dir) throws IOException {
+    try (RecordLog log = new RecordLog(dir, ctx, 4096, 16)) {
+      for (long i=0; i<1000; i++) {
+        assertEquals(i, log.append(trade(i)));
+      }
+    }
+
+    try (RecordLog log = new RecordLog(dir, ctx, 4096, 16)) {
+      assertEquals(1000, log.size());
+      for (long i=1000; i<1500; i++) {
+        log.append(trade(i));
+      }
+      log.flush();
+
+      RecordLog.Cursor cursor = log.cursor(schema);
+      for (long i=0; i<1500; i++) {
+        assertEquals(i, cursor.position());
+        assertEquals(i, cursor.read().get(fVersion));
+      }
+      assertNull(cursor.read());
+
+      for (long n : new long[] {777, 0, 1499, 1000, 15, 16, 17}) {
+        cursor.seek(n);
+        assertEquals("T" + n, cursor.readLazily().get(fTradeId));
+        assertEquals(n + 1, cursor.position());
+      }
+      cursor.seek(1500);
+      assertNull(cursor.read());
+      assertThrows(IllegalArgumentException.class, () -> cursor.seek(1501));
+    }
+  }
+
+  @Test
+  public void testEmptyLog(@TempDir Path dir) throws IOException {
+    try (RecordLog log = new RecordLog(dir, ctx)) {
+      assertEquals(0, log.size());
+      assertNull(log.cursor(schema).read());
+    }
+  }
+}
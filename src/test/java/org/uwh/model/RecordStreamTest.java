@@ -0,0 +1,276 @@
+package org.uwh.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.uwh.model.io.BlockCompression;
+import org.uwh.model.io.BlockRecordReader;
+import org.uwh.model.io.BlockRecordWriter;
+import org.uwh.model.io.IngestServer;
+import org.uwh.model.io.RecordReader;
+import org.uwh.model.io.RecordWriter;
+import org.uwh.model.types.Type;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class RecordStreamTest {
+  private final Term<String> fTradeId = Term.of("trading/id", Type.STRING);
+  private final Term<Double> fNotional = Term.of("trading/notional", Type.DOUBLE);
+  private final Term<String> fBook = Term.of("trading/book", Type.STRING);
+  private final Schema schema = new Schema(Name.of("trading", "trade")).require(fTradeId);
+  private final Context ctx = new Namespace("trading", SemVer.of("1.0.0"),
+      new Vocabulary(List.of(fTradeId, fNotional, fBook)), Map.of(schema.getName(), schema)).toContext();
+
+  private byte[] writeTrades(int count) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (RecordWriter writer = new RecordWriter(ctx, bos, 256)) {
+      for (int i=0; i<count; i++) {
+        Record rec = new Record(ctx, schema);
+        rec.put(fTradeId, "T" + i);
+        rec.put(fNotional, i * 1000.0);
+        if (i % 2 == 0) {
+          rec.put(fBook, "BOOK" + (i % 7));
+        }
+        writer.write(rec);
+      }
+      assertEquals(count, writer.getRecordCount());
+    }
+    return bos.toByteArray();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    byte[] bytes = writeTrades(1000);
+
+    try (RecordReader reader = new RecordReader(ctx, schema, Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+      for (int i=0; i<1000; i++) {
+        Record rec = reader.read();
+        assertEquals("T" + i, rec.get(fTradeId));
+        assertEquals(i * 1000.0, rec.get(fNotional));
+        assertEquals((i % 2 == 0) ? "BOOK" + (i % 7) : null, rec.get(fBook));
+      }
+      assertNull(reader.read());
+      assertEquals(1000, reader.getRecordCount());
+    }
+  }
+
+  @Test
+  public void testEmptyAndTruncatedStreams() throws IOException {
+    byte[] bytes = writeTrades(0);
+    try (RecordReader reader = new RecordReader(ctx, schema, new ByteArrayInputStream(bytes))) {
+      assertNull(reader.read());
+    }
+
+    bytes = writeTrades(2);
+    RecordReader reader = new RecordReader(ctx, schema, new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+    reader.read();
+    assertThrows(IOException.class, reader::read);
+
+    // corrupt frame lengths are rejected rather than allocated
+    for (int length : new int[] {-1, Integer.MAX_VALUE}) {
+      ByteBuffer.wrap(bytes).putInt(13, length);
+      RecordReader corrupt = new RecordReader(ctx, schema, new ByteArrayInputStream(bytes));
+      IOException e = assertThrows(IOException.class, corrupt::read);
+      assertTrue(e.getMessage().startsWith("Invalid frame length"));
+    }
+  }
+
+  @Test
+  public void testRejectsDifferentContext() throws IOException {
+    byte[] bytes = writeTrades(1);
+    Context other = new Namespace("trading", SemVer.of("1.0.0"),
+        new Vocabulary(List.of(fTradeId, fNotional)), Map.of(schema.getName(), schema)).toContext();
+    assertThrows(IOException.class, () -> new RecordReader(other, schema, new ByteArrayInputStream(bytes)));
+  }
+
+  private byte[] writeBlocks(int count, BlockCompression compression, ExecutorService executor) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (BlockRecordWriter writer = new BlockRecordWriter(ctx, bos, compression, 4096, executor)) {
+      for (int i=0; i<count; i++) {
+        Record rec = new Record(ctx, schema);
+        rec.put(fTradeId, "T" + i);
+        rec.put(fNotional, i * 1000.0);
+        if (i % 2 == 0) {
+          rec.put(fBook, "BOOK" + (i % 7));
+        }
+        writer.write(rec);
+      }
+      assertEquals(count, writer.getRecordCount());
+    }
+    return bos.toByteArray();
+  }
+
+  private void readBlocks(byte[] bytes, int count, ExecutorService executor) throws IOException {
+    try (BlockRecordReader reader = new BlockRecordReader(ctx, schema, new ByteArrayInputStream(bytes), executor)) {
+      for (int i=0; i<count; i++) {
+        Record rec = reader.read();
+        assertEquals("T" + i, rec.get(fTradeId));
+        assertEquals(i * 1000.0, rec.get(fNotional));
+        assertEquals((i % 2 == 0) ? "BOOK" + (i % 7) : null, rec.get(fBook));
+      }
+      assertNull(reader.read());
+      assertEquals(count, reader.getRecordCount());
+    }
+  }
+
+  @Test
+  public void testBlockCompressedRoundTrip() throws IOException {
+    int raw = writeTrades(5000).length;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (BlockCompression compression : BlockCompression.values()) {
+        byte[] sequential = writeBlocks(5000, compression, null);
+        byte[] parallel = writeBlocks(5000, compression, executor);
+        assertEquals(sequential.length, parallel.length);
+        if (compression != BlockCompression.NONE) {
+          assertTrue(sequential.length < raw / 2, compression + " " + sequential.length + " of " + raw);
+        }
+        readBlocks(sequential, 5000, null);
+        readBlocks(parallel, 5000, executor);
+      }
+      readBlocks(writeBlocks(0, BlockCompression.LZ, executor), 0, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testBlockChecksum() throws IOException {
+    byte[] bytes = writeBlocks(100, BlockCompression.LZ, null);
+    bytes[bytes.length - 10] ^= 1;
+    BlockRecordReader reader = new BlockRecordReader(ctx, schema, new ByteArrayInputStream(bytes));
+    assertThrows(IOException.class, () -> {
+      while (reader.read() != null) {
+      }
+    });
+  }
+
+  @Test
+  public void testCorruptBlockLengths() throws IOException {
+    byte[] bytes = writeBlocks(100, BlockCompression.LZ, null);
+    // raw length and stored length follow the stream header and the compression id
+    for (int offset : new int[] {13 + 1, 13 + 5}) {
+      byte[] corrupt = bytes.clone();
+      ByteBuffer.wrap(corrupt).putInt(offset, Integer.MAX_VALUE);
+      BlockRecordReader reader = new BlockRecordReader(ctx, schema, new ByteArrayInputStream(corrupt));
+      IOException e = assertThrows(IOException.class, reader::read);
+      assertEquals("Corrupt block header", e.getMessage());
+    }
+    assertThrows(IllegalArgumentException.class, () -> new BlockRecordWriter(ctx, new ByteArrayOutputStream(), BlockCompression.LZ, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testIngestServer() throws Exception {
+    Queue<Record> received = new ConcurrentLinkedQueue<>();
+    try (IngestServer server = new IngestServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ctx, schema, received::add)) {
+      ExecutorService producers = Executors.newFixedThreadPool(4);
+      List<Future<long[]>> acks = new ArrayList<>();
+      for (int p=0; p<4; p++) {
+        int producer = p;
+        acks.add(producers.submit(() -> {
+          try (SocketChannel ch = SocketChannel.open(server.getAddress())) {
+            RecordWriter writer = new RecordWriter(ctx, ch, 512);
+            for (int i=0; i<500; i++) {
+              Record rec = new Record(ctx, schema);
+              if (i % 100 != 0) {
+                rec.put(fTradeId, "P" + producer + "-" + i);
+              }
+              rec.put(fNotional, i * 1.0);
+              writer.write(rec);
+            }
+            writer.flush();
+
+            ByteBuffer ack = ByteBuffer.allocate(16);
+            long[] counts = new long[2];
+            while (counts[0] + counts[1] < 500) {
+              ack.clear();
+              while (ack.hasRemaining()) {
+                if (ch.read(ack) < 0) {
+                  throw new IOException("Server closed the connection");
+                }
+              }
+              counts[0] = ack.getLong(0);
+              counts[1] = ack.getLong(8);
+            }
+            return counts;
+          }
+        }));
+      }
+      for (Future<long[]> f : acks) {
+        long[] counts = f.get();
+        assertEquals(495, counts[0]);
+        assertEquals(5, counts[1]);
+      }
+      producers.shutdown();
+
+      assertEquals(1980, received.size());
+      assertEquals(1980, server.getAcceptedCount());
+      assertEquals(20, server.getRejectedCount());
+      assertTrue(received.stream().allMatch(Record::isValid));
+    }
+  }
+
+  @Test
+  public void testIngestServerWithoutReadingAcks() throws Exception {
+    AtomicReference<Exception> error = new AtomicReference<>();
+    try (IngestServer server = new IngestServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ctx, schema, rec -> {}, error::set)) {
+      // a plain producer never reads acks, many small batches must not stall the server
+      try (SocketChannel ch = SocketChannel.open(server.getAddress())) {
+        RecordWriter writer = new RecordWriter(ctx, ch, 64);
+        for (int i=0; i<100000; i++) {
+          Record rec = new Record(ctx, schema);
+          rec.put(fTradeId, "T" + i);
+          writer.write(rec);
+        }
+        writer.flush();
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (server.getAcceptedCount() < 100000 && System.nanoTime() < deadline) {
+          Thread.sleep(10);
+        }
+        // closing with unread acks would reset the connection
+        ch.shutdownOutput();
+        ByteBuffer acks = ByteBuffer.allocate(4096);
+        while (ch.read(acks) >= 0) {
+          acks.clear();
+        }
+      }
+      assertEquals(100000, server.getAcceptedCount());
+      assertEquals(0, server.getFailedCount());
+
+      // corrupt streams are counted and reported
+      try (SocketChannel ch = SocketChannel.open(server.getAddress())) {
+        new RecordWriter(ctx, ch).flush();
+        ch.write(ByteBuffer.allocate(4).putInt(0, -1));
+        ByteBuffer eof = ByteBuffer.allocate(16);
+        while (ch.read(eof) >= 0) {
+          eof.clear();
+        }
+      }
+      long deadline = System.nanoTime() + 10_000_000_000L;
+      while (server.getFailedCount() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, server.getFailedCount());
+      assertTrue(error.get() instanceof IOException);
+    }
+  }
+}
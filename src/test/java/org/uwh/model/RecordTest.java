@@ -1,15 +1,35 @@
 package org.uwh.model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
+import org.uwh.model.io.BinaryDeSer;
+import org.uwh.model.io.BufferPool;
+import org.uwh.model.io.ByteBufferDeSer;
+import org.uwh.model.io.ContextRegistry;
 import org.uwh.model.io.DeSerUtil;
+import org.uwh.model.io.EncodedRecord;
+import org.uwh.model.io.GrowableBuffer;
+import org.uwh.model.io.Projection;
+import org.uwh.model.io.RecordFilter;
+import org.uwh.model.io.RecordPool;
+import org.uwh.model.io.RecordWriter;
+import org.uwh.model.io.SpecializedCodec;
+import org.uwh.model.types.DoubleList;
 import org.uwh.model.types.ListType;
+import org.uwh.model.types.LongKeyMap;
+import org.uwh.model.types.LongList;
 import org.uwh.model.types.MapType;
+import org.uwh.model.types.StringKeyMap;
 import org.uwh.model.types.Type;
 import org.uwh.model.types.UnionType;
 import org.uwh.model.validation.Rules;
@@ -84,6 +104,575 @@ public class RecordTest {
     assertEquals(2.1, (double) roundTrip.get(fDouble), 0.00001);
   }
 
+  @Test
+  public void testBufferSerialization() throws IOException {
+    Term<String> fString = Term.of("myns/string_field", Type.STRING);
+    Term<Long> fLong = Term.of("myns/long_field", Type.LONG);
+    Vocabulary vocab = new Vocabulary(List.of(fString, fLong));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.put(fString, "z\u00fcrich \u20ac\u0000".repeat(10));
+    sut.put(fLong, Long.MIN_VALUE);
+
+    BufferPool pool = new BufferPool(16, true, 4);
+    GrowableBuffer buf = pool.acquire();
+    DeSerUtil.serialize(sut, buf);
+    DeSerUtil.serialize(sut, buf);
+    assertTrue(buf.capacity() > 16);
+
+    ByteBuffer in = buf.buffer().flip();
+    for (int i=0; i<2; i++) {
+      Record roundTrip = DeSerUtil.deserialize(ctx, schema, in);
+      assertEquals(sut.get(fString), roundTrip.get(fString));
+      assertEquals(Long.MIN_VALUE, roundTrip.get(fLong));
+    }
+    assertFalse(in.hasRemaining());
+    pool.release(buf);
+
+    assertThrows(java.nio.BufferOverflowException.class, () -> DeSerUtil.serialize(sut, ByteBuffer.allocate(8)));
+  }
+
+  @Test
+  public void testBufferEncodingMatchesStreamEncoding() throws IOException {
+    String s = "abc\u0000\u00e9\u4e2d\ud83d\ude00";
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bos);
+    BinaryDeSer streamDeSer = new BinaryDeSer();
+    streamDeSer.writeString(dos, s);
+    streamDeSer.writeInt(dos, -12345);
+    streamDeSer.writeDouble(dos, 2.5);
+    dos.flush();
+
+    ByteBuffer buf = ByteBuffer.allocate(64);
+    ByteBufferDeSer.INSTANCE.writeString(buf, s);
+    ByteBufferDeSer.INSTANCE.writeInt(buf, -12345);
+    ByteBufferDeSer.INSTANCE.writeDouble(buf, 2.5);
+    buf.flip();
+    byte[] bytes = new byte[buf.remaining()];
+    buf.get(bytes);
+    assertArrayEquals(bos.toByteArray(), bytes);
+
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    assertEquals(s, ByteBufferDeSer.INSTANCE.readString(in));
+    assertEquals(-12345, ByteBufferDeSer.INSTANCE.readInt(in));
+    assertEquals(2.5, ByteBufferDeSer.INSTANCE.readDouble(in));
+  }
+
+  @Test
+  public void testReadsLegacyStringEncoding() throws IOException {
+    Term<String> fString = Term.of("myns/string_field", Type.STRING);
+    Term<Long> fLong = Term.of("myns/long_field", Type.LONG);
+    Vocabulary vocab = new Vocabulary(List.of(fString, fLong));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.put(fString, "z\u00fcrich");
+    sut.put(fLong, 42L);
+
+    ByteBuffer legacy = ByteBuffer.allocate(64);
+    ctx.getCodec().write(ByteBufferDeSer.LEGACY, legacy, sut);
+    byte[] bytes = java.util.Arrays.copyOf(legacy.array(), legacy.position());
+    assertEquals(sut.getValues(), DeSerUtil.deserialize(ctx, schema, bytes).getValues());
+    assertEquals("z\u00fcrich", DeSerUtil.deserializeLazily(ctx, schema, bytes).get(fString));
+    // re-encoded in the current format
+    assertEquals(bytes.length - 1, DeSerUtil.serialize(DeSerUtil.deserialize(ctx, schema, bytes)).length);
+
+    String large = "x".repeat(70000) + "\u20ac";
+    sut.put(fString, large);
+    assertEquals(large, DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)).get(fString));
+  }
+
+  @Test
+  public void testReadsOriginalFormat() throws IOException {
+    Term<String> fString = Term.of("myns/a", Type.STRING);
+    Term<Long> fLong = Term.of("myns/b", Type.LONG);
+    Term<Double> fDouble = Term.of("myns/c", Type.DOUBLE);
+    Term<List<String>> fList = Term.of("myns/d", new ListType<>(Type.STRING));
+    Vocabulary vocab = new Vocabulary(List.of(fString, fLong, fDouble, fList));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    // as written before format markers: field count, then tag and value of every field
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream dos = new DataOutputStream(bos);
+    dos.write(4);
+    dos.write(3);
+    dos.write(2);
+    dos.writeUTF("x");
+    dos.writeUTF("\u20ac");
+    dos.write(0);
+    dos.writeUTF("z\u00fcrich\u0000");
+    dos.write(2);
+    dos.writeDouble(2.5);
+    dos.write(1);
+    dos.write(84);
+    byte[] bytes = bos.toByteArray();
+
+    Map<Term<?>, Object> expected = Map.of(fString, "z\u00fcrich\u0000", fLong, 42L, fDouble, 2.5, fList, List.of("x", "\u20ac"));
+    assertEquals(expected, DeSerUtil.deserialize(ctx, schema, bytes).getValues());
+    assertEquals(expected, DeSerUtil.deserialize(ctx, schema, ByteBuffer.wrap(bytes)).getValues());
+    assertEquals(expected, new ContextRegistry(ctx).deserialize(schema, bytes).getValues());
+    assertEquals("z\u00fcrich\u0000", DeSerUtil.deserializeLazily(ctx, schema, bytes).get(fString));
+    assertEquals(Map.of(fLong, 42L), DeSerUtil.deserialize(ctx, schema, bytes, Projection.of(fLong)).getValues());
+
+    // field counts above 127 take more than one byte
+    List<Term<?>> wide = new ArrayList<>();
+    for (int i=0; i<200; i++) {
+      wide.add(Term.of(String.format("myns/t%03d", i), Type.LONG));
+    }
+    Schema wideSchema = new Schema(Name.of("myns", "wide"));
+    Context wideCtx = new Namespace("myns", SemVer.of("1.0.0"), new Vocabulary(wide), Map.of(wideSchema.getName(), wideSchema)).toContext();
+    bos.reset();
+    BinaryDeSer varints = new BinaryDeSer();
+    varints.writeUnsigned(dos, 200);
+    for (int i=0; i<200; i++) {
+      varints.writeUnsigned(dos, i);
+      varints.writeUnsigned(dos, 2L * i);
+    }
+    Record rec = DeSerUtil.deserialize(wideCtx, wideSchema, bos.toByteArray());
+    assertEquals(200, rec.size());
+    assertEquals(199L, rec.get(wide.get(199)));
+  }
+
+  @Test
+  public void testLazyDeserialization() throws IOException {
+    List<Term<?>> terms = new java.util.ArrayList<>();
+    for (int i=0; i<100; i++) {
+      Type<?> type = (i % 2 == 0) ? Type.STRING : new ListType<>(Type.LONG);
+      terms.add(Term.of("myns/field" + i, type));
+    }
+    Vocabulary vocab = new Vocabulary(terms);
+    Schema schema = new Schema(Name.of("myns", "schema")).require(terms.get(10));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record rec = new Record(ctx, schema);
+    for (int i=0; i<100; i+=3) {
+      rec.put("myns/field" + i, (i % 2 == 0) ? "value" + i : List.of((long) i, 1L));
+    }
+
+    for (boolean offsetTable : new boolean[] {false, true}) {
+      byte[] bytes = DeSerUtil.serialize(rec, offsetTable);
+      EncodedRecord sut = DeSerUtil.deserializeLazily(ctx, schema, bytes);
+      assertEquals("value42", sut.get("myns/field42"));
+      assertEquals(List.of(3L, 1L), sut.get("myns/field3"));
+      assertNull(sut.get("myns/field1"));
+      assertTrue(sut.has(terms.get(99)));
+      assertFalse(sut.has(terms.get(98)));
+      assertFalse(sut.isValid());
+
+      sut.put("myns/field10", "added");
+      sut.put("myns/field42", null);
+      assertTrue(sut.isValid());
+      assertNull(sut.get("myns/field42"));
+      assertEquals(34, sut.getValues().size());
+      assertEquals(sut.getValues(), DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)).getValues());
+
+      Record eager = DeSerUtil.deserialize(ctx, schema, bytes);
+      assertEquals(rec.getValues(), eager.getValues());
+    }
+  }
+
+  @Test
+  public void testLazyDeserializationWithTermAddedLater() throws IOException {
+    Term<String> fA = Term.of("myns/a", Type.STRING);
+    Term<Long> fC = Term.of("myns/c", Type.LONG);
+    Vocabulary vocab = new Vocabulary(List.of(fA, fC));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record rec = new Record(ctx, schema);
+    rec.put(fA, "a");
+    rec.putLong(fC, 3);
+    EncodedRecord sut = DeSerUtil.deserializeLazily(ctx, schema, DeSerUtil.serialize(rec));
+
+    // shifts the tag of myns/c, the term has no tag in the codec of the encoding
+    Term<String> fB = Term.of("myns/b", Type.STRING);
+    vocab.insertTerm(fB);
+    sut.put(fB, "b");
+    assertEquals("b", sut.get(fB));
+    assertEquals(3, sut.size());
+
+    Map<Term<?>, Object> expected = Map.of(fA, "a", fB, "b", fC, 3L);
+    assertEquals(expected, DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)).getValues());
+    assertEquals(expected, DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut, true)).getValues());
+
+    sut.put(fB, null);
+    assertFalse(sut.has(fB));
+    assertEquals(Map.of(fA, "a", fC, 3L), DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)).getValues());
+  }
+
+  @Test
+  public void testProjectedDeserialization() throws IOException {
+    Term<String> name = Term.of("myns/name", Type.STRING);
+    Term<Long> qty = Term.of("myns/qty", Type.LONG);
+    Term<List<String>> tags = Term.of("myns/tags", new ListType<>(Type.STRING));
+    Term<Double> price = Term.of("myns/price", Type.DOUBLE);
+    Vocabulary vocab = new Vocabulary(List.of(name, qty, tags, price));
+    Schema full = new Schema(Name.of("myns", "full"));
+    Schema narrow = new Schema(Name.of("myns", "narrow")).allow(qty).allow(price).allowNoOtherTerms();
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(full.getName(), full, narrow.getName(), narrow)).toContext();
+
+    Record rec = new Record(ctx, full);
+    rec.put(name, "widget");
+    rec.put(qty, 12L);
+    rec.put(tags, List.of("a", "b", "c"));
+    rec.put(price, 1.5);
+
+    for (boolean offsetTable : new boolean[] {false, true}) {
+      byte[] bytes = DeSerUtil.serialize(rec, offsetTable);
+      Record sut = DeSerUtil.deserialize(ctx, full, bytes, Projection.of(name, price));
+      assertEquals(Map.of(name, "widget", price, 1.5), sut.getValues());
+
+      sut = DeSerUtil.deserialize(ctx, narrow, bytes, Projection.of(ctx, narrow));
+      assertEquals(Map.of(qty, 12L, price, 1.5), sut.getValues());
+      assertTrue(sut.isValid());
+    }
+
+    GrowableBuffer buf = new GrowableBuffer(64);
+    DeSerUtil.serialize(rec, buf);
+    DeSerUtil.serialize(rec, buf);
+    ByteBuffer in = ByteBuffer.wrap(buf.toByteArray());
+    Projection projection = Projection.of(tags);
+    for (int i=0; i<2; i++) {
+      assertEquals(Map.of(tags, List.of("a", "b", "c")), DeSerUtil.deserialize(ctx, full, in, projection).getValues());
+    }
+    assertFalse(in.hasRemaining());
+  }
+
+  @Test
+  public void testPredicatePushdown() throws IOException {
+    Term<String> book = Term.of("trading/book", Type.STRING);
+    Term<Long> qty = Term.of("trading/qty", Type.LONG);
+    Term<Double> price = Term.of("trading/price", Type.DOUBLE);
+    Term<Instant> updated = Term.of("trading/updated", Type.TIMESTAMP);
+    Vocabulary vocab = new Vocabulary(List.of(book, qty, price, updated));
+    Schema schema = new Schema(Name.of("trading", "trade"));
+    Context ctx = new Namespace("trading", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    GrowableBuffer buf = new GrowableBuffer(64);
+    for (int i=0; i<10; i++) {
+      Record rec = new Record(ctx, schema);
+      rec.put(book, "book" + (i % 3));
+      rec.put(qty, (long) i);
+      if (i % 2 == 0) {
+        rec.put(price, 100.0 + i);
+      }
+      rec.put(updated, Instant.ofEpochMilli(1000 * i));
+      DeSerUtil.serialize(rec, buf, i % 4 == 0);
+    }
+    ByteBuffer in = ByteBuffer.wrap(buf.toByteArray());
+
+    RecordFilter byBook = new RecordFilter(ctx, schema, Rules.isEqual(book, "book1"));
+    assertTrue(byBook.isEvaluatedOnEncoding());
+    List<Record> matches = new java.util.ArrayList<>();
+    assertEquals(3, byBook.filter(in.duplicate(), matches::add));
+    assertEquals(List.of(1L, 4L, 7L), matches.stream().map(r -> r.get(qty)).toList());
+    assertEquals("book1", matches.get(1).get(book));
+
+    RecordFilter noPrice = new RecordFilter(ctx, schema, Rules.isEqual(null, price));
+    assertTrue(noPrice.isEvaluatedOnEncoding());
+    assertEquals(5, noPrice.filter(in.duplicate(), r -> assertNull(r.get(price))));
+
+    RecordFilter byPrice = new RecordFilter(ctx, schema, Rules.isEqual(price, 104.0));
+    assertFalse(byPrice.isEvaluatedOnEncoding());
+    assertEquals(1, byPrice.filter(in.duplicate(), r -> assertEquals(4L, r.get(qty))));
+
+    RecordFilter generic = new RecordFilter(ctx, schema, r -> r.get(qty) > 7L);
+    assertEquals(2, generic.filter(in.duplicate(), r -> {}));
+
+    // timestamps are encoded in millis, finer literals must not match the truncated encoding
+    RecordFilter byTime = new RecordFilter(ctx, schema, Rules.isEqual(updated, Instant.ofEpochMilli(3000)));
+    assertTrue(byTime.isEvaluatedOnEncoding());
+    assertEquals(1, byTime.filter(in.duplicate(), r -> assertEquals(3L, r.get(qty))));
+    RecordFilter byNanos = new RecordFilter(ctx, schema, Rules.isEqual(updated, Instant.ofEpochMilli(3000).plusNanos(1)));
+    assertFalse(byNanos.isEvaluatedOnEncoding());
+    assertEquals(0, byNanos.filter(in.duplicate(), r -> {}));
+
+    Record rec = new Record(ctx, schema);
+    rec.put(book, "book1");
+    rec.put(qty, 42L);
+    for (boolean offsetTable : new boolean[] {false, true}) {
+      byte[] bytes = DeSerUtil.serialize(rec, offsetTable);
+      assertEquals(rec.getValues(), byBook.apply(bytes).getValues());
+      assertNull(new RecordFilter(ctx, schema, Rules.isEqual(qty, 41L)).apply(bytes));
+    }
+  }
+
+  @Test
+  public void testRecordReuse() throws IOException {
+    Term<String> name = Term.of("myns/name", Type.STRING);
+    Term<Long> qty = Term.of("myns/qty", Type.LONG);
+    Term<Double> price = Term.of("myns/price", Type.DOUBLE);
+    Vocabulary vocab = new Vocabulary(List.of(name, qty, price));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record full = new Record(ctx, schema);
+    full.put(name, "widget");
+    full.putLong(qty, 12);
+    full.putDouble(price, 1.5);
+    Record partial = new Record(ctx, schema);
+    partial.putLong(qty, 7);
+
+    Record target = new Record(ctx, schema);
+    assertSame(target, DeSerUtil.deserializeInto(target, DeSerUtil.serialize(full)));
+    assertEquals(full.getValues(), target.getValues());
+    DeSerUtil.deserializeInto(target, DeSerUtil.serialize(partial));
+    assertEquals(Map.of(qty, 7L), target.getValues());
+    assertEquals(1, target.size());
+    assertFalse(target.has(price));
+
+    target.clear();
+    assertEquals(0, target.size());
+    assertNull(target.get(qty));
+
+    EncodedRecord encoded = DeSerUtil.deserializeLazily(ctx, schema, DeSerUtil.serialize(full));
+    encoded.clear();
+    assertEquals(0, encoded.size());
+    assertNull(encoded.get(name));
+    encoded.put(name, "other");
+    assertEquals(Map.of(name, "other"), DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(encoded)).getValues());
+
+    RecordPool pool = new RecordPool(ctx, schema, 2);
+    Record pooled = pool.deserialize(DeSerUtil.serialize(full));
+    assertEquals(full.getValues(), pooled.getValues());
+    pool.release(pooled);
+    Record again = pool.deserialize(DeSerUtil.serialize(partial));
+    assertSame(pooled, again);
+    assertEquals(Map.of(qty, 7L), again.getValues());
+    assertThrows(IllegalArgumentException.class, () -> pool.release(encoded));
+  }
+
+  @Test
+  public void testSparseRecordMemory() throws IOException {
+    List<Term<?>> terms = new ArrayList<>();
+    for (int i=0; i<20000; i++) {
+      Type<?> type = (i % 2 == 0) ? Type.LONG : Type.STRING;
+      terms.add(Term.of("myns/t" + i, type));
+    }
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), new Vocabulary(terms), Map.of(schema.getName(), schema)).toContext();
+    Term<Long> fLong = (Term<Long>) terms.get(10000);
+    Term<String> fString = (Term<String>) terms.get(19999);
+    byte[] bytes;
+    {
+      Record rec = new Record(ctx, schema);
+      rec.putLong(fLong, 42);
+      rec.put(fString, "s");
+      bytes = DeSerUtil.serialize(rec);
+    }
+
+    // a two value record over a wide vocabulary must not pay for the vocabulary
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Record[] records = new Record[1000];
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i=0; i<records.length; i++) {
+      records[i] = DeSerUtil.deserialize(ctx, schema, bytes);
+    }
+    long perRecord = (threads.getCurrentThreadAllocatedBytes() - before) / records.length;
+    assertTrue(perRecord < 1024, "Allocated " + perRecord + " bytes per record");
+    assertEquals(42L, records[999].getLong(fLong));
+    assertEquals("s", records[999].get(fString));
+    assertTrue(records[999].isValid());
+  }
+
+  @Test
+  public void testPrimitiveAccessors() throws IOException {
+    Term<Integer> fInt = Term.of("myns/int_field", Type.INT);
+    Term<Long> fLong = Term.of("myns/long_field", Type.LONG);
+    Term<Double> fDouble = Term.of("myns/double_field", Type.DOUBLE);
+    Term<Float> fFloat = Term.of("myns/float_field", Type.FLOAT);
+    Term<Instant> fTimestamp = Term.of("myns/timestamp_field", Type.TIMESTAMP);
+    Vocabulary vocab = new Vocabulary(List.of(fInt, fLong, fDouble, fFloat, fTimestamp));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.putInt(fInt, -3);
+    sut.putLong(fLong, Long.MIN_VALUE);
+    sut.putDouble(fDouble, 1.5);
+    sut.put(fFloat, 2.5f);
+    sut.put(fTimestamp, Instant.ofEpochMilli(1000));
+
+    assertEquals(-3, sut.getInt(fInt));
+    assertEquals(Integer.valueOf(-3), sut.get(fInt));
+    assertEquals(Long.MIN_VALUE, sut.getLong(fLong));
+    assertEquals(1.5, sut.getDouble(fDouble));
+    assertEquals(2.5f, sut.getFloat(fFloat));
+    assertEquals(5, sut.size());
+    assertThrows(UnsupportedOperationException.class, () -> sut.getValues().clear());
+
+    for (Record copy : List.of(DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)),
+        DeSerUtil.deserialize(ctx, schema, ByteBuffer.wrap(DeSerUtil.serialize(sut, true))))) {
+      assertEquals(sut.getValues(), copy.getValues());
+      assertEquals(1.5, copy.getDouble(fDouble));
+    }
+
+    sut.put(fDouble, null);
+    assertFalse(sut.has(fDouble));
+    assertThrows(IllegalStateException.class, () -> sut.getDouble(fDouble));
+    assertEquals(4, sut.size());
+
+    // timestamps keep their precision and range in the record, only the encoding is in millis
+    Instant precise = Instant.ofEpochSecond(1000, 123_456_789);
+    sut.put(fTimestamp, precise);
+    assertEquals(precise, sut.get(fTimestamp));
+    assertEquals(Instant.ofEpochSecond(1000, 123_000_000), DeSerUtil.deserialize(ctx, schema, DeSerUtil.serialize(sut)).get(fTimestamp));
+    sut.put(fTimestamp, Instant.MAX);
+    assertEquals(Instant.MAX, sut.get(fTimestamp));
+  }
+
+  @Test
+  public void testSpecializedCodec() throws IOException {
+    Term<Integer> fInt = Term.of("myns/int_field", Type.INT);
+    Term<Long> fLong = Term.of("myns/long_field", Type.LONG);
+    Term<Double> fDouble = Term.of("myns/double_field", Type.DOUBLE);
+    Term<Float> fFloat = Term.of("myns/float_field", Type.FLOAT);
+    Term<Instant> fTimestamp = Term.of("myns/timestamp_field", Type.TIMESTAMP);
+    Term<String> fString = Term.of("myns/string_field", Type.STRING);
+    Term<Object> fUnion = Term.of("myns/union_field", new UnionType(new Type[] {Type.LONG, Type.STRING}));
+    Vocabulary vocab = new Vocabulary(List.of(fInt, fLong, fDouble, fFloat, fTimestamp, fString, fUnion));
+    Schema schema = new Schema(Name.of("myns", "schema")).require(fInt).allow(fLong).allow(fDouble)
+        .allow(fFloat).allow(fTimestamp).allow(fString).allow(fUnion).allowNoOtherTerms();
+    Schema small = new Schema(Name.of("myns", "small")).allow(fInt).allowNoOtherTerms();
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema, small.getName(), small)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.putInt(fInt, -3);
+    sut.putLong(fLong, Long.MIN_VALUE);
+    sut.putDouble(fDouble, 1.5);
+    sut.putFloat(fFloat, 2.5f);
+    sut.put(fTimestamp, Instant.ofEpochMilli(1000));
+    sut.put(fString, "z\u00fcrich");
+    sut.put(fUnion, "abc");
+
+    SpecializedCodec codec = schema.getSpecializedCodec(ctx);
+    assertTrue(codec.isGenerated());
+    assertSame(codec, schema.getSpecializedCodec(ctx));
+    for (SpecializedCodec c : List.of(codec, small.getSpecializedCodec(ctx))) {
+      ByteBuffer buf = ByteBuffer.allocate(256);
+      c.write(ByteBufferDeSer.INSTANCE, buf, sut);
+      assertArrayEquals(DeSerUtil.serialize(sut), java.util.Arrays.copyOf(buf.array(), buf.position()));
+    }
+
+    ByteBuffer in = ByteBuffer.wrap(DeSerUtil.serialize(sut, true));
+    assertEquals(sut.getValues(), codec.read(ByteBufferDeSer.INSTANCE, in, ctx, schema).getValues());
+    assertFalse(in.hasRemaining());
+
+    ByteBuffer legacy = ByteBuffer.allocate(256);
+    ctx.getCodec().write(ByteBufferDeSer.LEGACY, legacy, sut);
+    legacy.flip();
+    assertEquals(sut.getValues(), small.getSpecializedCodec(ctx).read(ByteBufferDeSer.INSTANCE, legacy, ctx, schema).getValues());
+
+    // compiled per codec, alternating contexts reuse their codecs and validators
+    Context other = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+    SpecializedCodec otherCodec = schema.getSpecializedCodec(other);
+    SchemaValidator validator = schema.validator(ctx);
+    assertNotSame(codec, otherCodec);
+    assertNotSame(validator, schema.validator(other));
+    assertSame(codec, schema.getSpecializedCodec(ctx));
+    assertSame(otherCodec, schema.getSpecializedCodec(other));
+    assertSame(validator, schema.validator(ctx));
+
+    schema.allow(Term.of("myns/other", Type.STRING));
+    assertNotSame(codec, schema.getSpecializedCodec(ctx));
+    assertNotSame(validator, schema.validator(ctx));
+    // open schemas over large vocabularies are left to the codec
+    List<Term<?>> many = new java.util.ArrayList<>();
+    for (int i=0; i<=SpecializedCodec.MAX_GENERATED_FIELDS; i++) {
+      many.add(Term.of("myns/t" + i, Type.LONG));
+    }
+    Schema open = new Schema(Name.of("myns", "open"));
+    Context large = new Namespace("myns", SemVer.of("1.0.0"), new Vocabulary(many), Map.of(open.getName(), open)).toContext();
+    SpecializedCodec fallback = open.getSpecializedCodec(large);
+    assertFalse(fallback.isGenerated());
+    Record wide = new Record(large, open);
+    wide.put((Term<Long>) many.get(3), 42L);
+    ByteBuffer buf = ByteBuffer.allocate(64);
+    fallback.write(ByteBufferDeSer.INSTANCE, buf, wide);
+    assertArrayEquals(DeSerUtil.serialize(wide), java.util.Arrays.copyOf(buf.array(), buf.position()));
+  }
+
+  @Test
+  public void testCrossVersionReads() throws IOException {
+    Term<String> fBook = Term.of("trading/book", Type.STRING);
+    Term<Long> fQty = Term.of("trading/qty", Type.LONG);
+    Term<Double> fPrice = Term.of("trading/price", Type.DOUBLE);
+    Term<Long> fQuantity = new Term<>(Name.of("trading", "quantity"), Type.LONG, Set.of(Name.of("trading", "qty")), List.of());
+    Schema schema = new Schema(Name.of("trading", "trade"));
+    Context v1 = new Namespace("trading", SemVer.of("1.0.0"), new Vocabulary(List.of(fBook, fQty)), Map.of(schema.getName(), schema)).toContext();
+    Context v2 = new Namespace("trading", SemVer.of("1.1.0"), new Vocabulary(List.of(fBook, fPrice, fQuantity)), Map.of(schema.getName(), schema)).toContext();
+
+    Record rec = new Record(v2, schema);
+    rec.put(fBook, "B1");
+    rec.putDouble(fPrice, 99.5);
+    rec.putLong(fQuantity, 100);
+    byte[] bytes = DeSerUtil.serialize(rec);
+
+    assertEquals(rec.getValues(), DeSerUtil.deserialize(v2, schema, bytes).getValues());
+
+    ContextRegistry registry = new ContextRegistry(v1);
+    assertThrows(IOException.class, () -> registry.deserialize(schema, bytes));
+    registry.register(v2);
+    Record old = registry.deserialize(schema, bytes);
+    assertEquals(Map.of(fBook, "B1", fQty, 100L), old.getValues());
+    assertEquals(old.getValues(), registry.deserialize(schema, DeSerUtil.serialize(rec, true)).getValues());
+    // values copied from the encoding keep the fingerprint of the encoding's context
+    EncodedRecord lazy = DeSerUtil.deserializeLazily(v2, schema, bytes);
+    lazy.put(fBook, "B3");
+    assertEquals("B3", registry.deserialize(schema, DeSerUtil.serialize(lazy)).get(fBook));
+
+    Record back = new Record(v1, schema);
+    back.put(fBook, "B2");
+    back.putLong(fQty, 5);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (RecordWriter writer = new RecordWriter(v1, bos)) {
+      writer.write(back);
+    }
+    // a frame of the stream, after stream header and frame length, identified by the stream header
+    ByteBuffer frame = ByteBuffer.wrap(bos.toByteArray(), 13 + 4, bos.size() - 13 - 4);
+    long fingerprint = ByteBuffer.wrap(bos.toByteArray()).getLong(5);
+    ContextRegistry newer = new ContextRegistry(v2);
+    newer.register(v1);
+    Record upgraded = newer.read(ByteBufferDeSer.INSTANCE, frame, schema, fingerprint);
+    assertEquals(5L, upgraded.getLong(fQuantity));
+    assertEquals("B2", upgraded.get(fBook));
+  }
+
+  @Test
+  public void testValuesInIndexOrder() {
+    Term<String> fA = Term.of("myns/a", Type.STRING);
+    Term<Long> fB = Term.of("myns/b", Type.LONG);
+    Term<String> fC = Term.of("myns/c", Type.STRING);
+    Vocabulary vocab = new Vocabulary(List.of(fC, fA, fB));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+    assertEquals(0, ctx.indexOf(fA));
+    assertEquals(fC, ctx.termAt(2));
+
+    Record sut = new Record(ctx, schema);
+    sut.put(fC, "c");
+    sut.putLong(fB, 2);
+    sut.put(fA, "a");
+    assertEquals(List.of(fA, fB, fC), List.copyOf(sut.getValues().keySet()));
+
+    Term<String> fD = Term.of("myns/d", Type.STRING);
+    vocab.insertTerm(fD);
+    sut.put(fD, "d");
+    assertEquals("d", sut.get(fD));
+    assertEquals(4, sut.size());
+
+    // the values are a read-only view of the record
+    Map<Term<?>, Object> values = sut.getValues();
+    assertEquals(Map.of(fA, "a", fB, 2L, fC, "c", fD, "d"), values);
+    sut.put(fA, null);
+    assertEquals(List.of(fB, fC, fD), List.copyOf(values.keySet()));
+    assertThrows(UnsupportedOperationException.class, () -> values.put(fA, "a"));
+  }
+
   @Test
   public void testSerializationSize() throws Exception {
     Term<String> fString = Term.of("myns/string_field", Type.STRING);
@@ -104,8 +693,37 @@ public class RecordTest {
       System.out.print(b + " ");
     }
     System.out.println();
-    // 24 = field num:1, tag:1, string length:1, string:6, tag:1, int:4, tag:1, double:8
-    assertTrue(bytes.length <= 25, "Too long: " + bytes.length);
+
+    // in a stream the header identifies the context, records leave out the fingerprint
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (RecordWriter writer = new RecordWriter(ns.toContext(), bos)) {
+      writer.write(sut);
+    }
+    // header:13, frame length:4
+    int framed = bos.size() - 13 - 4;
+    // 25 = format marker:2, field num:1, tag:1, string length:1, string:6, tag:1, int:4, tag:1, double:8
+    assertTrue(framed <= 25, "Too long: " + framed);
+    // standalone records carry the compact fingerprint, a varint of at most 5 bytes
+    assertTrue(bytes.length > framed && bytes.length <= framed + 5, "Too long: " + bytes.length);
+  }
+
+  @Test
+  public void testCodecIsCompiledOncePerContext() {
+    Term<String> fieldA = Term.of("myns/a", Type.STRING);
+    Term<String> fieldB = Term.of("myns/b", Type.STRING);
+    Vocabulary vocab = new Vocabulary(List.of(fieldB, fieldA));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    assertSame(ctx.getCodec(), ctx.getCodec());
+    assertEquals(0, ctx.getCodec().tagOf(fieldA));
+    assertEquals(1, ctx.getCodec().tagOf(fieldB));
+    assertSame(fieldB, ctx.getCodec().termOf(1));
+    assertNull(ctx.getCodec().termOf(2));
+
+    Term<String> fieldC = Term.of("myns/c", Type.STRING);
+    vocab.insertTerm(fieldC);
+    assertEquals(2, ctx.getCodec().tagOf(fieldC));
   }
 
   @Test
@@ -129,6 +747,31 @@ public class RecordTest {
     assertEquals("string", roundTrip.get(fieldB));
   }
 
+  @Test
+  public void testDeSerWithMismatchedContextFails() throws IOException {
+    Term<String> fieldAA = Term.of("myns/aa", Type.STRING);
+    Term<String> fieldS = Term.of("myns/s", Type.STRING);
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context writerCtx = new Namespace("myns", SemVer.of("1.1.0"), new Vocabulary(List.of(fieldAA, fieldS)), Map.of(schema.getName(), schema)).toContext();
+    Context readerCtx = new Namespace("myns", SemVer.of("1.0.0"), new Vocabulary(List.of(fieldS)), Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(writerCtx, schema);
+    sut.put(fieldAA, "aa");
+    byte[] bytes = DeSerUtil.serialize(sut);
+
+    // tag 0 is myns/aa for the writer but myns/s for the reader
+    IOException e = assertThrows(IOException.class, () -> DeSerUtil.deserialize(readerCtx, schema, bytes));
+    assertTrue(e.getMessage().contains("ContextRegistry"), e.getMessage());
+    assertThrows(IOException.class, () -> DeSerUtil.deserialize(readerCtx, schema, ByteBuffer.wrap(bytes)));
+    assertThrows(IllegalArgumentException.class, () -> new EncodedRecord(readerCtx, schema, ByteBuffer.wrap(bytes)));
+
+    ContextRegistry registry = new ContextRegistry(readerCtx);
+    registry.register(writerCtx);
+    Record rec = registry.deserialize(schema, bytes);
+    assertFalse(rec.has(fieldS));
+    assertEquals(0, rec.size());
+  }
+
   @Test
   public void testSerializeWithNulls() throws IOException {
     Term<String> fString = Term.of("myns/string_field", Type.STRING);
@@ -144,8 +787,8 @@ public class RecordTest {
     sut.put(fDouble, null);
 
     byte[] bytes = DeSerUtil.serialize(sut);
-    // only the length (0)
-    assertEquals(1, bytes.length);
+    // only the format marker, the length (0) and the fingerprint
+    assertArrayEquals(DeSerUtil.serialize(new Record(ns.toContext(), schema)), bytes);
 
     Record sut2 = DeSerUtil.deserialize(ns.toContext(), schema, bytes);
     assertNull(sut2.get(fString));
@@ -153,6 +796,23 @@ public class RecordTest {
     assertNull(sut2.get(fDouble));
   }
 
+  @Test
+  public void testRejectsUnknownFormatVersion() throws IOException {
+    Term<String> fString = Term.of("myns/string_field", Type.STRING);
+    Vocabulary vocab = new Vocabulary(List.of(fString));
+    Schema schema = new Schema(Name.of("myns", "schema"));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.put(fString, "string");
+    byte[] bytes = DeSerUtil.serialize(sut);
+    assertEquals((byte) 0x82, bytes[0]);
+    assertEquals(0, bytes[1]);
+
+    bytes[0] = (byte) 0x83;
+    assertThrows(IOException.class, () -> DeSerUtil.deserialize(ctx, schema, ByteBuffer.wrap(bytes)));
+  }
+
   @Test
   public void testValidation() {
     Term<String> fieldA = Term.of("myns/a", Type.STRING);
@@ -193,6 +853,41 @@ public class RecordTest {
     assertEquals(3, sut.get(fieldB));
   }
 
+  @Test
+  public void testValidationAcrossMaskWords() throws IOException {
+    List<Term<?>> terms = new ArrayList<>();
+    for (int i=0; i<100; i++) {
+      terms.add(Term.of(String.format("myns/f%03d", i), Type.INT));
+    }
+    Vocabulary vocab = new Vocabulary(terms);
+    Schema open = new Schema(Name.of("myns", "open"));
+    Schema closed = new Schema(Name.of("myns", "closed")).require(terms.get(70)).allow(terms.get(3)).allow(terms.get(90)).allowNoOtherTerms();
+    closed.requireOneOf(terms.get(3), terms.get(90));
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(open.getName(), open, closed.getName(), closed)).toContext();
+
+    Record sut = new Record(ctx, closed);
+    sut.put("myns/f070", 1);
+    assertFalse(sut.isValid());
+    sut.put("myns/f090", 2);
+    assertTrue(sut.isValid());
+    sut.put("myns/f003", 3);
+    assertFalse(sut.isValid());
+    sut.put("myns/f090", null);
+    assertTrue(sut.isValid());
+
+    // decoding does not check the terms against the schema, validation does
+    Record other = new Record(ctx, open);
+    other.put("myns/f070", 1);
+    other.put("myns/f003", 3);
+    other.put("myns/f099", 9);
+    byte[] bytes = DeSerUtil.serialize(other);
+    assertFalse(DeSerUtil.deserialize(ctx, closed, bytes).isValid());
+    assertFalse(DeSerUtil.deserializeLazily(ctx, closed, bytes).isValid());
+    other.put("myns/f099", null);
+    assertTrue(DeSerUtil.deserialize(ctx, closed, DeSerUtil.serialize(other)).isValid());
+    assertTrue(DeSerUtil.deserializeLazily(ctx, closed, DeSerUtil.serialize(other)).isValid());
+  }
+
   @Test
   public void testOneOfRule() {
     Term<String> fieldA = Term.of("myns/a", Type.STRING);
@@ -269,6 +964,71 @@ public class RecordTest {
     assertTrue(sut.isValid());
   }
 
+  @Test
+  public void testBulkValidation() {
+    Term<String> fId = Term.of("myns/id", Type.STRING);
+    Term<Double> fNotional = Term.of("myns/notional", Type.DOUBLE).withValidation(Rules.min(0.0, true));
+    Vocabulary vocab = new Vocabulary(List.of(fId, fNotional));
+    Schema schema = new Schema(Name.ofQualified("myns/trade")).require(fId);
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    List<Record> records = new java.util.ArrayList<>();
+    for (int i=0; i<10000; i++) {
+      Record rec = new Record(ctx, schema);
+      if (i % 1000 != 7) {
+        rec.put(fId, "T" + i);
+      }
+      rec.putDouble(fNotional, (i % 2500 == 7) ? -1.0 : i);
+      records.add(rec);
+    }
+
+    BulkValidator sut = new BulkValidator();
+    for (ValidationReport report : List.of(sut.validate(records), sut.validate(records.stream()))) {
+      assertEquals(10000, report.getRecordCount());
+      assertFalse(report.isValid());
+      assertEquals(14, report.getFailureCount());
+      assertEquals(12, report.getInvalidRecordCount());
+      assertEquals(7, report.getRecordIndex(0));
+      assertEquals(9007, report.getRecordIndex(13));
+      assertEquals(2, report.getReasons().size());
+      assertTrue(report.getFailures().stream().anyMatch(f -> f.getRecordIndex() == 2507 && f.getReason().startsWith("myns/notional")));
+    }
+    assertTrue(sut.validate(List.of()).isValid());
+
+    // one failure per missing required term
+    Schema both = new Schema(Name.ofQualified("myns/both")).require(fId).require(fNotional);
+    ValidationReport report = sut.validate(List.of(new Record(ctx, both)));
+    assertEquals(2, report.getFailureCount());
+    assertEquals(1, report.getInvalidRecordCount());
+    assertEquals(Set.of("myns/both: missing required term myns/id", "myns/both: missing required term myns/notional"),
+        report.getFailures().stream().map(ValidationReport.Failure::getReason).collect(java.util.stream.Collectors.toSet()));
+  }
+
+  @Test
+  public void testSchemaChangesAfterValidation() throws IOException {
+    Term<String> fA = Term.of("myns/a", Type.STRING);
+    Term<String> fB = Term.of("myns/b", Type.STRING);
+    Term<String> fC = Term.of("myns/c", Type.STRING);
+    Vocabulary vocab = new Vocabulary(List.of(fA, fB, fC));
+    Schema schema = new Schema(Name.ofQualified("myns/schema")).require(fA);
+    Context ctx = new Namespace("myns", SemVer.of("1.0.0"), vocab, Map.of(schema.getName(), schema)).toContext();
+
+    Record sut = new Record(ctx, schema);
+    sut.put(fA, "a");
+    sut.put(fB, "b");
+    assertTrue(sut.isValid());
+
+    schema.requireOneOf(fB, fC);
+    sut.put(fC, "c");
+    assertFalse(sut.isValid());
+    sut.put(fC, null);
+    assertTrue(sut.isValid());
+
+    schema.allowNoOtherTerms();
+    assertThrows(IllegalArgumentException.class, () -> sut.put(fC, "c"));
+    assertFalse(DeSerUtil.deserializeLazily(ctx, schema, DeSerUtil.serialize(new Record(ctx, schema))).isValid());
+  }
+
   @Test
   public void testMultiNsContext() throws Exception {
     Term<String> fFieldA = Term.of("ns1/a", Type.STRING);
@@ -296,20 +1056,103 @@ public class RecordTest {
 
   @Test
   public void testTypeSupport() throws IOException {
-    // one byte for list length, two 5 char strings + 2 byte length
-    assertTypeRoundTrips(new ListType<>(Type.STRING), List.of("hello", "world"), 15);
+    // one byte for list length, two 5 char strings + 1 byte length
+    assertTypeRoundTrips(new ListType<>(Type.STRING), List.of("hello", "world"), 13);
     assertTypeRoundTrips(Type.DATE, LocalDate.now(), 3);
     // Instant.now() generates a more precise timestamp than milliseconds
     assertTypeRoundTrips(Type.TIMESTAMP, Instant.ofEpochMilli(System.currentTimeMillis()), 6);
     assertTypeRoundTrips(Type.LONG, 4L, 1);
     assertTypeRoundTrips(Type.FLOAT, 3.2f, 4);
     assertTypeRoundTrips(Type.BYTES, new byte[] {0,1,2,3}, 5);
-    assertTypeRoundTrips(new MapType<>(Type.STRING, Type.LONG), Map.of("one", 1L, "two", 2L), 13);
+    assertTypeRoundTrips(new MapType<>(Type.STRING, Type.LONG), Map.of("one", 1L, "two", 2L), 11);
 
     Type unionType = new UnionType(new Type[] {Type.LONG, Type.STRING, new ListType(Type.STRING)});
     assertTypeRoundTrips(unionType, 1L, 2);
-    assertTypeRoundTrips(unionType, "abc", 6);
-    assertTypeRoundTrips(unionType, List.of("hello", "world"), 16);
+    assertTypeRoundTrips(unionType, "abc", 5);
+    assertTypeRoundTrips(unionType, List.of("hello", "world"), 14);
+  }
+
+  @Test
+  public void testPackedLists() throws IOException {
+    // one byte for list length, 8 bytes per double
+    assertTypeRoundTrips(new ListType<>(Type.DOUBLE), DoubleList.of(1.5, -2.25, 1e300), 25);
+    assertTypeRoundTrips(new ListType<>(Type.DOUBLE), List.of(1.5, -2.25), 17);
+    assertTypeRoundTrips(new ListType<>(Type.LONG), LongList.of(3, -1, 1L << 40), 9);
+    assertTypeRoundTrips(new ListType<>(Type.INT), List.of(1, -300), 4);
+
+    ListType<Double> type = new ListType<>(Type.DOUBLE);
+    double[] values = new double[1000];
+    for (int i=0; i<values.length; i++) {
+      values[i] = i * 0.5;
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    type.serialize(new BinaryDeSer(), new DataOutputStream(bos), new DoubleList(values));
+    ByteBuffer buf = ByteBuffer.allocate(bos.size());
+    type.serialize(ByteBufferDeSer.INSTANCE, buf, new DoubleList(values));
+    assertArrayEquals(bos.toByteArray(), buf.array());
+
+    buf.flip();
+    List<Double> decoded = type.deserialize(ByteBufferDeSer.INSTANCE, buf);
+    assertEquals(0, buf.remaining());
+    assertArrayEquals(values, ((DoubleList) decoded).toDoubleArray());
+
+    // decoded lists stay mutable
+    decoded.add(1.0);
+    decoded.remove(0);
+    assertEquals(1000, decoded.size());
+    assertEquals(1.0, decoded.get(999));
+    bos.reset();
+    type.serialize(new BinaryDeSer(), new DataOutputStream(bos), decoded);
+    assertEquals(decoded, type.deserialize(ByteBufferDeSer.INSTANCE, ByteBuffer.wrap(bos.toByteArray())));
+    LongList ids = new LongList();
+    ids.addLong(7);
+    ids.add(0, 5L);
+    assertEquals(List.of(5L, 7L), ids);
+    assertThrows(IndexOutOfBoundsException.class, () -> ids.getLong(2));
+
+    ListType<Long> longs = new ListType<>(Type.LONG);
+    buf = ByteBuffer.allocateDirect(32);
+    longs.serialize(ByteBufferDeSer.INSTANCE, buf, List.of(5L, -7L, Long.MIN_VALUE));
+    buf.flip();
+    assertEquals(List.of(5L, -7L, Long.MIN_VALUE), longs.deserialize(ByteBufferDeSer.INSTANCE, buf));
+  }
+
+  @Test
+  public void testPrimitiveMaps() throws IOException {
+    // one byte for map size, per entry one byte key and 8 bytes value
+    assertTypeRoundTrips(new MapType<>(Type.LONG, Type.DOUBLE), Map.of(1L, 0.5, -2L, 1.5), 19);
+    assertTypeRoundTrips(new MapType<>(Type.STRING, Type.DOUBLE), Map.of("1y", 0.5, "10y", 1.5), 24);
+
+    MapType<Long, Double> type = new MapType<>(Type.LONG, Type.DOUBLE);
+    LongKeyMap<Long, Double> buckets = new LongKeyMap<>(Type.LONG, Type.DOUBLE);
+    Map<Long, Double> expected = new java.util.HashMap<>();
+    for (long i=0; i<1000; i++) {
+      buckets.putDouble(i * 31, i);
+      expected.put(i * 31, (double) i);
+    }
+    for (long i=0; i<1000; i+=3) {
+      assertEquals((double) i, buckets.remove(i * 31));
+      expected.remove(i * 31);
+    }
+    assertEquals(expected, buckets);
+    assertEquals(-1.0, buckets.getDouble(0, -1.0));
+    assertEquals(4.0, buckets.getDouble(4 * 31, -1.0));
+    assertNull(buckets.get(4 * 31));
+    assertThrows(IllegalStateException.class, () -> buckets.getLong(4 * 31, 0));
+
+    ByteBuffer buf = ByteBuffer.allocate(16384);
+    type.serialize(ByteBufferDeSer.INSTANCE, buf, buckets);
+    buf.flip();
+    Map<Long, Double> decoded = type.deserialize(ByteBufferDeSer.INSTANCE, buf);
+    assertInstanceOf(LongKeyMap.class, decoded);
+    assertEquals(expected, decoded);
+
+    StringKeyMap<Integer> counts = new StringKeyMap<>(Type.INT);
+    counts.put("a", 1);
+    counts.putLong("b", -2);
+    assertEquals(Map.of("a", 1, "b", -2), counts);
+    assertEquals(-2, counts.getLong("b", 0));
+    assertEquals(0, counts.getLong("c", 0));
   }
 
   private <T> void assertTypeRoundTrips(Type<T> type, T value, int persistedSize) throws IOException {
@@ -322,8 +1165,9 @@ public class RecordTest {
     assertEquals(value, sut.get(fieldA));
 
     byte[] bytes = DeSerUtil.serialize(sut);
-    // two extra bytes: num fields, tag
-    assertEquals(persistedSize+2, bytes.length);
+    // extra bytes: format marker, num fields, fingerprint, as in an empty record, and the tag
+    byte[] empty = DeSerUtil.serialize(new Record(ns.toContext(), schema));
+    assertEquals(persistedSize+empty.length+1, bytes.length);
 
     sut = DeSerUtil.deserialize(ns.toContext(), schema, bytes);
     if (value instanceof byte[]) {
@@ -9,6 +9,8 @@ import org.uwh.model.validation.Rules;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TermTest {
@@ -20,6 +22,21 @@ public class TermTest {
     assertEquals(sut, sut);
   }
 
+  @Test
+  public void testNameParsing() {
+    Name sut = Name.ofQualified("MyNs/Trade");
+    assertEquals("MyNs", sut.getNamespace());
+    assertEquals("Trade", sut.getName());
+    assertSame(sut, Name.ofQualified("MyNs/Trade"));
+    assertEquals(Name.of("myns", "trade"), sut);
+    assertEquals(Name.of("myns", "trade").hashCode(), sut.hashCode());
+    assertEquals(Name.of("", "a"), Name.ofQualified("/a"));
+    assertThrows(IllegalArgumentException.class, () -> Name.ofQualified("myns"));
+    assertThrows(IllegalArgumentException.class, () -> Name.ofQualified("myns/a/b"));
+    // namespace and name are compared separately
+    assertNotEquals(Name.of("a/b", "c"), Name.of("a", "b/c"));
+  }
+
   @Test
   public void testNameMatching() {
     assertTrue(Term.of("myns/a", Type.STRING).matchesName(Name.of("myns", "a")));
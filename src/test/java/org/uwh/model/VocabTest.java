@@ -5,6 +5,9 @@ import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.uwh.model.types.Type;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
@@ -22,4 +25,20 @@ public class VocabTest {
       vocab.insertTerm(new Term<>(Name.of("myns", "newb"), Type.STRING, Set.of(Name.of("myns", "b")), List.of()));
     });
   }
+
+  @Test
+  public void looksUpNamesAndAliases() {
+    Term<String> a = new Term<>(Name.of("myns", "a"), Type.STRING, Set.of(Name.of("myns", "b")), List.of());
+    Term<Long> c = Term.of("otherns", "c", Type.LONG);
+    Vocabulary joint = Vocabulary.createJointVocab(List.of(new Vocabulary(List.of(a)), new Vocabulary(List.of(c))));
+
+    assertSame(a, joint.lookupTerm("MYNS/A").orElseThrow());
+    assertSame(a, joint.lookupTerm("myns/b").orElseThrow());
+    assertSame(c, joint.lookupTerm("otherns/c").orElseThrow());
+    assertFalse(joint.hasTerm(Name.of("myns", "c")));
+    assertEquals(2, joint.size());
+
+    assertThrows(IllegalArgumentException.class, () -> Vocabulary.createJointVocab(
+        List.of(new Vocabulary(List.of(a)), new Vocabulary(List.of(Term.of("myns", "b", Type.INT))))));
+  }
 }